@@ -1,31 +1,59 @@
 package com.janak.imageapi.Controller;
 
 import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.Services.HotImageCache;
+import com.janak.imageapi.Services.ImageDeliveryService;
+import com.janak.imageapi.Services.ImageExportService;
+import com.janak.imageapi.Services.ImageMetadataCache;
 import com.janak.imageapi.Services.ImageService;
 import com.janak.imageapi.models.Image;
+import com.janak.imageapi.models.ImageSearch;
+import com.janak.imageapi.models.ImageSummary;
+import com.janak.imageapi.models.ImageVariantSpec;
 import com.janak.imageapi.utils.ApiResponse;
+import com.janak.imageapi.utils.BatchUploadResponse;
+import com.janak.imageapi.utils.BulkResponse;
+import com.janak.imageapi.utils.CursorResponse;
 import com.janak.imageapi.utils.PaginatedResponse;
-import org.springframework.core.io.Resource;
+import com.janak.imageapi.utils.StorageUsageResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/images")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class ImageController {
 
     private final ImageService imageService;
     private final ImageRepository imageRepository;
+    private final ImageDeliveryService imageDeliveryService;
+    private final HotImageCache hotImageCache;
+    private final ImageMetadataCache imageMetadataCache;
+    private final ImageExportService imageExportService;
 
-    ImageController(ImageService imageService, ImageRepository imageRepository) {
+    ImageController(ImageService imageService, ImageRepository imageRepository,
+                    ImageDeliveryService imageDeliveryService, HotImageCache hotImageCache,
+                    ImageMetadataCache imageMetadataCache, ImageExportService imageExportService) {
         this.imageService = imageService;
         this.imageRepository = imageRepository;
+        this.imageDeliveryService = imageDeliveryService;
+        this.hotImageCache = hotImageCache;
+        this.imageMetadataCache = imageMetadataCache;
+        this.imageExportService = imageExportService;
     }
 
     @PostMapping("/upload")
@@ -33,18 +61,68 @@ public class ImageController {
         return ResponseEntity.status(201).body(new ApiResponse(imageService.saveImage(file)));
     }
 
+    @PostMapping("/upload/batch")
+    public ResponseEntity<BatchUploadResponse> uploadImages(@RequestParam("files") List<MultipartFile> files) {
+        BatchUploadResponse response = imageService.saveImages(files);
+        // 207 tells the client to look at the per-file results
+        return ResponseEntity.status(response.isSuccess() ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS).body(response);
+    }
+
     @GetMapping
-    public ResponseEntity<PaginatedResponse<Image>> getAll(@RequestParam(defaultValue = "1") int page,
-                                                           @RequestParam(defaultValue = "10") int size) {
+    public ResponseEntity<PaginatedResponse<ImageSummary>> getAll(@RequestParam(defaultValue = "1") int page,
+                                                                  @RequestParam(defaultValue = "10") int size) {
 
         return ResponseEntity.ok(imageService.getAllImages(page,size));
     }
 
+    @GetMapping(params = "cursor")
+    public ResponseEntity<CursorResponse<Image>> scroll(@RequestParam(required = false) String cursor,
+                                                        @RequestParam(defaultValue = "id") String order,
+                                                        @RequestParam(defaultValue = "10") int size,
+                                                        @RequestParam(defaultValue = "false") boolean includeTotal) {
+        return ResponseEntity.ok(imageService.scrollImages(cursor, order, size, includeTotal));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<CursorResponse<Image>> search(@RequestParam(required = false) List<String> type,
+                                                        @RequestParam(required = false) Long minSize,
+                                                        @RequestParam(required = false) Long maxSize,
+                                                        @RequestParam(required = false) Integer minWidth,
+                                                        @RequestParam(required = false) Integer maxWidth,
+                                                        @RequestParam(required = false) Integer minHeight,
+                                                        @RequestParam(required = false) Integer maxHeight,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant uploadedAfter,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant uploadedBefore,
+                                                        @RequestParam(required = false) String cursor,
+                                                        @RequestParam(defaultValue = "newest") String order,
+                                                        @RequestParam(defaultValue = "10") int size) {
+        ImageSearch search = ImageSearch.of(type, minSize, maxSize, minWidth, maxWidth, minHeight, maxHeight,
+                uploadedAfter, uploadedBefore);
+        return ResponseEntity.ok(imageService.searchImages(search, cursor, order, size));
+    }
+
+    /**
+     * The whole catalog as NDJSON, one image per line, or with {@code updatedSince} only the images
+     * inserted or changed since that watermark (their {@code updatedAt}). Deleted images are not in the
+     * feed, an incremental sync never learns about them. See {@link ImageExportService}.
+     */
+    @GetMapping("/export")
+    public void export(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant updatedSince,
+                       HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        imageExportService.export(updatedSince, response.getOutputStream());
+    }
+
     @GetMapping("/{id:\\d+}")
     ResponseEntity<ApiResponse> getImageById(@PathVariable long id) {
         return ResponseEntity.ok(new ApiResponse(imageService.getImageById(id)));
     }
 
+    @GetMapping("/batch")
+    public ResponseEntity<BulkResponse<Image>> getImagesByIds(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(imageService.getImagesByIds(ids));
+    }
+
     @PutMapping("/{id:\\d+}")
     ResponseEntity<ApiResponse> updateImage(@PathVariable long id, @RequestParam("file") MultipartFile file) {
         return ResponseEntity.ok(new ApiResponse(imageService.updateImage(id, file)));
@@ -56,11 +134,38 @@ public class ImageController {
       return ResponseEntity.noContent().build();
     }
 
+    @DeleteMapping
+    public ResponseEntity<BulkResponse<Long>> deleteImages(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(imageService.deleteImages(ids));
+    }
+
     @GetMapping("/image/{imageName:.+}")
-    public ResponseEntity<Resource> getImage(@PathVariable String imageName)  {
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(imageService.getContentType(imageName)))
-                .body(imageService.getImageAsResource(imageName));
+    public void getImage(@PathVariable String imageName,
+                         @RequestParam(name = "w", required = false) Integer width,
+                         @RequestParam(name = "h", required = false) Integer height,
+                         @RequestParam(required = false) String fit,
+                         @RequestParam(required = false) String format,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (ImageVariantSpec.isRequested(width, height, fit, format)) {
+            imageDeliveryService.serveVariant(imageName, ImageVariantSpec.of(width, height, fit, format), request, response);
+            return;
+        }
+        imageDeliveryService.serve(imageName, request, response);
+    }
+
+    @GetMapping("/usage")
+    public ResponseEntity<StorageUsageResponse> getStorageUsage() {
+        return ResponseEntity.ok(imageService.getStorageUsage());
+    }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<HotImageCache.Stats> getCacheStats() {
+        return ResponseEntity.ok(hotImageCache.stats());
+    }
+
+    @GetMapping("/cache/metadata/stats")
+    public ResponseEntity<ImageMetadataCache.Stats> getMetadataCacheStats() {
+        return ResponseEntity.ok(imageMetadataCache.stats());
     }
 
 
@@ -0,0 +1,196 @@
+package com.janak.imageapi.Controller;
+
+import com.janak.imageapi.Exception.FileRequiredException;
+import com.janak.imageapi.Services.ImageExportService;
+import com.janak.imageapi.Services.ImageMetadataIndex;
+import com.janak.imageapi.Services.ImageMetrics;
+import com.janak.imageapi.Services.ImageService;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.models.ImageMetadata;
+import com.janak.imageapi.models.ImageSearch;
+import com.janak.imageapi.models.ImageSummary;
+import com.janak.imageapi.storage.ImageStorage;
+import com.janak.imageapi.utils.ApiResponse;
+import com.janak.imageapi.utils.CursorResponse;
+import com.janak.imageapi.utils.PaginatedResponse;
+import com.janak.imageapi.utils.StorageUsageResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Non-blocking variant of {@link ImageController} for edge nodes, served by Netty when the application
+ * runs with {@code spring.main.web-application-type=reactive}. Uploads are streamed part by part to the
+ * staging file, so neither the heap nor a multipart temp directory ever holds a whole image, and images
+ * are returned as file {@link Resource}s, which WebFlux sends with zero-copy file regions, byte ranges
+ * included. Everything that reaches the database runs on the bounded {@code imageBlockingScheduler}.
+ */
+@RestController
+@RequestMapping("/api/images")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveImageController {
+
+    private static final String FILE_PART = "file";
+
+    private final ImageService imageService;
+    private final ImageMetadataIndex metadataIndex;
+    private final ImageStorage imageStorage;
+    private final ImageExportService exportService;
+    private final ImageMetrics metrics;
+    private final Scheduler blockingScheduler;
+
+    public ReactiveImageController(ImageService imageService, ImageMetadataIndex metadataIndex, ImageStorage imageStorage,
+                                   ImageExportService exportService, ImageMetrics metrics,
+                                   @Qualifier("imageBlockingScheduler") Scheduler blockingScheduler) {
+        this.imageService = imageService;
+        this.metadataIndex = metadataIndex;
+        this.imageStorage = imageStorage;
+        this.exportService = exportService;
+        this.metrics = metrics;
+        this.blockingScheduler = blockingScheduler;
+    }
+
+    @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<ResponseEntity<ApiResponse>> uploadImage(@RequestBody Flux<PartEvent> parts) {
+        return parts.windowUntil(PartEvent::isLast)
+                .concatMap(part -> part.switchOnFirst((first, events) -> {
+                    if (first.get() instanceof FilePartEvent file && FILE_PART.equals(file.name())) {
+                        return saveUpload(file, events.map(PartEvent::content)).flux();
+                    }
+                    return events.doOnNext(event -> DataBufferUtils.release(event.content())).thenMany(Flux.<Image>empty());
+                }))
+                .next()
+                .switchIfEmpty(Mono.error(FileRequiredException::new))
+                .map(image -> ResponseEntity.status(HttpStatus.CREATED).body(new ApiResponse(image)));
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<PaginatedResponse<ImageSummary>>> getAll(@RequestParam(defaultValue = "1") int page,
+                                                                        @RequestParam(defaultValue = "10") int size) {
+        return blocking(() -> imageService.getAllImages(page, size)).map(ResponseEntity::ok);
+    }
+
+    @GetMapping(params = "cursor")
+    public Mono<ResponseEntity<CursorResponse<Image>>> scroll(@RequestParam(required = false) String cursor,
+                                                              @RequestParam(defaultValue = "id") String order,
+                                                              @RequestParam(defaultValue = "10") int size,
+                                                              @RequestParam(defaultValue = "false") boolean includeTotal) {
+        return blocking(() -> imageService.scrollImages(cursor, order, size, includeTotal)).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/search")
+    public Mono<ResponseEntity<CursorResponse<Image>>> search(@RequestParam(required = false) List<String> type,
+                                                              @RequestParam(required = false) Long minSize,
+                                                              @RequestParam(required = false) Long maxSize,
+                                                              @RequestParam(required = false) Integer minWidth,
+                                                              @RequestParam(required = false) Integer maxWidth,
+                                                              @RequestParam(required = false) Integer minHeight,
+                                                              @RequestParam(required = false) Integer maxHeight,
+                                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant uploadedAfter,
+                                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant uploadedBefore,
+                                                              @RequestParam(required = false) String cursor,
+                                                              @RequestParam(defaultValue = "newest") String order,
+                                                              @RequestParam(defaultValue = "10") int size) {
+        ImageSearch search = ImageSearch.of(type, minSize, maxSize, minWidth, maxWidth, minHeight, maxHeight,
+                uploadedAfter, uploadedBefore);
+        return blocking(() -> imageService.searchImages(search, cursor, order, size)).map(ResponseEntity::ok);
+    }
+
+    /**
+     * The export of {@link ImageController#export}, written on the blocking scheduler into buffers
+     * that are sent as the client takes them; a slow client holds the export's thread and connection.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<DataBuffer> export(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant updatedSince,
+                                   ServerWebExchange exchange) {
+        return Flux.from(DataBufferUtils.outputStreamPublisher(out -> {
+            try {
+                exportService.export(updatedSince, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, exchange.getResponse().bufferFactory(), blockingScheduler::schedule));
+    }
+
+    @GetMapping("/{id:\\d+}")
+    Mono<ResponseEntity<ApiResponse>> getImageById(@PathVariable long id) {
+        return blocking(() -> ResponseEntity.ok(new ApiResponse(imageService.getImageById(id))));
+    }
+
+    @DeleteMapping("/{id:\\d+}")
+    public Mono<ResponseEntity<Void>> delete(@PathVariable long id) {
+        return blocking(() -> {
+            imageService.deleteImage(id);
+            return ResponseEntity.noContent().<Void>build();
+        });
+    }
+
+    @GetMapping("/usage")
+    public Mono<ResponseEntity<StorageUsageResponse>> getStorageUsage() {
+        return blocking(imageService::getStorageUsage).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/image/{imageName:.+}")
+    public Mono<ResponseEntity<Resource>> getImage(@PathVariable String imageName, ServerWebExchange exchange) {
+        return metadata(imageName).flatMap(metadata -> {
+            if (exchange.checkNotModified(metadata.etag(), Instant.ofEpochMilli(metadata.lastModified()))) {
+                return Mono.empty();
+            }
+            return blocking(() -> imageService.getImageAsResource(imageName)).map(resource -> {
+                ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(metadata.contentType());
+                if (metadata.etag() != null) {
+                    response.eTag(metadata.etag());
+                }
+                if (metadata.lastModified() >= 0) {
+                    response.lastModified(metadata.lastModified());
+                }
+                return response.body(resource);
+            });
+        });
+    }
+
+    private Mono<Image> saveUpload(FilePartEvent file, Flux<DataBuffer> content) {
+        MediaType type = file.headers().getContentType();
+        String contentType = type != null ? type.toString() : null;
+        // checked before the first byte is written, like the servlet upload
+        imageService.validateImageFile(contentType, file.filename());
+        Mono<ImageStorage.StagedUpload> staging = Mono.defer(() -> {
+            long start = metrics.start();
+            return imageStorage.stage(content).doOnNext(staged -> metrics.record(ImageMetrics.UploadStage.WRITE, start));
+        });
+        return Mono.usingWhen(staging,
+                staged -> blocking(() -> imageService.saveImage(file.filename(), contentType, staged)),
+                staged -> Mono.fromRunnable(staged::close));
+    }
+
+    /**
+     * Indexed metadata straight away; a miss goes to the database on the blocking scheduler.
+     */
+    private Mono<ImageMetadata> metadata(String imageName) {
+        return Mono.justOrEmpty(metadataIndex.find(imageName))
+                .switchIfEmpty(blocking(() -> metadataIndex.lookup(imageName)));
+    }
+
+    private <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(blockingScheduler);
+    }
+}
@@ -7,7 +7,7 @@ public class ErrorResponse {
     private int status;
     private String message;
     private boolean success=false;
-    ErrorResponse(int status, String message) {
+    public ErrorResponse(int status, String message) {
         this.status = status;
         this.message = message;
     }
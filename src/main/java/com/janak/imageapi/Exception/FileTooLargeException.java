@@ -0,0 +1,9 @@
+package com.janak.imageapi.Exception;
+
+import org.springframework.http.HttpStatus;
+
+public class FileTooLargeException extends CustomException{
+    public FileTooLargeException(String maxSize) {
+        super(HttpStatus.PAYLOAD_TOO_LARGE, new ErrorResponse(HttpStatus.PAYLOAD_TOO_LARGE.value(),"File is too large must be less than " + maxSize));
+    }
+}
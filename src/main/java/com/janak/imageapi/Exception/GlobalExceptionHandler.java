@@ -1,6 +1,8 @@
 package com.janak.imageapi.Exception;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -9,6 +11,9 @@ import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartException;
 import org.springframework.web.multipart.support.MissingServletRequestPartException;
 
+import java.io.UncheckedIOException;
+
+@Slf4j
 @RestControllerAdvice
 public class GlobalExceptionHandler {
     @Value("${spring.servlet.multipart.max-file-size}")
@@ -19,6 +24,22 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(e.getStatus()).body(e.getResponse());
     }
 
+    // also raised by UploadAdmissionFilter, before the request body is read
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ErrorResponse> handleTooManyRequests(TooManyRequestsException e) {
+        return ResponseEntity.status(e.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(e.getResponse());
+    }
+
+    // variant generation is saturated, see ImageVariantService
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleServiceUnavailable(ServiceUnavailableException e) {
+        return ResponseEntity.status(e.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(e.getResponse());
+    }
+
     @ExceptionHandler(MaxUploadSizeExceededException.class)
     public ResponseEntity<ErrorResponse> handleMaxSizeException(MaxUploadSizeExceededException ex) {
        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(new ErrorResponse(HttpStatus.PAYLOAD_TOO_LARGE.value(), "File is too large must be less than " + file_upload_size));
@@ -37,4 +58,13 @@ public class GlobalExceptionHandler {
                 .status(HttpStatus.BAD_REQUEST)
                 .body(new ErrorResponse(HttpStatus.BAD_REQUEST.value(),"Missing required file part in the request. Please upload a file using key: '" + ex.getRequestPartName() + "'"));
     }
+
+    // storage failures; whatever a failed write had stored is already removed again, see ImageStorage.commit
+    @ExceptionHandler(UncheckedIOException.class)
+    public ResponseEntity<ErrorResponse> handleStorageFailure(UncheckedIOException ex) {
+        log.error("Image storage failed", ex);
+        return ResponseEntity
+                .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(new ErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR.value(), "Image could not be stored"));
+    }
 }
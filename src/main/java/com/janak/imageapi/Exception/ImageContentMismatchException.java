@@ -0,0 +1,11 @@
+package com.janak.imageapi.Exception;
+
+import com.janak.imageapi.models.ImageFormat;
+import org.springframework.http.HttpStatus;
+
+public class ImageContentMismatchException extends CustomException{
+    public ImageContentMismatchException(ImageFormat actual) {
+        super(HttpStatus.BAD_REQUEST, new ErrorResponse(HttpStatus.BAD_REQUEST.value(),
+                "file content is " + actual + ", which does not match its name or content type"));
+    }
+}
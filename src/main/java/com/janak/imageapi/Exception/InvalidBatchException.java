@@ -0,0 +1,9 @@
+package com.janak.imageapi.Exception;
+
+import org.springframework.http.HttpStatus;
+
+public class InvalidBatchException extends CustomException{
+    public InvalidBatchException(String message) {
+        super(HttpStatus.BAD_REQUEST, new ErrorResponse(HttpStatus.BAD_REQUEST.value(), message));
+    }
+}
@@ -0,0 +1,24 @@
+package com.janak.imageapi.Repository;
+
+import com.janak.imageapi.models.BlobDeletion;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BlobDeletionRepository extends JpaRepository<BlobDeletion, Long> {
+
+    @Query("select d from BlobDeletion d order by d.id")
+    List<BlobDeletion> findOldest(Limit limit);
+
+    @Transactional
+    @Modifying
+    @Query("delete from BlobDeletion d where d.id in :ids")
+    int deleteByIds(Collection<Long> ids);
+}
@@ -1,9 +1,148 @@
 package com.janak.imageapi.Repository;
 
+import com.janak.imageapi.models.FormatUsage;
 import com.janak.imageapi.models.Image;
+import com.janak.imageapi.models.ImageFormat;
+import com.janak.imageapi.models.ImageSummary;
+import com.janak.imageapi.models.ProcessingStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository
-public interface ImageRepository extends JpaRepository<Image, Long> {
+public interface ImageRepository extends JpaRepository<Image, Long>, JpaSpecificationExecutor<Image> {
+
+    // rows per round trip of the export cursors; MySQL only honours it with useCursorFetch=true
+    int EXPORT_FETCH_SIZE = 500;
+
+    Optional<Image> findByImageName(String imageName);
+
+    long countByStorageKey(String storageKey);
+
+    @Query("select distinct i.storageKey from Image i where i.storageKey in :storageKeys")
+    Set<String> findReferencedStorageKeys(Collection<String> storageKeys);
+
+    // like findReferencedStorageKeys, also matching rows stored under their image name before keys were recorded
+    @Query("select distinct coalesce(i.storageKey, i.imageName) from Image i "
+            + "where i.storageKey in :keys or (i.storageKey is null and i.imageName in :keys)")
+    Set<String> findReferencedKeys(Collection<String> keys);
+
+    /**
+     * Offset listing page, selected into {@link ImageSummary} records rather than entities. Read-only,
+     * so Hibernate neither snapshots the rows for dirty checking nor flushes, and the page and its count
+     * see the same data.
+     */
+    @Transactional(readOnly = true)
+    @Query(value = "select new com.janak.imageapi.models.ImageSummary(i.id, i.imageName, i.imageType, i.format, "
+            + "i.imageSizeBytes, i.contentHash, i.storageKey, i.width, i.height, i.processingStatus, i.uploadedAt, i.updatedAt) "
+            + "from Image i order by i.id",
+            countQuery = "select count(i) from Image i")
+    Page<ImageSummary> findSummaries(Pageable pageable);
+
+    /**
+     * Every image in id order, read through a forward-only cursor. Has to be consumed and closed inside
+     * a transaction, see {@link com.janak.imageapi.Services.ImageExportService}.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE))
+    @Query("select new com.janak.imageapi.models.ImageSummary(i.id, i.imageName, i.imageType, i.format, "
+            + "i.imageSizeBytes, i.contentHash, i.storageKey, i.width, i.height, i.processingStatus, i.uploadedAt, i.updatedAt) "
+            + "from Image i order by i.id")
+    Stream<ImageSummary> streamSummaries();
+
+    /**
+     * Like {@link #streamSummaries()}, the images inserted or changed at or after {@code since}, in that
+     * order along idx_image_updated_at. Rows not written since updatedAt was introduced have none and
+     * are only in the full export.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE))
+    @Query("select new com.janak.imageapi.models.ImageSummary(i.id, i.imageName, i.imageType, i.format, "
+            + "i.imageSizeBytes, i.contentHash, i.storageKey, i.width, i.height, i.processingStatus, i.uploadedAt, i.updatedAt) "
+            + "from Image i where i.updatedAt >= :since order by i.updatedAt, i.id")
+    Stream<ImageSummary> streamSummariesUpdatedSince(Date since);
+
+    List<Image> findTop1000ByIdGreaterThanOrderByIdAsc(long id);
+
+    List<Image> findTop100ByProcessingStatusOrderByIdAsc(ProcessingStatus processingStatus);
+
+    // answered from idx_image_format_size without touching the table
+    @Query("select new com.janak.imageapi.models.FormatUsage(i.format, count(i), coalesce(sum(i.imageSizeBytes), 0)) "
+            + "from Image i group by i.format")
+    List<FormatUsage> usageByFormat();
+
+    // rows stored before the byte size and format were recorded, see ImageMetadataBackfill
+    @Query("select i from Image i where i.id > :id and (i.imageSizeBytes is null or i.format is null) order by i.id")
+    List<Image> findIncompleteAfter(long id, Limit limit);
+
+    /**
+     * Up to {@code limit} images after {@code position} in {@code sort} order. Fetches one extra row to
+     * tell whether there is a next window, but never counts.
+     */
+    default Window<Image> scroll(Sort sort, ScrollPosition position, int limit) {
+        Specification<Image> all = (root, query, builder) -> null;
+        return scroll(all, sort, position, limit);
+    }
+
+    /**
+     * Like {@link #scroll(Sort, ScrollPosition, int)}, over the images matching {@code filter} only.
+     */
+    default Window<Image> scroll(Specification<Image> filter, Sort sort, ScrollPosition position, int limit) {
+        return findBy(filter, query -> query.sortBy(sort).limit(limit).scroll(position));
+    }
+
+    // deletes without loading the entity first, unlike deleteById
+    @Transactional
+    @Modifying
+    @Query("delete from Image i where i.id = :id")
+    int deleteImageById(long id);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Image i where i.id in :ids")
+    int deleteImagesByIds(Collection<Long> ids);
+
+    // the processing pipeline's writes only apply while the row still holds the content that was
+    // processed; after an update they match nothing, see ImageStorage.storageKeyOf for the key
+    @Transactional
+    @Modifying
+    @Query("update Image i set i.processingStatus = :status, i.updatedAt = current_timestamp "
+            + "where i.id = :id and coalesce(i.storageKey, i.imageName) = :storageKey")
+    int updateProcessingStatus(long id, String storageKey, ProcessingStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("update Image i set i.processingStatus = :to, i.updatedAt = current_timestamp where i.processingStatus = :from")
+    int updateProcessingStatus(ProcessingStatus from, ProcessingStatus to);
+
+    @Transactional
+    @Modifying
+    @Query("update Image i set i.width = :width, i.height = :height, i.updatedAt = current_timestamp "
+            + "where i.id = :id and coalesce(i.storageKey, i.imageName) = :storageKey")
+    int updateDimensions(long id, String storageKey, int width, int height);
+
+    // only fills in what is missing, a concurrent update wins
+    @Transactional
+    @Modifying
+    @Query("update Image i set i.imageSizeBytes = coalesce(i.imageSizeBytes, :sizeBytes), "
+            + "i.format = coalesce(i.format, :format), i.updatedAt = current_timestamp where i.id = :id")
+    int fillSizeAndFormat(long id, Long sizeBytes, ImageFormat format);
 }
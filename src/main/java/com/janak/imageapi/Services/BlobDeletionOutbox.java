@@ -0,0 +1,93 @@
+package com.janak.imageapi.Services;
+
+import com.janak.imageapi.Repository.BlobDeletionRepository;
+import com.janak.imageapi.models.BlobDeletion;
+import com.janak.imageapi.storage.ImageStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Deferred deletion of stored content. Deleting or replacing an image only records the storage keys it
+ * dropped, in the same transaction as the row change, and returns; the blobs, their cached copies and
+ * their renditions are removed here in the background, in batches. The entries outlive a crash, so
+ * content is never left behind because the process stopped between the commit and the unlink, and
+ * unlinking no longer adds to request latency.
+ */
+@Slf4j
+@Component
+public class BlobDeletionOutbox {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final BlobDeletionRepository deletionRepository;
+
+    private final ImageStorage imageStorage;
+
+    private final HotImageCache hotImageCache;
+
+    private final ImageVariantService imageVariantService;
+
+    public BlobDeletionOutbox(BlobDeletionRepository deletionRepository, ImageStorage imageStorage,
+                              HotImageCache hotImageCache, ImageVariantService imageVariantService) {
+        this.deletionRepository = deletionRepository;
+        this.imageStorage = imageStorage;
+        this.hotImageCache = hotImageCache;
+        this.imageVariantService = imageVariantService;
+    }
+
+    /**
+     * Records that {@code storageKeys} may no longer be referenced. Call inside the transaction that
+     * deletes or repoints the rows, so the entries commit or roll back with them.
+     */
+    public void enqueue(Collection<String> storageKeys) {
+        if (storageKeys.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        deletionRepository.saveAll(storageKeys.stream()
+                .distinct()
+                .map(storageKey -> BlobDeletion.builder().storageKey(storageKey).requestedAt(now).build())
+                .toList());
+    }
+
+    /**
+     * Releases the content of all recorded entries, oldest first. Content that is referenced again, by
+     * an upload of the same bytes meanwhile, is kept. An entry is only removed once its release went
+     * through; after a storage failure the rest waits for the next run.
+     *
+     * @return the number of entries processed
+     */
+    @Scheduled(fixedDelayString = "${file.storage.deletion-interval:1s}", initialDelayString = "${file.storage.deletion-interval:1s}")
+    public int process() {
+        int processed = 0;
+        List<BlobDeletion> batch;
+        do {
+            batch = deletionRepository.findOldest(Limit.of(BATCH_SIZE));
+            if (batch.isEmpty()) {
+                break;
+            }
+            Set<String> storageKeys = new LinkedHashSet<>();
+            batch.forEach(deletion -> storageKeys.add(deletion.getStorageKey()));
+            try {
+                for (String storageKey : imageStorage.releaseAll(storageKeys)) {
+                    hotImageCache.invalidate(storageKey);
+                    imageVariantService.purge(storageKey);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not release {} stored blobs, retrying on the next run", storageKeys.size(), e);
+                break;
+            }
+            deletionRepository.deleteByIds(batch.stream().map(BlobDeletion::getId).toList());
+            processed += batch.size();
+        } while (batch.size() == BATCH_SIZE);
+        return processed;
+    }
+}
@@ -0,0 +1,144 @@
+package com.janak.imageapi.Services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Tells other instances which cached image rows to drop, so a write on one node does not leave the
+ * others serving the old row until it expires. Messages are single UDP datagrams sent to every address
+ * in {@code image.metadata-cache.invalidation.peers}; delivery is best effort, the cache TTL bounds how
+ * long a lost message can leave a row stale. Off unless {@code image.metadata-cache.invalidation.port}
+ * is set. Several instances on one machine just need different ports.
+ */
+@Slf4j
+@Component
+public class CacheInvalidationBus {
+
+    // ids per datagram, keeps every message well below a typical MTU
+    private static final int IDS_PER_MESSAGE = 64;
+
+    private static final int MAX_MESSAGE_SIZE = 2048;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+
+    private final List<InetSocketAddress> peers;
+
+    private final DatagramChannel channel;
+
+    private volatile Consumer<Invalidation> listener = invalidation -> { };
+
+    public CacheInvalidationBus(@Value("${image.metadata-cache.invalidation.port:0}") int port,
+                                @Value("${image.metadata-cache.invalidation.peers:}") List<String> peers) throws IOException {
+        this.peers = peers.stream().filter(peer -> !peer.isBlank()).map(CacheInvalidationBus::parse).toList();
+        if (port <= 0) {
+            this.channel = null;
+            return;
+        }
+        this.channel = DatagramChannel.open(StandardProtocolFamily.INET).bind(new InetSocketAddress(port));
+        Thread receiver = new Thread(this::receive, "metadata-invalidation");
+        receiver.setDaemon(true);
+        receiver.start();
+        log.info("Listening for cache invalidations on port {}, {} peers", port, this.peers.size());
+    }
+
+    public boolean isEnabled() {
+        return channel != null;
+    }
+
+    public void listen(Consumer<Invalidation> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sends an invalidation of {@code ids}, and of every cached listing, to all peers. Never throws, a
+     * failed send only costs freshness on the peer.
+     */
+    public void publish(Collection<Long> ids) {
+        if (channel == null || peers.isEmpty()) {
+            return;
+        }
+        List<Long> all = List.copyOf(ids);
+        int from = 0;
+        do {
+            List<Long> chunk = all.subList(from, Math.min(all.size(), from + IDS_PER_MESSAGE));
+            ByteBuffer message = encode(chunk);
+            for (InetSocketAddress peer : peers) {
+                try {
+                    channel.send(message.duplicate(), peer);
+                } catch (IOException e) {
+                    log.warn("Could not send cache invalidation to {}", peer, e);
+                }
+            }
+            from += IDS_PER_MESSAGE;
+        } while (from < all.size());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private ByteBuffer encode(List<Long> ids) {
+        StringBuilder message = new StringBuilder("v1 ").append(nodeId).append(' ').append(System.currentTimeMillis());
+        for (Long id : ids) {
+            message.append(' ').append(id);
+        }
+        return ByteBuffer.wrap(message.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void receive() {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_MESSAGE_SIZE);
+        while (channel.isOpen()) {
+            try {
+                buffer.clear();
+                channel.receive(buffer);
+                buffer.flip();
+                String[] parts = StandardCharsets.US_ASCII.decode(buffer).toString().split(" ");
+                if (parts.length < 3 || !parts[0].equals("v1") || parts[1].equals(nodeId)) {
+                    // not ours, or our own message sent back to us through a shared peer list
+                    continue;
+                }
+                List<Long> ids = new ArrayList<>(parts.length - 3);
+                Arrays.stream(parts, 3, parts.length).forEach(id -> ids.add(Long.parseLong(id)));
+                listener.accept(new Invalidation(ids, Long.parseLong(parts[2])));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Dropping malformed cache invalidation", e);
+            }
+        }
+    }
+
+    private static InetSocketAddress parse(String peer) {
+        int colon = peer.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Peer must be host:port but was " + peer);
+        }
+        return new InetSocketAddress(peer.substring(0, colon).trim(), Integer.parseInt(peer.substring(colon + 1).trim()));
+    }
+
+    /**
+     * @param ids         rows to drop; listings are always dropped
+     * @param sentAtMillis wall clock time of the sender when the message was sent
+     */
+    public record Invalidation(List<Long> ids, long sentAtMillis) {
+    }
+}
@@ -0,0 +1,125 @@
+package com.janak.imageapi.Services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.janak.imageapi.models.ImageMetadata;
+import com.janak.imageapi.storage.StoredBlob;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Optional cache of small image files held in direct (off-heap) buffers, bounded by the total number of
+ * cached bytes. Caffeine's W-TinyLFU policy keeps frequently requested images resident even when a scan
+ * of rarely requested ones passes through. Entries are keyed by storage key, so images sharing content
+ * share one entry, and are dropped by {@link BlobDeletionOutbox} once the stored file is released.
+ * Its Caffeine statistics are exported as the {@code image.hot} cache.
+ */
+@Component
+public class HotImageCache implements MeterBinder {
+
+    private final boolean enabled;
+
+    private final long maxBytes;
+
+    private final long maxEntryBytes;
+
+    private final Cache<String, ByteBuffer> cache;
+
+    public HotImageCache(@Value("${image.cache.enabled:false}") boolean enabled,
+                         @Value("${image.cache.max-size:64MB}") DataSize maxSize,
+                         @Value("${image.cache.max-entry-size:256KB}") DataSize maxEntrySize) {
+        this.enabled = enabled;
+        this.maxBytes = maxSize.toBytes();
+        this.maxEntryBytes = Math.min(maxEntrySize.toBytes(), Integer.MAX_VALUE);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, ByteBuffer content) -> content.capacity())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns a read-only view of the image content, loading it from {@code source} on a miss, or
+     * {@code null} when the cache is disabled, the image is too large to cache, or the blob is missing.
+     */
+    public ByteBuffer get(ImageMetadata metadata, Supplier<Optional<StoredBlob>> source) {
+        if (!enabled || metadata.size() < 0 || metadata.size() > maxEntryBytes) {
+            return null;
+        }
+        ByteBuffer content = cache.getIfPresent(metadata.storageKey());
+        if (content == null) {
+            // Loaded outside Caffeine's compute lock: that lock is a monitor on the map bin, and blocking
+            // file I/O under it would pin a virtual thread to its carrier. The content behind a storage
+            // key never changes, so a rare duplicate load on a concurrent miss is harmless.
+            content = source.get()
+                    .filter(blob -> blob.size() >= 0 && blob.size() <= maxEntryBytes)
+                    // blobs the store already holds mapped are not worth a second copy
+                    .filter(blob -> blob.content().isEmpty())
+                    .map(HotImageCache::load)
+                    .orElse(null);
+            if (content == null) {
+                return null;
+            }
+            ByteBuffer existing = cache.asMap().putIfAbsent(metadata.storageKey(), content);
+            content = existing != null ? existing : content;
+        }
+        return content.asReadOnlyBuffer();
+    }
+
+    public void invalidate(String storageKey) {
+        cache.invalidate(storageKey);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "image.hot");
+        Gauge.builder("cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .tag("cache", "image.hot")
+                .register(registry);
+    }
+
+    public Stats stats() {
+        cache.cleanUp();
+        com.github.benmanes.caffeine.cache.stats.CacheStats stats = cache.stats();
+        return new Stats(enabled, stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount(),
+                stats.evictionWeight(), cache.estimatedSize(),
+                cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L),
+                maxBytes);
+    }
+
+    private static ByteBuffer load(StoredBlob blob) {
+        try (ReadableByteChannel channel = blob.file().isPresent()
+                ? FileChannel.open(blob.file().get(), StandardOpenOption.READ)
+                : Channels.newChannel(blob.openStream())) {
+            ByteBuffer content = ByteBuffer.allocateDirect((int) blob.size());
+            while (content.hasRemaining() && channel.read(content) >= 0) {
+                // keep reading until the buffer is full
+            }
+            return content.flip();
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public record Stats(boolean enabled, long hits, long misses, double hitRate, long evictions,
+                        long evictedBytes, long entries, long cachedBytes, long maxBytes) {
+    }
+}
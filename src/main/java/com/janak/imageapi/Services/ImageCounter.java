@@ -0,0 +1,65 @@
+package com.janak.imageapi.Services;
+
+import com.janak.imageapi.Repository.ImageRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Approximate number of images, for listings that want a total without a {@code COUNT(*)} per request.
+ * The count is read from the database at most once per {@code image.listing.count-refresh} and adjusted
+ * by {@link ImageServiceImpl} on save and delete in between, so it only drifts by writes made through
+ * other instances until the next refresh.
+ */
+@Component
+public class ImageCounter {
+
+    private final ImageRepository imageRepository;
+
+    private final long refreshNanos;
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private volatile long refreshedAt;
+
+    private volatile boolean loaded;
+
+    public ImageCounter(ImageRepository imageRepository,
+                        @Value("${image.listing.count-refresh:60s}") Duration refreshInterval) {
+        this.imageRepository = imageRepository;
+        this.refreshNanos = refreshInterval.toNanos();
+    }
+
+    public long approximateCount() {
+        if (!loaded) {
+            refresh();
+        } else if (System.nanoTime() - refreshedAt >= refreshNanos && refreshing.compareAndSet(false, true)) {
+            // one caller refreshes, everybody else keeps using the previous value meanwhile
+            try {
+                refresh();
+            } finally {
+                refreshing.set(false);
+            }
+        }
+        return Math.max(0, count.get());
+    }
+
+    public void increment() {
+        count.incrementAndGet();
+    }
+
+    public void decrement() {
+        count.decrementAndGet();
+    }
+
+    private void refresh() {
+        count.set(imageRepository.count());
+        refreshedAt = System.nanoTime();
+        loaded = true;
+    }
+}
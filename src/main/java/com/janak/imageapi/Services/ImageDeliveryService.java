@@ -0,0 +1,220 @@
+package com.janak.imageapi.Services;
+
+import com.janak.imageapi.Exception.ImageNotFoundException;
+import com.janak.imageapi.Services.ImageMetrics.ServeStage;
+import com.janak.imageapi.models.ImageMetadata;
+import com.janak.imageapi.models.ImageVariantSpec;
+import com.janak.imageapi.storage.FileBlob;
+import com.janak.imageapi.storage.ImageStorage;
+import com.janak.imageapi.storage.StoredBlob;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Writes stored images straight to the servlet response. Handles conditional GETs (ETag and
+ * Last-Modified), single byte ranges, and hands the file to Tomcat's sendfile support when the
+ * connector offers it, falling back to {@link FileChannel#transferTo} otherwise; blobs without a local
+ * file are streamed from their {@link StoredBlob}. Content type, size and ETag come from the
+ * {@link ImageMetadataIndex}, so a request does not touch the database, and small hot images are
+ * answered from the {@link HotImageCache} without touching the storage backend. Both stages are timed
+ * in {@link ImageMetrics}.
+ */
+@Service
+public class ImageDeliveryService {
+
+    static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private final ImageMetadataIndex metadataIndex;
+
+    private final HotImageCache hotImageCache;
+
+    private final ImageVariantService imageVariantService;
+
+    private final ImageStorage imageStorage;
+
+    private final ImageMetrics metrics;
+
+    public ImageDeliveryService(ImageMetadataIndex metadataIndex, HotImageCache hotImageCache,
+                                ImageVariantService imageVariantService, ImageStorage imageStorage,
+                                ImageMetrics metrics) {
+        this.metadataIndex = metadataIndex;
+        this.hotImageCache = hotImageCache;
+        this.imageVariantService = imageVariantService;
+        this.imageStorage = imageStorage;
+        this.metrics = metrics;
+    }
+
+    public void serve(String imageName, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long began = metrics.start();
+        ImageMetadata metadata = metadataIndex.lookup(imageName);
+        ByteBuffer cached = hotImageCache.get(metadata, () -> imageStorage.find(metadata.storageKey()));
+        StoredBlob blob = null;
+        if (cached == null || metadata.lastModified() < 0) {
+            blob = imageStorage.find(metadata.storageKey()).orElseThrow(ImageNotFoundException::new);
+        }
+        long length = cached != null ? cached.remaining() : metadata.size() >= 0 ? metadata.size() : blob.size();
+        long lastModified = metadata.lastModified() >= 0 ? metadata.lastModified() : blob.lastModified();
+        ByteBuffer content = cached != null ? cached : blob.content().orElse(null);
+        metrics.record(ServeStage.LOOKUP, began);
+        write(blob, content, metadata.contentType(), length, metadata.etag(), lastModified, request, response);
+    }
+
+    /**
+     * Serves a resized or re-encoded rendition of {@code imageName}, generating it on first request.
+     * The rendition's ETag is the original's ETag qualified with the variant, so it changes together
+     * with the original.
+     */
+    public void serveVariant(String imageName, ImageVariantSpec spec,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // a rendition generated on first request counts as lookup
+        long began = metrics.start();
+        ImageMetadata metadata = metadataIndex.lookup(imageName);
+        Path file = imageVariantService.resolve(metadata, spec);
+        String etag = metadata.etag() != null
+                ? metadata.etag().substring(0, metadata.etag().length() - 1) + "-" + file.getFileName() + "\""
+                : null;
+        FileBlob blob = FileBlob.of(file);
+        long lastModified = metadata.lastModified() >= 0 ? metadata.lastModified() : blob.lastModified();
+        metrics.record(ServeStage.LOOKUP, began);
+        write(blob, null, imageVariantService.contentType(metadata, spec), blob.size(), etag, lastModified,
+                request, response);
+    }
+
+    private void write(StoredBlob blob, ByteBuffer content, MediaType contentType, long length, String etag, long lastModified,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(contentType.toString());
+
+        long start = 0;
+        long end = length - 1;
+        HttpRange range = requestedRange(request, etag, lastModified);
+        if (range != null) {
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length);
+            if (start >= length || start > end) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+
+        if (HttpMethod.HEAD.matches(request.getMethod()) || count == 0) {
+            return;
+        }
+        long began = metrics.start();
+        metrics.streamStarted();
+        try {
+            send(blob, content, start, end, request, response);
+            metrics.sent(count);
+        } finally {
+            metrics.streamFinished();
+            metrics.record(ServeStage.TRANSFER, began);
+        }
+    }
+
+    /**
+     * Sends bytes {@code start} to {@code end} of the image: from {@code content} when it is in memory,
+     * otherwise by sendfile, {@link FileChannel#transferTo} or the blob's stream. With sendfile this only
+     * hands the file to Tomcat, which sends it after the request returns.
+     */
+    private void send(StoredBlob blob, ByteBuffer content, long start, long end,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long count = end - start + 1;
+        if (content != null) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            ByteBuffer slice = content.position((int) start).limit((int) (end + 1));
+            while (slice.hasRemaining()) {
+                target.write(slice);
+            }
+            return;
+        }
+        Path file = blob.file().orElse(null);
+        if (file == null) {
+            try (InputStream stream = blob.openStream(start, count)) {
+                stream.transferTo(response.getOutputStream());
+            }
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    /**
+     * Returns the single byte range the client asked for, or {@code null} when the whole file should be
+     * sent: no Range header, an If-Range validator that no longer matches, a malformed header, or
+     * several ranges (which RFC 9110 allows a server to ignore).
+     */
+    private HttpRange requestedRange(HttpServletRequest request, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag, lastModified)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond() == lastModified / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
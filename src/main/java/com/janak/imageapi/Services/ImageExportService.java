@@ -0,0 +1,70 @@
+package com.janak.imageapi.Services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.models.ImageSummary;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes the image catalog as NDJSON, one {@link ImageSummary} per line in the JSON of the listing
+ * endpoints, for sync jobs that would otherwise crawl every listing page. Rows come from a
+ * forward-only cursor, {@link ImageRepository#EXPORT_FETCH_SIZE} at a time, and go to the stream as
+ * they arrive; projections are not managed, so the persistence context stays empty and memory stays
+ * flat however large the catalog is.
+ * <p>
+ * For incremental syncs pass the newest {@code updatedAt} of the previous export as the watermark,
+ * less a margin for clock differences between instances and the database. Rows at or after it are
+ * exported again rather than missed, so apply them by id. Deleted images are not in the export; a
+ * sync that needs to see deletes has to compare ids against a full export.
+ */
+@Service
+public class ImageExportService {
+
+    private final ImageRepository imageRepository;
+
+    private final ObjectWriter writer;
+
+    public ImageExportService(ImageRepository imageRepository, ObjectMapper objectMapper) {
+        this.imageRepository = imageRepository;
+        // flushed per fetched batch below, not per row
+        this.writer = objectMapper.writerFor(ImageSummary.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Writes every image, or those inserted or changed at or after {@code updatedSince} in that order,
+     * to {@code out}, which is flushed but left open.
+     *
+     * @return the number of images written
+     */
+    @Transactional(readOnly = true)
+    public long export(Instant updatedSince, OutputStream out) throws IOException {
+        try (Stream<ImageSummary> rows = updatedSince == null ? imageRepository.streamSummaries()
+                : imageRepository.streamSummariesUpdatedSince(Date.from(updatedSince));
+             JsonGenerator generator = writer.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // lines end in a newline of their own instead of being separated by the default space
+            generator.setRootValueSeparator(null);
+            long count = 0;
+            for (Iterator<ImageSummary> it = rows.iterator(); it.hasNext(); ) {
+                writer.writeValue(generator, it.next());
+                generator.writeRaw('\n');
+                if (++count % ImageRepository.EXPORT_FETCH_SIZE == 0) {
+                    generator.flush();
+                }
+            }
+            generator.flush();
+            return count;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.janak.imageapi.Services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.models.ImageSummary;
+import com.janak.imageapi.models.ProcessingStatus;
+import com.janak.imageapi.utils.PaginatedResponse;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-memory cache of {@link Image} rows by id and of offset listing pages, in front of the
+ * database. Only rows whose processing has finished are cached: the processing pipeline updates
+ * status and dimensions with direct queries that bypass the cache, but never touches a finished row
+ * again. {@link ImageServiceImpl} invalidates a row whenever it writes it, and every listing whenever
+ * it writes anything; other instances hear about it through the {@link CacheInvalidationBus}. Entries
+ * also expire after {@code image.metadata-cache.ttl}, which bounds staleness if a message is lost.
+ * <p>
+ * Returned images are shared between callers and must not be modified.
+ */
+@Component
+public class ImageMetadataCache implements MeterBinder {
+
+    private final boolean enabled;
+
+    private final Duration ttl;
+
+    private final Cache<Long, Entry<Image>> images;
+
+    private final Cache<PageKey, Entry<PaginatedResponse<ImageSummary>>> pages;
+
+    private final CacheInvalidationBus invalidationBus;
+
+    // bumped before anything is invalidated, a load that overlaps a bump is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder remoteInvalidations = new LongAdder();
+
+    private final LongAdder servedAgeMillis = new LongAdder();
+
+    private final LongAccumulator maxServedAgeMillis = new LongAccumulator(Math::max, 0);
+
+    private volatile long lastRemoteLagMillis = -1;
+
+    public ImageMetadataCache(@Value("${image.metadata-cache.enabled:false}") boolean enabled,
+                              @Value("${image.metadata-cache.max-entries:10000}") long maxEntries,
+                              @Value("${image.metadata-cache.ttl:60s}") Duration ttl,
+                              CacheInvalidationBus invalidationBus) {
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.images = Caffeine.newBuilder().maximumSize(maxEntries).expireAfterWrite(ttl).recordStats().build();
+        // listings are few and invalidated by every write, a small fixed bound is plenty
+        this.pages = Caffeine.newBuilder().maximumSize(256).expireAfterWrite(ttl).recordStats().build();
+        this.invalidationBus = invalidationBus;
+        invalidationBus.listen(this::onRemoteInvalidation);
+    }
+
+    public Optional<Image> getImage(long id, Function<Long, Optional<Image>> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        Entry<Image> cached = images.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(served(cached));
+        }
+        long generation = invalidations.get();
+        Optional<Image> loaded = loader.apply(id);
+        loaded.filter(ImageMetadataCache::isSettled).ifPresent(image -> cache(images, id, image, generation));
+        return loaded;
+    }
+
+    /**
+     * Looks up all {@code ids} and loads the ones not cached with a single call to {@code loader}.
+     */
+    public Map<Long, Image> getImages(Collection<Long> ids, Function<Collection<Long>, List<Image>> loader) {
+        Map<Long, Image> found = new HashMap<>();
+        if (!enabled) {
+            loader.apply(ids).forEach(image -> found.put(image.getId(), image));
+            return found;
+        }
+        images.getAllPresent(ids).forEach((id, entry) -> found.put(id, served(entry)));
+        List<Long> missing = ids.stream().filter(id -> !found.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            long generation = invalidations.get();
+            for (Image image : loader.apply(missing)) {
+                found.put(image.getId(), image);
+                if (isSettled(image)) {
+                    cache(images, image.getId(), image, generation);
+                }
+            }
+        }
+        return found;
+    }
+
+    public PaginatedResponse<ImageSummary> getPage(int page, int size, Supplier<PaginatedResponse<ImageSummary>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        PageKey key = new PageKey(page, size);
+        Entry<PaginatedResponse<ImageSummary>> cached = pages.getIfPresent(key);
+        if (cached != null) {
+            return served(cached);
+        }
+        long generation = invalidations.get();
+        PaginatedResponse<ImageSummary> loaded = loader.get();
+        if (loaded.getData().stream().allMatch(summary -> isSettled(summary.processingStatus()))) {
+            cache(pages, key, loaded, generation);
+        }
+        return loaded;
+    }
+
+    /**
+     * Drops the given rows and every cached listing here and on all peers. Call after the write has
+     * been committed; pass no ids for inserts, which only change listings.
+     */
+    public void invalidate(Collection<Long> ids) {
+        invalidateLocally(ids);
+        invalidationBus.publish(ids);
+    }
+
+    /**
+     * Exports the row and listing caches as {@code image.metadata} and {@code image.pages}.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bind(registry, images, "image.metadata");
+        bind(registry, pages, "image.pages");
+    }
+
+    private static void bind(MeterRegistry registry, Cache<?, ?> cache, String name) {
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+        Gauge.builder("cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .tag("cache", name)
+                .register(registry);
+    }
+
+    public Stats stats() {
+        com.github.benmanes.caffeine.cache.stats.CacheStats imageStats = images.stats();
+        com.github.benmanes.caffeine.cache.stats.CacheStats pageStats = pages.stats();
+        long hits = imageStats.hitCount() + pageStats.hitCount();
+        return new Stats(enabled, imageStats.hitCount(), imageStats.missCount(), imageStats.hitRate(),
+                images.estimatedSize(), pageStats.hitCount(), pageStats.missCount(), pageStats.hitRate(),
+                pages.estimatedSize(), invalidations.get(), remoteInvalidations.sum(),
+                hits == 0 ? 0 : servedAgeMillis.sum() / hits, maxServedAgeMillis.get(), lastRemoteLagMillis,
+                ttl.toMillis(), invalidationBus.isEnabled());
+    }
+
+    private void invalidateLocally(Collection<Long> ids) {
+        invalidations.incrementAndGet();
+        images.invalidateAll(ids);
+        pages.invalidateAll();
+    }
+
+    private void onRemoteInvalidation(CacheInvalidationBus.Invalidation invalidation) {
+        invalidateLocally(invalidation.ids());
+        remoteInvalidations.increment();
+        lastRemoteLagMillis = Math.max(0, System.currentTimeMillis() - invalidation.sentAtMillis());
+    }
+
+    private <K, V> void cache(Cache<K, Entry<V>> cache, K key, V value, long generation) {
+        cache.put(key, new Entry<>(value, System.nanoTime()));
+        if (invalidations.get() != generation) {
+            // invalidated while we were loading, the value may predate the write
+            cache.invalidate(key);
+        }
+    }
+
+    private <V> V served(Entry<V> entry) {
+        long ageMillis = (System.nanoTime() - entry.cachedAtNanos()) / 1_000_000;
+        servedAgeMillis.add(ageMillis);
+        maxServedAgeMillis.accumulate(ageMillis);
+        return entry.value();
+    }
+
+    private static boolean isSettled(Image image) {
+        return isSettled(image.getProcessingStatus());
+    }
+
+    private static boolean isSettled(ProcessingStatus status) {
+        // rows from before the pipeline have no status and are never processed
+        return status == null || status == ProcessingStatus.COMPLETED || status == ProcessingStatus.FAILED;
+    }
+
+    private record Entry<V>(V value, long cachedAtNanos) {
+    }
+
+    private record PageKey(int page, int size) {
+    }
+
+    /**
+     * @param averageAgeMillis average time the served entries had been cached, a measure of staleness
+     * @param lastRemoteLagMillis delay between a peer's write and the invalidation arriving here, or -1
+     */
+    public record Stats(boolean enabled, long hits, long misses, double hitRate, long entries,
+                        long pageHits, long pageMisses, double pageHitRate, long pageEntries,
+                        long invalidations, long remoteInvalidations, long averageAgeMillis, long maxAgeMillis,
+                        long lastRemoteLagMillis, long ttlMillis, boolean crossNode) {
+    }
+}
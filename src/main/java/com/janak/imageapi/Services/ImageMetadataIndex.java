@@ -0,0 +1,106 @@
+package com.janak.imageapi.Services;
+
+import com.janak.imageapi.Exception.ImageNotFoundException;
+import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.models.ImageMetadata;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory map from image name to the metadata needed to serve it. Filled from {@link ImageRepository}
+ * once the application is up and kept current by {@link ImageServiceImpl} on save, update and delete.
+ * Names that are not in the index yet (during preload, or written by another instance) are looked up
+ * in the database once and then cached.
+ * <p>
+ * Callers remove a name once its row is gone. A row loaded before that may only be cached if no name was
+ * removed in between, otherwise a lookup racing a delete would put the deleted name back for good.
+ */
+@Slf4j
+@Component
+public class ImageMetadataIndex {
+
+    private static final int PRELOAD_BATCH_SIZE = 1000;
+
+    private final Map<String, ImageMetadata> entries = new ConcurrentHashMap<>();
+
+    // bumped before every removal, rows loaded under an older value are not cached
+    private final AtomicLong removals = new AtomicLong();
+
+    private final ImageRepository imageRepository;
+
+    private final boolean preload;
+
+    public ImageMetadataIndex(ImageRepository imageRepository,
+                              @Value("${image.metadata-index.preload:true}") boolean preload) {
+        this.imageRepository = imageRepository;
+        this.preload = preload;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        if (!preload) {
+            return;
+        }
+        long lastId = 0;
+        List<Image> batch;
+        do {
+            long loadedAt = removals.get();
+            batch = imageRepository.findTop1000ByIdGreaterThanOrderByIdAsc(lastId);
+            for (Image image : batch) {
+                cacheIfNotRemoved(image.getImageName(), ImageMetadata.from(image), loadedAt);
+                lastId = image.getId();
+            }
+        } while (batch.size() == PRELOAD_BATCH_SIZE);
+        log.info("Loaded metadata for {} images", entries.size());
+    }
+
+    public ImageMetadata lookup(String imageName) {
+        ImageMetadata metadata = entries.get(imageName);
+        if (metadata != null) {
+            return metadata;
+        }
+        long loadedAt = removals.get();
+        Image image = imageRepository.findByImageName(imageName).orElseThrow(ImageNotFoundException::new);
+        return cacheIfNotRemoved(imageName, ImageMetadata.from(image), loadedAt);
+    }
+
+    /**
+     * The indexed metadata, without falling back to the database, for callers that must not block.
+     */
+    public Optional<ImageMetadata> find(String imageName) {
+        return Optional.ofNullable(entries.get(imageName));
+    }
+
+    public void put(Image image) {
+        entries.put(image.getImageName(), ImageMetadata.from(image));
+    }
+
+    public void remove(String imageName) {
+        removals.incrementAndGet();
+        entries.remove(imageName);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private ImageMetadata cacheIfNotRemoved(String imageName, ImageMetadata loaded, long loadedAt) {
+        ImageMetadata cached = entries.compute(imageName, (name, existing) -> {
+            if (existing != null) {
+                return existing;
+            }
+            return removals.get() == loadedAt ? loaded : null;
+        });
+        return cached != null ? cached : loaded;
+    }
+}
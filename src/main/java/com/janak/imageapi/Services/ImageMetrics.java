@@ -0,0 +1,97 @@
+package com.janak.imageapi.Services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Meters of the upload and serve paths, exported through the Actuator {@code /actuator/prometheus}
+ * endpoint. Every meter is registered up front and kept in a field, so recording on the request path is
+ * a clock read and an uncontended add, with no registry lookup or tag allocation.
+ * <ul>
+ *     <li>{@code image.upload{stage}}: validate (content sniffing), write (streaming to the staging
+ *     file) and persist (moving the blob into place and saving the row) of each upload</li>
+ *     <li>{@code image.serve{stage}}: lookup (metadata and cache) and transfer (writing the body)</li>
+ *     <li>{@code image.bytes.in} and {@code image.bytes.out}: stored and sent content</li>
+ *     <li>{@code image.streams.active}: responses currently writing a body</li>
+ * </ul>
+ * Histogram buckets for the timers are switched on in {@code application.properties}.
+ */
+@Component
+public class ImageMetrics {
+
+    public enum UploadStage {VALIDATE, WRITE, PERSIST}
+
+    public enum ServeStage {LOOKUP, TRANSFER}
+
+    private final Timer[] uploadStages;
+
+    private final Timer[] serveStages;
+
+    private final Counter bytesIn;
+
+    private final Counter bytesOut;
+
+    private final AtomicInteger activeStreams = new AtomicInteger();
+
+    public ImageMetrics(MeterRegistry registry) {
+        this.uploadStages = new Timer[UploadStage.values().length];
+        for (UploadStage stage : UploadStage.values()) {
+            uploadStages[stage.ordinal()] = Timer.builder("image.upload")
+                    .description("Time spent in each stage of an upload")
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        this.serveStages = new Timer[ServeStage.values().length];
+        for (ServeStage stage : ServeStage.values()) {
+            serveStages[stage.ordinal()] = Timer.builder("image.serve")
+                    .description("Time spent in each stage of serving an image")
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        this.bytesIn = Counter.builder("image.bytes.in").baseUnit("bytes")
+                .description("Content of stored uploads").register(registry);
+        this.bytesOut = Counter.builder("image.bytes.out").baseUnit("bytes")
+                .description("Image content sent to clients").register(registry);
+        Gauge.builder("image.streams.active", activeStreams, AtomicInteger::get)
+                .description("Responses currently writing image content")
+                .register(registry);
+    }
+
+    /**
+     * Start of a stage, to hand to {@link #record(UploadStage, long)} or {@link #record(ServeStage, long)}.
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    public void record(UploadStage stage, long start) {
+        uploadStages[stage.ordinal()].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    public void record(ServeStage stage, long start) {
+        serveStages[stage.ordinal()].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    public void received(long bytes) {
+        bytesIn.increment(bytes);
+    }
+
+    public void sent(long bytes) {
+        bytesOut.increment(bytes);
+    }
+
+    public void streamStarted() {
+        activeStreams.incrementAndGet();
+    }
+
+    public void streamFinished() {
+        activeStreams.decrementAndGet();
+    }
+}
@@ -1,7 +1,14 @@
 package com.janak.imageapi.Services;
 
 import com.janak.imageapi.models.Image;
+import com.janak.imageapi.models.ImageSearch;
+import com.janak.imageapi.models.ImageSummary;
+import com.janak.imageapi.storage.ImageStorage.StagedUpload;
+import com.janak.imageapi.utils.BatchUploadResponse;
+import com.janak.imageapi.utils.BulkResponse;
+import com.janak.imageapi.utils.CursorResponse;
 import com.janak.imageapi.utils.PaginatedResponse;
+import com.janak.imageapi.utils.StorageUsageResponse;
 import org.springframework.core.io.Resource;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
@@ -10,11 +17,19 @@ import java.util.List;
 
 public interface ImageService {
     Image saveImage(MultipartFile image);
-    PaginatedResponse<Image> getAllImages(int page, int size);
+    Image saveImage(String originalFilename, String contentType, StagedUpload staged);
+    BatchUploadResponse saveImages(List<MultipartFile> images);
+    PaginatedResponse<ImageSummary> getAllImages(int page, int size);
+    CursorResponse<Image> scrollImages(String cursor, String order, int size, boolean includeTotal);
+    CursorResponse<Image> searchImages(ImageSearch search, String cursor, String order, int size);
     Image getImageById(long id);
+    BulkResponse<Image> getImagesByIds(List<Long> ids);
     Image updateImage(long id,MultipartFile image);
     Resource getImageAsResource(String fileName);
     void deleteImage(long id);
+    BulkResponse<Long> deleteImages(List<Long> ids);
+    StorageUsageResponse getStorageUsage();
 
     String getContentType(String imageName);
+    void validateImageFile(String contentType, String originalFilename);
 }
@@ -1,40 +1,110 @@
 package com.janak.imageapi.Services;
 
+import com.janak.imageapi.Exception.CustomException;
+import com.janak.imageapi.Exception.ErrorResponse;
 import com.janak.imageapi.Exception.FileRequiredException;
 import com.janak.imageapi.Exception.FileTypeNotSupportedException;
+import com.janak.imageapi.Exception.ImageContentMismatchException;
 import com.janak.imageapi.Exception.ImageNotFoundException;
+import com.janak.imageapi.Exception.InvalidBatchException;
 import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.Services.ImageMetrics.UploadStage;
 import com.janak.imageapi.models.Image;
+import com.janak.imageapi.models.ImageCursor;
+import com.janak.imageapi.models.ImageSearch;
+import com.janak.imageapi.models.ImageFormat;
+import com.janak.imageapi.models.ImageHeader;
+import com.janak.imageapi.models.ImageSummary;
+import com.janak.imageapi.models.ProcessingStatus;
+import com.janak.imageapi.processing.ImageProcessingPipeline;
+import com.janak.imageapi.storage.BlobResource;
+import com.janak.imageapi.storage.ImageStorage;
+import com.janak.imageapi.storage.ImageStorage.StagedUpload;
+import com.janak.imageapi.storage.StoredBlob;
 
-import com.janak.imageapi.utils.FileUtils;
+import com.janak.imageapi.utils.BatchUploadResponse;
+import com.janak.imageapi.utils.BatchUploadResult;
+import com.janak.imageapi.utils.BulkResponse;
+import com.janak.imageapi.utils.CursorResponse;
+import com.janak.imageapi.utils.ImageSniffer;
 import com.janak.imageapi.utils.PaginatedResponse;
+import com.janak.imageapi.utils.StorageUsageResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
+@Slf4j
 @Service
 public class ImageServiceImpl implements ImageService {
 
-    private final String uploadPath;
+    public static final int MAX_SCROLL_SIZE = 100;
+
+    public static final int MAX_BULK_IDS = 1000;
 
     private final ImageRepository imageRepository;
 
-    public ImageServiceImpl(ImageRepository imageRepository,@Value("${file.upload-dir}")String uploadPath) {
+    private final ImageMetadataIndex metadataIndex;
+
+    private final BlobDeletionOutbox deletionOutbox;
+
+    private final ImageProcessingPipeline processingPipeline;
+
+    private final ImageStorage imageStorage;
+
+    private final ImageCounter imageCounter;
+
+    private final ImageMetadataCache imageCache;
+
+    private final ImageMetrics metrics;
+
+    private final TransactionOperations transactions;
+
+    private final Executor uploadExecutor;
+
+    private final int maxBatchSize;
+
+    public ImageServiceImpl(ImageRepository imageRepository,
+                            ImageMetadataIndex metadataIndex,
+                            BlobDeletionOutbox deletionOutbox,
+                            ImageProcessingPipeline processingPipeline,
+                            ImageStorage imageStorage,
+                            ImageCounter imageCounter,
+                            ImageMetadataCache imageCache,
+                            ImageMetrics metrics,
+                            TransactionOperations transactions,
+                            @Qualifier("imageIoExecutor") Executor uploadExecutor,
+                            @Value("${image.upload.max-batch-size:100}") int maxBatchSize) {
         this.imageRepository = imageRepository;
-        this.uploadPath = uploadPath;
+        this.metadataIndex = metadataIndex;
+        this.deletionOutbox = deletionOutbox;
+        this.processingPipeline = processingPipeline;
+        this.imageStorage = imageStorage;
+        this.imageCounter = imageCounter;
+        this.imageCache = imageCache;
+        this.metrics = metrics;
+        this.transactions = transactions;
+        this.uploadExecutor = uploadExecutor;
+        this.maxBatchSize = maxBatchSize;
     }
 
     @Override
@@ -43,31 +113,170 @@ public class ImageServiceImpl implements ImageService {
            throw new FileRequiredException();
         }
         validateImageFile(image);
-        String extension = Objects.requireNonNull(image.getOriginalFilename()).substring(image.getOriginalFilename().lastIndexOf("."));
-        String newImageName = System.currentTimeMillis() + "_" + UUID.randomUUID()+extension;
-        Path filePath = Paths.get(uploadPath, newImageName);
+        long start = metrics.start();
+        try (StagedUpload staged = imageStorage.stage(image)) {
+            metrics.record(UploadStage.WRITE, start);
+            return saveImage(image.getOriginalFilename(), image.getContentType(), staged);
+        }
+    }
+
+    /**
+     * Commits an upload that is already staged on disk, for callers that stream the part themselves.
+     * The name and content type must have passed {@link #validateImageFile(String, String)}; the staged
+     * content is checked here, and the staged file is left for the caller to close.
+     */
+    @Override
+    public Image saveImage(String originalFilename, String contentType, StagedUpload staged) {
+        if (staged.size() == 0) {
+            throw new FileRequiredException();
+        }
+        long start = metrics.start();
+        ImageHeader header = checkContent(staged, contentType, originalFilename);
+        metrics.record(UploadStage.VALIDATE, start);
+        String newImageName = generateImageName(originalFilename);
+        start = metrics.start();
+        Image savedImage = imageStorage.commit(staged, newImageName,
+                storageKey -> imageRepository.save(newImage(newImageName, header, staged, storageKey)));
+        metrics.record(UploadStage.PERSIST, start);
+        metrics.received(staged.size());
+        saved(savedImage);
+        imageCache.invalidate(List.of());
+        return savedImage;
+    }
+
+    /**
+     * Uploads several files in one request. The files are validated and streamed to disk in parallel,
+     * then committed under one set of storage locks and inserted with a single batched {@code saveAll}.
+     * A file that fails validation or staging is reported in its own result and does not affect the
+     * others; if the insert itself fails, every file that got that far is reported as failed.
+     */
+    @Override
+    public BatchUploadResponse saveImages(List<MultipartFile> images) {
+        if (images == null || images.isEmpty()) {
+            throw new FileRequiredException();
+        }
+        if (images.size() > maxBatchSize) {
+            throw new InvalidBatchException("At most " + maxBatchSize + " files can be uploaded at once");
+        }
+        List<CompletableFuture<CheckedUpload>> staging = images.stream()
+                .map(image -> CompletableFuture.supplyAsync(() -> stageValidated(image), uploadExecutor))
+                .toList();
+
+        BatchUploadResult[] results = new BatchUploadResult[images.size()];
+        List<Integer> indexes = new ArrayList<>();
+        List<StagedUpload> staged = new ArrayList<>();
+        List<ImageHeader> headers = new ArrayList<>();
         try {
-            Files.createDirectories(filePath.getParent());
-            Files.write(filePath, image.getBytes());
-            Image imageToSave=Image.builder()
-                    .imageName(newImageName)
-                    .imageType(image.getContentType())
-                    .imageSize(FileUtils.getReadableFileSize(image.getSize()))
-                    .build();
-
-        return imageRepository.save(imageToSave);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            for (int i = 0; i < images.size(); i++) {
+                try {
+                    CheckedUpload checked = staging.get(i).join();
+                    staged.add(checked.staged());
+                    headers.add(checked.header());
+                    indexes.add(i);
+                } catch (CompletionException e) {
+                    results[i] = BatchUploadResult.failed(i, images.get(i).getOriginalFilename(), errorOf(e.getCause()));
+                }
+            }
+            if (!staged.isEmpty()) {
+                commitBatch(images, indexes, staged, headers, results);
+            }
+        } finally {
+            staged.forEach(StagedUpload::close);
+        }
+        return new BatchUploadResponse(Arrays.asList(results));
+    }
+
+    private CheckedUpload stageValidated(MultipartFile image) {
+        if (image == null || image.isEmpty()) {
+            throw new FileRequiredException();
+        }
+        validateImageFile(image);
+        long start = metrics.start();
+        StagedUpload staged = imageStorage.stage(image);
+        metrics.record(UploadStage.WRITE, start);
+        try {
+            start = metrics.start();
+            ImageHeader header = checkContent(staged, image.getContentType(), image.getOriginalFilename());
+            metrics.record(UploadStage.VALIDATE, start);
+            return new CheckedUpload(staged, header);
+        } catch (RuntimeException e) {
+            staged.close();
+            throw e;
+        }
+    }
+
+    private void commitBatch(List<MultipartFile> images, List<Integer> indexes, List<StagedUpload> staged,
+                             List<ImageHeader> headers, BatchUploadResult[] results) {
+        List<String> imageNames = indexes.stream().map(i -> generateImageName(images.get(i).getOriginalFilename())).toList();
+        List<Image> savedImages;
+        // the whole batch is one insert, and one persist sample
+        long start = metrics.start();
+        try {
+            savedImages = imageStorage.commitAll(staged, imageNames, storageKeys -> {
+                List<Image> rows = new ArrayList<>(staged.size());
+                for (int j = 0; j < staged.size(); j++) {
+                    rows.add(newImage(imageNames.get(j), headers.get(j), staged.get(j), storageKeys.get(j)));
+                }
+                return imageRepository.saveAll(rows);
+            });
+        } catch (RuntimeException e) {
+            ErrorResponse error = errorOf(e);
+            for (int index : indexes) {
+                results[index] = BatchUploadResult.failed(index, images.get(index).getOriginalFilename(), error);
+            }
+            return;
+        }
+        metrics.record(UploadStage.PERSIST, start);
+        for (int j = 0; j < savedImages.size(); j++) {
+            int index = indexes.get(j);
+            metrics.received(staged.get(j).size());
+            saved(savedImages.get(j));
+            results[index] = BatchUploadResult.succeeded(index, images.get(index).getOriginalFilename(), savedImages.get(j));
+        }
+        imageCache.invalidate(List.of());
+    }
+
+    private static Image newImage(String imageName, ImageHeader header, StagedUpload staged, String storageKey) {
+        return Image.builder()
+                .imageName(imageName)
+                .imageType(header.format().mediaType())
+                .format(header.format())
+                .width(header.hasDimensions() ? header.width() : null)
+                .height(header.hasDimensions() ? header.height() : null)
+                .imageSizeBytes(staged.size())
+                .contentHash(staged.contentHash())
+                .storageKey(storageKey)
+                .processingStatus(ProcessingStatus.PENDING)
+                .build();
+    }
+
+    private void saved(Image image) {
+        metadataIndex.put(image);
+        imageCounter.increment();
+        processingPipeline.submit(image);
+    }
+
+    private record CheckedUpload(StagedUpload staged, ImageHeader header) {
+    }
+
+    private static ErrorResponse errorOf(Throwable e) {
+        if (e instanceof CustomException customException) {
+            return customException.getResponse();
         }
+        log.warn("Batch upload item failed", e);
+        return new ErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR.value(), "Image could not be stored");
     }
 
     @Override
-    public PaginatedResponse<Image> getAllImages(int page, int size) {
+    public PaginatedResponse<ImageSummary> getAllImages(int page, int size) {
+        return imageCache.getPage(page, size, () -> loadPage(page, size));
+    }
 
+    private PaginatedResponse<ImageSummary> loadPage(int page, int size) {
         Pageable pageable = PageRequest.of(page-1, size);
-        Page<Image> pageImages = imageRepository.findAll(pageable);
+        Page<ImageSummary> pageImages = imageRepository.findSummaries(pageable);
 
-        PaginatedResponse<Image> response = new PaginatedResponse<>();
+        PaginatedResponse<ImageSummary> response = new PaginatedResponse<>();
         response.setData(pageImages.getContent());
         response.setCurrentPage(pageImages.getNumber()+1);
         response.setTotalPages(pageImages.getTotalPages());
@@ -78,15 +287,61 @@ public class ImageServiceImpl implements ImageService {
         return response;
     }
 
+    /**
+     * Keyset paging: each page seeks past the last row of the previous one, named by an opaque cursor,
+     * instead of skipping rows, and no count query is run. An empty cursor starts at the first page; a
+     * cursor carries its own order, {@code order} only applies to the first page.
+     */
+    @Override
+    public CursorResponse<Image> scrollImages(String cursor, String order, int size, boolean includeTotal) {
+        CursorResponse<Image> response = scroll(ImageSearch.ALL, cursor, order, size);
+        if (includeTotal) {
+            response.setTotalItems(imageCounter.approximateCount());
+        }
+        return response;
+    }
+
+    /**
+     * Keyset paging like {@link #scrollImages}, over the images matching {@code search}. The filters are
+     * not part of the cursor, so they have to be sent again with it. There is no total, as it would take
+     * a count over the same filters on every page.
+     */
+    @Override
+    public CursorResponse<Image> searchImages(ImageSearch search, String cursor, String order, int size) {
+        return scroll(search, cursor, order, size);
+    }
+
+    private CursorResponse<Image> scroll(ImageSearch search, String cursor, String order, int size) {
+        ImageCursor after = cursor == null || cursor.isEmpty() ? null : ImageCursor.decode(cursor);
+        ImageCursor.Order sortOrder = after != null ? after.order() : ImageCursor.Order.of(order);
+        Window<Image> window = imageRepository.scroll(search.specification(sortOrder), sortOrder.sort(),
+                after != null ? after.position() : ScrollPosition.keyset(),
+                Math.max(1, Math.min(size, MAX_SCROLL_SIZE)));
+
+        CursorResponse<Image> response = new CursorResponse<>();
+        response.setData(window.getContent());
+        response.setSize(window.size());
+        response.setHasNext(window.hasNext());
+        if (window.hasNext()) {
+            response.setNextCursor(ImageCursor.after(sortOrder, window.getContent().get(window.size() - 1)).encode());
+        }
+        return response;
+    }
+
     @Override
     public Image getImageById(long id) {
-        Image image = imageRepository.findById(id).orElse(null);
+        Image image = imageCache.getImage(id, imageRepository::findById).orElse(null);
         if(image == null) {
             throw new ImageNotFoundException();
         }
         return image;
     }
 
+    /**
+     * Replaces the content of an image. The new content is durably in place before the row is
+     * repointed, and the old content is handed to the {@link BlobDeletionOutbox} in the same transaction,
+     * so at no point does the row reference a missing blob, whatever fails in between.
+     */
     @Override
     public Image updateImage(long id, MultipartFile image) {
         if (image == null || image.isEmpty()) {
@@ -97,27 +352,54 @@ public class ImageServiceImpl implements ImageService {
             throw new ImageNotFoundException();
         }
         Image existingImage = existingImageOpt.get();
-        try {
-            Files.deleteIfExists(Paths.get(uploadPath,existingImage.getImageName()));
-            String extension = Objects.requireNonNull(image.getOriginalFilename()).substring(image.getOriginalFilename().lastIndexOf("."));
-            String newImageName = System.currentTimeMillis() + "_" + UUID.randomUUID()+extension;
-            Path filePath = Paths.get(uploadPath, newImageName);
-            Files.createDirectories(filePath.getParent());
-            Files.write(filePath, image.getBytes());
-            existingImage.setImageName(newImageName);
-            existingImage.setImageType(image.getContentType());
-            existingImage.setImageSize(FileUtils.getReadableFileSize(image.getSize()));
-            existingImage.setUploadedAt(Date.from(Instant.now()));
-            return imageRepository.save(existingImage);
-
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        validateImageFile(image);
+        String oldImageName = existingImage.getImageName();
+        String oldStorageKey = ImageStorage.storageKeyOf(existingImage);
+        String newImageName = generateImageName(image.getOriginalFilename());
+        Image updatedImage;
+        long start = metrics.start();
+        try (StagedUpload staged = imageStorage.stage(image)) {
+            metrics.record(UploadStage.WRITE, start);
+            start = metrics.start();
+            ImageHeader header = checkContent(staged, image.getContentType(), image.getOriginalFilename());
+            metrics.record(UploadStage.VALIDATE, start);
+            start = metrics.start();
+            updatedImage = imageStorage.commit(staged, newImageName, storageKey -> {
+                existingImage.setImageName(newImageName);
+                existingImage.setImageType(header.format().mediaType());
+                existingImage.setFormat(header.format());
+                existingImage.setImageSizeBytes(staged.size());
+                existingImage.setContentHash(staged.contentHash());
+                existingImage.setStorageKey(storageKey);
+                existingImage.setWidth(header.hasDimensions() ? header.width() : null);
+                existingImage.setHeight(header.hasDimensions() ? header.height() : null);
+                existingImage.setProcessingStatus(ProcessingStatus.PENDING);
+                return transactions.execute(status -> {
+                    Image saved = imageRepository.save(existingImage);
+                    if (!storageKey.equals(oldStorageKey)) {
+                        deletionOutbox.enqueue(List.of(oldStorageKey));
+                    }
+                    return saved;
+                });
+            });
+            metrics.record(UploadStage.PERSIST, start);
+            metrics.received(staged.size());
         }
+        imageCache.invalidate(List.of(id));
+        metadataIndex.put(updatedImage);
+        metadataIndex.remove(oldImageName);
+        processingPipeline.submit(updatedImage);
+        return updatedImage;
     }
 
     @Override
     public Resource getImageAsResource(String fileName) {
-        Path path = Paths.get(uploadPath).resolve(fileName);
+        StoredBlob blob = imageStorage.find(metadataIndex.lookup(fileName).storageKey())
+                .orElseThrow(ImageNotFoundException::new);
+        if (blob.file().isEmpty()) {
+            return new BlobResource(blob);
+        }
+        Path path = blob.file().get();
         Resource resource = null;
         try {
             resource = new UrlResource(path.toUri());
@@ -137,35 +419,133 @@ public class ImageServiceImpl implements ImageService {
         if (image.isEmpty()) {
             throw new ImageNotFoundException();
         }
-        try {
-            Files.deleteIfExists(Paths.get(uploadPath,image.get().getImageName()));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        transactions.executeWithoutResult(status -> {
+            if (imageRepository.deleteImageById(id) == 0) {
+                // deleted concurrently, whoever did that releases the content
+                throw new ImageNotFoundException();
+            }
+            deletionOutbox.enqueue(List.of(ImageStorage.storageKeyOf(image.get())));
+        });
+        // only once the row is gone, so that no lookup can load it again
+        metadataIndex.remove(image.get().getImageName());
+        imageCounter.decrement();
+        imageCache.invalidate(List.of(id));
+    }
+
+    /**
+     * Serves what it can from the metadata cache and loads the rest with one {@code IN} query.
+     */
+    @Override
+    public BulkResponse<Image> getImagesByIds(List<Long> ids) {
+        List<Long> requested = checkBulkIds(ids);
+        Map<Long, Image> found = imageCache.getImages(requested, imageRepository::findAllById);
+        List<Image> images = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : requested) {
+            if (found.containsKey(id)) {
+                images.add(found.get(id));
+            } else {
+                missing.add(id);
+            }
+        }
+        return new BulkResponse<>(images, missing);
+    }
+
+    /**
+     * Deletes all requested images with one query to load them and one {@code IN} delete, and records
+     * their content for release in the same transaction, so the outbox drops unreferenced blobs together.
+     */
+    @Override
+    public BulkResponse<Long> deleteImages(List<Long> ids) {
+        List<Long> requested = checkBulkIds(ids);
+        List<Image> images = imageRepository.findAllById(requested);
+        Set<Long> found = new HashSet<>();
+        List<String> storageKeys = new ArrayList<>(images.size());
+        for (Image image : images) {
+            found.add(image.getId());
+            storageKeys.add(ImageStorage.storageKeyOf(image));
+        }
+        if (!found.isEmpty()) {
+            transactions.executeWithoutResult(status -> {
+                imageRepository.deleteImagesByIds(found);
+                deletionOutbox.enqueue(storageKeys);
+            });
+            images.forEach(image -> metadataIndex.remove(image.getImageName()));
+            found.forEach(id -> imageCounter.decrement());
+            imageCache.invalidate(found);
         }
-        imageRepository.deleteById(id);
+        List<Long> deleted = requested.stream().filter(found::contains).toList();
+        List<Long> missing = requested.stream().filter(id -> !found.contains(id)).toList();
+        return new BulkResponse<>(deleted, missing);
+    }
+
+    /**
+     * Image count and stored bytes per format, summed by the database from an index.
+     */
+    @Override
+    public StorageUsageResponse getStorageUsage() {
+        return new StorageUsageResponse(imageRepository.usageByFormat());
+    }
+
+    private static List<Long> checkBulkIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new InvalidBatchException("At least one id is required");
+        }
+        List<Long> requested = ids.stream().distinct().toList();
+        if (requested.size() > MAX_BULK_IDS) {
+            throw new InvalidBatchException("At most " + MAX_BULK_IDS + " ids can be given at once");
+        }
+        return requested;
     }
 
 
     public void validateImageFile(MultipartFile file) {
-        String contentType = file.getContentType();
-        String name = file.getOriginalFilename();
+        validateImageFile(file.getContentType(), file.getOriginalFilename());
+    }
 
+    /**
+     * Checks what the client declared, before any content is read: an image content type and one of
+     * the {@link ImageFormat} extensions. The content itself is checked by {@link #checkContent}.
+     */
+    @Override
+    public void validateImageFile(String contentType, String name) {
         if (contentType == null || !contentType.startsWith("image/")) {
             throw new FileTypeNotSupportedException();
         }
 
-        if (name == null || !name.matches("(?i).*\\.(jpg|jpeg|png|gif|bmp|webp)$")) {
+        if (ImageFormat.fromFileName(name) == null) {
             throw new FileTypeNotSupportedException();
         }
     }
 
-    public String getContentType(String imageName) {
-        Path path = Paths.get(uploadPath).resolve(imageName);
+    /**
+     * Sniffs the staged content and rejects it unless it is one of the {@link ImageFormat}s and agrees
+     * with the extension and, when it names a known format, the declared content type.
+     */
+    private static ImageHeader checkContent(StagedUpload staged, String contentType, String name) {
+        ImageHeader header;
         try {
-            return Files.probeContentType(path);
+            header = ImageSniffer.sniff(staged.file());
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new UncheckedIOException(e);
+        }
+        if (header == null) {
+            throw new FileTypeNotSupportedException();
         }
+        ImageFormat declared = ImageFormat.fromMediaType(contentType);
+        if (header.format() != ImageFormat.fromFileName(name) || (declared != null && declared != header.format())) {
+            throw new ImageContentMismatchException(header.format());
+        }
+        return header;
+    }
+
+    private String generateImageName(String originalName) {
+        Objects.requireNonNull(originalName);
+        return System.currentTimeMillis() + "_" + UUID.randomUUID() + originalName.substring(originalName.lastIndexOf("."));
+    }
+
+    public String getContentType(String imageName) {
+        return metadataIndex.lookup(imageName).contentType().toString();
     }
 
 }
@@ -0,0 +1,297 @@
+package com.janak.imageapi.Services;
+
+import com.janak.imageapi.Exception.ImageNotFoundException;
+import com.janak.imageapi.Exception.InvalidImageVariantException;
+import com.janak.imageapi.Exception.ServiceUnavailableException;
+import com.janak.imageapi.models.ImageMetadata;
+import com.janak.imageapi.models.ImageVariantSpec;
+import com.janak.imageapi.storage.ImageStorage;
+import com.janak.imageapi.storage.StoredBlob;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates resized or re-encoded renditions of stored images on first request and keeps them under
+ * {@code file.variant-dir/<storageKey>/}, so later requests are plain file reads and images sharing
+ * content share their renditions. Concurrent requests for the same rendition wait on a single
+ * generation instead of decoding the original in parallel.
+ * <p>
+ * Widths and heights are limited to {@code image.variant.sizes}, so the renditions an image can have,
+ * and the decodes it can cost, are a small fixed set rather than whatever a query string asks for.
+ * A decode can take a few hundred megabytes of heap, so at most {@code max-concurrent-generations} run
+ * at once, by default as many as the CPU pool has threads; a request that finds them all busy for
+ * {@code max-wait} is answered with 503 and a Retry-After header.
+ */
+@Service
+public class ImageVariantService {
+
+    // refuse to decode anything larger than this, a small file can still expand to gigabytes of pixels
+    private static final long MAX_SOURCE_PIXELS = 50_000_000L;
+
+    private static final MediaType IMAGE_BMP = MediaType.parseMediaType("image/bmp");
+
+    private final ImageStorage imageStorage;
+
+    private final Path variantDir;
+
+    private final SortedSet<Integer> sizes;
+
+    private final Semaphore generations;
+
+    private final long maxWaitNanos;
+
+    private final Map<Path, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong generated = new AtomicLong();
+
+    public ImageVariantService(ImageStorage imageStorage,
+                               @Value("${file.variant-dir}") String variantPath,
+                               @Value("${image.variant.sizes:64,128,256,512,1024,2048}") List<Integer> sizes,
+                               @Value("${image.variant.max-concurrent-generations:${image.processing.cpu-threads:0}}") int maxConcurrentGenerations,
+                               @Value("${image.variant.max-wait:1s}") Duration maxWait) {
+        this.imageStorage = imageStorage;
+        this.variantDir = Paths.get(variantPath).toAbsolutePath().normalize();
+        this.sizes = new TreeSet<>(sizes);
+        this.generations = new Semaphore(maxConcurrentGenerations > 0 ? maxConcurrentGenerations
+                : Runtime.getRuntime().availableProcessors());
+        this.maxWaitNanos = maxWait.toNanos();
+    }
+
+    /**
+     * Returns the file holding the requested rendition of an image, generating it if needed.
+     */
+    public Path resolve(ImageMetadata metadata, ImageVariantSpec spec) {
+        checkSize(spec.width(), "width");
+        checkSize(spec.height(), "height");
+        Path imageVariantDir = variantDir.resolve(metadata.storageKey()).normalize();
+        if (!imageVariantDir.startsWith(variantDir)) {
+            throw new ImageNotFoundException();
+        }
+        String format = outputFormat(metadata.contentType(), spec);
+        Path target = imageVariantDir.resolve(spec.fileName(format));
+        if (Files.exists(target)) {
+            return target;
+        }
+
+        CompletableFuture<Path> generation = new CompletableFuture<>();
+        CompletableFuture<Path> running = inFlight.putIfAbsent(target, generation);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            if (!Files.exists(target)) {
+                acquireGeneration();
+                try {
+                    generate(metadata.storageKey(), target, spec, format);
+                } finally {
+                    generations.release();
+                }
+            }
+            generation.complete(target);
+            return target;
+        } catch (RuntimeException e) {
+            generation.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(target, generation);
+        }
+    }
+
+    public MediaType contentType(ImageMetadata metadata, ImageVariantSpec spec) {
+        return switch (outputFormat(metadata.contentType(), spec)) {
+            case "jpg" -> MediaType.IMAGE_JPEG;
+            case "png" -> MediaType.IMAGE_PNG;
+            case "gif" -> MediaType.IMAGE_GIF;
+            default -> IMAGE_BMP;
+        };
+    }
+
+    /**
+     * Number of renditions generated since startup, as opposed to served from the variant store.
+     */
+    public long generatedCount() {
+        return generated.get();
+    }
+
+    /**
+     * Removes every rendition of the content stored under {@code storageKey}. Called when the stored
+     * file is deleted.
+     */
+    public void purge(String storageKey) {
+        Path imageVariantDir = variantDir.resolve(storageKey).normalize();
+        if (!imageVariantDir.startsWith(variantDir) || imageVariantDir.equals(variantDir)) {
+            return;
+        }
+        try {
+            FileSystemUtils.deleteRecursively(imageVariantDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void acquireGeneration() {
+        try {
+            if (generations.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new ServiceUnavailableException("Too many renditions being generated, retry shortly", 1);
+    }
+
+    private void checkSize(int size, String name) {
+        // 0 is derived from the other dimension or kept from the original
+        if (size != 0 && !sizes.contains(size)) {
+            throw new InvalidImageVariantException(name + " must be one of " + sizes);
+        }
+    }
+
+    private String outputFormat(MediaType sourceType, ImageVariantSpec spec) {
+        if (spec.format() != null) {
+            return spec.format();
+        }
+        return switch (sourceType.getSubtype().toLowerCase(Locale.ROOT)) {
+            case "jpeg", "jpg", "pjpeg" -> "jpg";
+            case "gif" -> "gif";
+            case "bmp", "x-bmp", "x-ms-bmp" -> "bmp";
+            // png, and formats ImageIO cannot write such as webp
+            default -> "png";
+        };
+    }
+
+    private void generate(String storageKey, Path target, ImageVariantSpec spec, String format) {
+        // jpg and bmp have no alpha channel, render those onto an opaque background
+        boolean opaque = format.equals("jpg") || format.equals("bmp");
+        BufferedImage rendition = render(decode(storageKey), spec, opaque);
+        Path tempFile = null;
+        try {
+            Files.createDirectories(target.getParent());
+            tempFile = Files.createTempFile(target.getParent(), ".variant-", ".tmp");
+            if (!ImageIO.write(rendition, format, tempFile.toFile())) {
+                throw new InvalidImageVariantException("format " + format + " cannot be written");
+            }
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            tempFile = null;
+            generated.incrementAndGet();
+            if (!imageStorage.exists(storageKey)) {
+                // the original was replaced or deleted while we were rendering
+                Files.deleteIfExists(target);
+                throw new ImageNotFoundException();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                    // best effort cleanup of a temp file
+                }
+            }
+        }
+    }
+
+    private BufferedImage decode(String storageKey) {
+        StoredBlob source = imageStorage.find(storageKey).orElseThrow(ImageNotFoundException::new);
+        // decode local files directly, anything else from the stream
+        try (InputStream content = source.file().isPresent() ? null : source.openStream();
+             ImageInputStream input = ImageIO.createImageInputStream(
+                     content != null ? content : source.file().get().toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new InvalidImageVariantException("Image format cannot be resized");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_SOURCE_PIXELS) {
+                    throw new InvalidImageVariantException("Image is too large to resize");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            throw new InvalidImageVariantException("Image could not be decoded");
+        }
+    }
+
+    private static BufferedImage render(BufferedImage original, ImageVariantSpec spec, boolean opaque) {
+        int sourceWidth = original.getWidth();
+        int sourceHeight = original.getHeight();
+        int boxWidth = sourceWidth;
+        int boxHeight = sourceHeight;
+        // neither given: re-encode only, at the original size
+        if (spec.width() > 0 || spec.height() > 0) {
+            boxWidth = spec.width() > 0 ? spec.width() : Math.max(1, Math.round((float) sourceWidth * spec.height() / sourceHeight));
+            boxHeight = spec.height() > 0 ? spec.height() : Math.max(1, Math.round((float) sourceHeight * spec.width() / sourceWidth));
+        }
+
+        int canvasWidth = boxWidth;
+        int canvasHeight = boxHeight;
+        int drawWidth = boxWidth;
+        int drawHeight = boxHeight;
+        if (spec.fit() == ImageVariantSpec.Fit.CONTAIN) {
+            double scale = Math.min(1.0, Math.min((double) boxWidth / sourceWidth, (double) boxHeight / sourceHeight));
+            drawWidth = canvasWidth = Math.max(1, (int) Math.round(sourceWidth * scale));
+            drawHeight = canvasHeight = Math.max(1, (int) Math.round(sourceHeight * scale));
+        } else if (spec.fit() == ImageVariantSpec.Fit.COVER) {
+            double scale = Math.max((double) boxWidth / sourceWidth, (double) boxHeight / sourceHeight);
+            drawWidth = Math.max(boxWidth, (int) Math.round(sourceWidth * scale));
+            drawHeight = Math.max(boxHeight, (int) Math.round(sourceHeight * scale));
+        }
+
+        BufferedImage rendition = new BufferedImage(canvasWidth, canvasHeight,
+                opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = rendition.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (opaque) {
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, canvasWidth, canvasHeight);
+            }
+            int x = (canvasWidth - drawWidth) / 2;
+            int y = (canvasHeight - drawHeight) / 2;
+            graphics.drawImage(original, x, y, drawWidth, drawHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+        return rendition;
+    }
+}
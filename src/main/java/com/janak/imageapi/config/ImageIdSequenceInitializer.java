@@ -0,0 +1,44 @@
+package com.janak.imageapi.config;
+
+import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.models.Image;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves the {@code image_seq} id sequence past ids handed out by AUTO_INCREMENT before {@link Image}
+ * switched to pooled sequence ids. Only needed on MySQL, where Hibernate keeps the sequence in a
+ * one-row table that starts at 1 however many rows already exist. Runs before the web server starts.
+ */
+@Slf4j
+@Component
+public class ImageIdSequenceInitializer {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // the repository is only here so this runs after Hibernate has updated the schema
+    public ImageIdSequenceInitializer(JdbcTemplate jdbcTemplate, ImageRepository imageRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void catchUp() {
+        try {
+            Long maxId = jdbcTemplate.queryForObject("select max(id) from image", Long.class);
+            if (maxId == null) {
+                return;
+            }
+            // the pooled optimizer hands out the block ending at the stored value
+            long nextValue = maxId + Image.ID_ALLOCATION_SIZE;
+            if (jdbcTemplate.update("update image_seq set next_val = ? where next_val < ?", nextValue, nextValue) > 0) {
+                log.info("Moved image id sequence past existing id {}", maxId);
+            }
+        } catch (DataAccessException e) {
+            // databases with native sequences have no image_seq table
+            log.debug("Image id sequence not adjusted", e);
+        }
+    }
+}
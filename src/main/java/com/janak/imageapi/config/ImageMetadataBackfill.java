@@ -0,0 +1,89 @@
+package com.janak.imageapi.config;
+
+import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.Services.ImageMetadataCache;
+import com.janak.imageapi.Services.ImageMetadataIndex;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.models.ImageFormat;
+import com.janak.imageapi.storage.ImageStorage;
+import com.janak.imageapi.storage.StoredBlob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fills in {@code imageSizeBytes} and {@code format} for rows stored before they were recorded, so that
+ * usage sums and format filters cover every row. The size comes from the stored blob, the format from
+ * the stored content type. Rows that are complete are never touched, so after the first run this is a
+ * single indexed query. Each batch is dropped from the metadata cache, here and on the peers, and
+ * refreshed in the metadata index as soon as it is written, so neither keeps serving the missing values.
+ */
+@Slf4j
+@Component
+public class ImageMetadataBackfill {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final ImageRepository imageRepository;
+
+    private final ImageStorage imageStorage;
+
+    private final ImageMetadataCache imageCache;
+
+    private final ImageMetadataIndex metadataIndex;
+
+    private final boolean enabled;
+
+    public ImageMetadataBackfill(ImageRepository imageRepository, ImageStorage imageStorage,
+                                 ImageMetadataCache imageCache, ImageMetadataIndex metadataIndex,
+                                 @Value("${image.metadata-backfill.enabled:true}") boolean enabled) {
+        this.imageRepository = imageRepository;
+        this.imageStorage = imageStorage;
+        this.imageCache = imageCache;
+        this.metadataIndex = metadataIndex;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!enabled) {
+            return;
+        }
+        long lastId = 0;
+        int total = 0;
+        List<Image> batch;
+        do {
+            batch = imageRepository.findIncompleteAfter(lastId, Limit.of(BATCH_SIZE));
+            List<Long> filled = new ArrayList<>();
+            for (Image image : batch) {
+                lastId = image.getId();
+                Long size = image.getImageSizeBytes() != null ? image.getImageSizeBytes()
+                        : imageStorage.find(ImageStorage.storageKeyOf(image)).map(StoredBlob::size).orElse(null);
+                ImageFormat format = image.getFormat() != null ? image.getFormat()
+                        : ImageFormat.fromMediaType(image.getImageType());
+                boolean learned = (image.getImageSizeBytes() == null && size != null)
+                        || (image.getFormat() == null && format != null);
+                if (learned && imageRepository.fillSizeAndFormat(image.getId(), size, format) > 0) {
+                    filled.add(image.getId());
+                    // keep the index in step with the row just written
+                    image.setImageSizeBytes(size);
+                    image.setFormat(format);
+                    metadataIndex.put(image);
+                }
+            }
+            if (!filled.isEmpty()) {
+                imageCache.invalidate(filled);
+                total += filled.size();
+            }
+        } while (batch.size() == BATCH_SIZE);
+        if (total > 0) {
+            log.info("Recorded size and format for {} older images", total);
+        }
+    }
+}
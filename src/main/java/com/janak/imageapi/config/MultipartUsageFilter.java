@@ -0,0 +1,65 @@
+package com.janak.imageapi.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks multipart requests in flight. With {@code spring.servlet.multipart.file-size-threshold=0B}
+ * Tomcat spools every part to a temp file and deletes it when the request ends, so the declared length
+ * of these requests is what the multipart temp directory holds at the moment, give or take the part
+ * headers. Exported as {@code image.multipart.requests.active} and {@code image.multipart.bytes.active}.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class MultipartUsageFilter extends OncePerRequestFilter implements MeterBinder {
+
+    private final AtomicInteger activeRequests = new AtomicInteger();
+
+    private final AtomicLong activeBytes = new AtomicLong();
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("image.multipart.requests.active", activeRequests, AtomicInteger::get)
+                .description("Multipart requests being received or handled")
+                .register(registry);
+        Gauge.builder("image.multipart.bytes.active", activeBytes, AtomicLong::get)
+                .description("Declared length of the multipart requests in flight, spooled to temp files")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType == null || !contentType.regionMatches(true, 0, MediaType.MULTIPART_FORM_DATA_VALUE, 0,
+                MediaType.MULTIPART_FORM_DATA_VALUE.length());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        // chunked requests declare no length, they are only counted
+        long length = Math.max(request.getContentLengthLong(), 0);
+        activeRequests.incrementAndGet();
+        activeBytes.addAndGet(length);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            activeBytes.addAndGet(-length);
+            activeRequests.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.janak.imageapi.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executors for the post-upload pipeline. I/O stages run on virtual threads when the JVM has them and
+ * on a small platform pool otherwise; decode/encode stages share a fixed pool sized to the CPU count.
+ * Both are bounded in practice by the pipeline's admission limit.
+ */
+@Configuration
+@EnableScheduling
+public class ProcessingConfig {
+
+    @Bean
+    public AsyncTaskExecutor imageIoExecutor(@Value("${image.processing.io-threads:16}") int ioThreads) {
+        if (JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("image-io-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(ioThreads);
+        executor.setMaxPoolSize(ioThreads);
+        executor.setThreadNamePrefix("image-io-");
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor imageCpuExecutor(@Value("${image.processing.cpu-threads:0}") int cpuThreads,
+                                                   @Value("${image.processing.queue-capacity:256}") int queueCapacity) {
+        int threads = cpuThreads > 0 ? cpuThreads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("image-cpu-");
+        return executor;
+    }
+}
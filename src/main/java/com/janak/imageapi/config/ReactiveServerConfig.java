@@ -0,0 +1,38 @@
+package com.janak.imageapi.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * Server setup for the reactive edge variant, active with {@code spring.main.web-application-type=reactive}
+ * (see {@code application-edge.properties}). Netty runs on a small, fixed set of event-loop threads, and
+ * JPA and other blocking calls are moved onto a bounded scheduler sized like the connection pool, so a
+ * slow database never stalls an event loop.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveServerConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public LoopResources imageEventLoops(@Value("${image.reactive.event-loop-threads:0}") int eventLoopThreads) {
+        int workers = eventLoopThreads > 0 ? eventLoopThreads : Runtime.getRuntime().availableProcessors();
+        return LoopResources.create("image-edge", 1, workers, true);
+    }
+
+    @Bean
+    public NettyServerCustomizer imageEventLoopCustomizer(LoopResources imageEventLoops) {
+        return server -> server.runOn(imageEventLoops);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler imageBlockingScheduler(@Value("${image.reactive.blocking-threads:20}") int threads,
+                                            @Value("${image.reactive.blocking-queue:10000}") int queueCapacity) {
+        return Schedulers.newBoundedElastic(threads, queueCapacity, "image-blocking");
+    }
+}
@@ -0,0 +1,200 @@
+package com.janak.imageapi.config;
+
+import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.Services.BlobDeletionOutbox;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.storage.ImageStorage;
+import com.janak.imageapi.storage.LocalBlobStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Finds what the write path can leave behind when the process dies mid-request: stored files no row
+ * references, staging files that were never committed, and rows whose content is missing. The shard
+ * directories of {@code file.upload-dir} are scanned in parallel. Unreferenced files go through the
+ * {@link BlobDeletionOutbox}, which checks the references again before deleting; rows without content
+ * are only reported. Files younger than {@code file.storage.reconcile.grace-period} are left alone, as
+ * they may belong to an upload that is still being committed.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "file.storage.backend", havingValue = "local", matchIfMissing = true)
+public class StorageReconciler {
+
+    private static final int BATCH_SIZE = 1000;
+
+    // dangling row ids written to the log, the rest are only counted
+    private static final int MAX_LOGGED_IDS = 20;
+
+    private final ImageRepository imageRepository;
+
+    private final ImageStorage imageStorage;
+
+    private final BlobDeletionOutbox deletionOutbox;
+
+    private final Path root;
+
+    private final Duration gracePeriod;
+
+    public StorageReconciler(ImageRepository imageRepository, ImageStorage imageStorage,
+                             BlobDeletionOutbox deletionOutbox, LocalBlobStore blobStore,
+                             @Value("${file.storage.reconcile.grace-period:1h}") Duration gracePeriod) {
+        this.imageRepository = imageRepository;
+        this.imageStorage = imageStorage;
+        this.deletionOutbox = deletionOutbox;
+        this.root = blobStore.root();
+        this.gracePeriod = gracePeriod;
+    }
+
+    @Scheduled(cron = "${file.storage.reconcile.cron:-}")
+    public Result reconcile() {
+        Instant cutoff = Instant.now().minus(gracePeriod);
+        Queue<String> candidates = new ConcurrentLinkedQueue<>();
+        AtomicInteger files = new AtomicInteger();
+        AtomicInteger staleTempFiles = new AtomicInteger();
+        // listed up front, a sized list splits evenly over the workers
+        scan().parallelStream().forEach(file -> {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                // deleted while scanning
+                return;
+            }
+            boolean old = attributes.lastModifiedTime().toInstant().isBefore(cutoff);
+            String name = file.getFileName().toString();
+            if (name.startsWith(".")) {
+                // staging files of uploads that never reached commit
+                if (old && deleteQuietly(file)) {
+                    staleTempFiles.incrementAndGet();
+                }
+                return;
+            }
+            files.incrementAndGet();
+            if (old) {
+                candidates.add(name);
+            }
+        });
+
+        List<String> orphans = new ArrayList<>();
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        for (String key : candidates) {
+            batch.add(key);
+            if (batch.size() == BATCH_SIZE) {
+                orphans.addAll(unreferenced(batch));
+                batch.clear();
+            }
+        }
+        orphans.addAll(unreferenced(batch));
+        deletionOutbox.enqueue(orphans);
+
+        int danglingRows = findDanglingRows();
+        Result result = new Result(files.get(), orphans.size(), staleTempFiles.get(), danglingRows);
+        log.info("Storage reconciled: {}", result);
+        return result;
+    }
+
+    /**
+     * Every file in the shard directories, plus files written to the upload directory itself before
+     * sharding. Other directories, such as renditions or segments kept under the same root, are skipped.
+     */
+    private List<Path> scan() {
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        try (Stream<Path> entries = Files.list(root)) {
+            return entries.toList().parallelStream()
+                    .flatMap(entry -> {
+                        if (Files.isRegularFile(entry)) {
+                            return Stream.of(entry);
+                        }
+                        if (!isShard(entry)) {
+                            return Stream.empty();
+                        }
+                        try (Stream<Path> shard = Files.find(entry, 2, (path, attributes) -> attributes.isRegularFile()
+                                && path.getNameCount() == entry.getNameCount() + 2 && isShard(path.getParent()))) {
+                            return shard.toList().stream();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Set<String> unreferenced(List<String> keys) {
+        if (keys.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> unreferenced = new HashSet<>(keys);
+        unreferenced.removeAll(imageRepository.findReferencedKeys(keys));
+        return unreferenced;
+    }
+
+    private int findDanglingRows() {
+        List<Long> dangling = new ArrayList<>();
+        long lastId = 0;
+        List<Image> batch;
+        do {
+            batch = imageRepository.findTop1000ByIdGreaterThanOrderByIdAsc(lastId);
+            if (batch.isEmpty()) {
+                break;
+            }
+            lastId = batch.get(batch.size() - 1).getId();
+            batch.parallelStream()
+                    .filter(image -> !imageStorage.exists(ImageStorage.storageKeyOf(image)))
+                    .map(Image::getId)
+                    .sorted()
+                    .forEachOrdered(dangling::add);
+        } while (batch.size() == BATCH_SIZE);
+        if (!dangling.isEmpty()) {
+            log.warn("{} images have no stored content, e.g. ids {}", dangling.size(),
+                    dangling.subList(0, Math.min(dangling.size(), MAX_LOGGED_IDS)));
+        }
+        return dangling.size();
+    }
+
+    private static boolean isShard(Path directory) {
+        String name = directory.getFileName().toString();
+        return name.length() == 2 && Character.digit(name.charAt(0), 16) >= 0 && Character.digit(name.charAt(1), 16) >= 0;
+    }
+
+    private static boolean deleteQuietly(Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Could not delete stale staging file {}", file, e);
+            return false;
+        }
+    }
+
+    /**
+     * @param files          stored files found
+     * @param orphanedFiles  files no row references, handed to the deletion outbox
+     * @param staleTempFiles staging files deleted
+     * @param danglingRows   rows whose content is missing
+     */
+    public record Result(int files, int orphanedFiles, int staleTempFiles, int danglingRows) {
+    }
+}
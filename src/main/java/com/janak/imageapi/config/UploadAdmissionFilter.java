@@ -0,0 +1,211 @@
+package com.janak.imageapi.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.janak.imageapi.Exception.TooManyRequestsException;
+import com.janak.imageapi.utils.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control for the upload endpoints ({@link #UPLOAD_PATHS}), applied before Tomcat reads the multipart body, so a rejected upload
+ * costs neither disk bandwidth nor a temp file. Each client, named by {@code client-header} or else by
+ * its address, has two {@link TokenBucket}s, one for requests and one for the declared bytes (or
+ * {@code unknown-length-cost} for a chunked body, which would otherwise drain the whole bucket); on top
+ * of that at most {@code max-concurrent} uploads run at once, and up to {@code max-waiting} more wait
+ * at most {@code max-wait} for a slot. Everything beyond is answered with 429 and a Retry-After header
+ * right away, and counted in {@code image.upload.rejected}.
+ * <p>
+ * Behind a proxy, set {@code server.forward-headers-strategy} so the address is the client's.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "image.upload.limit.enabled", havingValue = "true", matchIfMissing = true)
+// after the observation filter, so rejections show up in http.server.requests too
+@Order(Ordered.HIGHEST_PRECEDENCE + 100)
+public class UploadAdmissionFilter extends OncePerRequestFilter {
+
+    // idle clients are forgotten after this, which refills their buckets anyway
+    private static final Duration CLIENT_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    private static final Set<String> UPLOAD_PATHS = Set.of("/api/images/upload", "/api/images/upload/batch");
+
+    private final double requestsPerSecond;
+
+    private final long requestBurst;
+
+    private final double bytesPerSecond;
+
+    private final long byteBurst;
+
+    private final long unknownLengthCost;
+
+    private final String clientHeader;
+
+    private final int maxConcurrent;
+
+    private final Semaphore slots;
+
+    private final int maxWaiting;
+
+    private final long maxWaitNanos;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final Cache<String, ClientLimits> clients;
+
+    private final HandlerExceptionResolver exceptionResolver;
+
+    private final Counter requestRateRejections;
+
+    private final Counter byteRateRejections;
+
+    private final Counter concurrencyRejections;
+
+    public UploadAdmissionFilter(@Value("${image.upload.limit.requests-per-second:20}") double requestsPerSecond,
+                                 @Value("${image.upload.limit.request-burst:40}") long requestBurst,
+                                 @Value("${image.upload.limit.bytes-per-second:50MB}") DataSize bytesPerSecond,
+                                 @Value("${image.upload.limit.byte-burst:200MB}") DataSize byteBurst,
+                                 @Value("${image.upload.limit.unknown-length-cost:20MB}") DataSize unknownLengthCost,
+                                 @Value("${image.upload.limit.client-header:}") String clientHeader,
+                                 @Value("${image.upload.limit.max-clients:100000}") long maxClients,
+                                 @Value("${image.upload.limit.max-concurrent:64}") int maxConcurrent,
+                                 @Value("${image.upload.limit.max-waiting:128}") int maxWaiting,
+                                 @Value("${image.upload.limit.max-wait:200ms}") Duration maxWait,
+                                 MeterRegistry registry,
+                                 @Qualifier("handlerExceptionResolver") HandlerExceptionResolver exceptionResolver) {
+        this.requestsPerSecond = requestsPerSecond;
+        this.requestBurst = requestBurst;
+        this.bytesPerSecond = bytesPerSecond.toBytes();
+        this.byteBurst = byteBurst.toBytes();
+        this.unknownLengthCost = unknownLengthCost.toBytes();
+        this.clientHeader = clientHeader;
+        this.maxConcurrent = maxConcurrent;
+        this.slots = new Semaphore(maxConcurrent);
+        this.maxWaiting = maxWaiting;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.clients = Caffeine.newBuilder().maximumSize(maxClients).expireAfterAccess(CLIENT_IDLE_TIMEOUT).build();
+        this.exceptionResolver = exceptionResolver;
+        this.requestRateRejections = rejections(registry, "request-rate");
+        this.byteRateRejections = rejections(registry, "byte-rate");
+        this.concurrencyRejections = rejections(registry, "concurrency");
+        Gauge.builder("image.upload.active", slots, s -> maxConcurrent - s.availablePermits())
+                .description("Uploads holding a slot")
+                .register(registry);
+        Gauge.builder("image.upload.waiting", waiting, AtomicInteger::get)
+                .description("Uploads waiting for a slot")
+                .register(registry);
+    }
+
+    private static Counter rejections(MeterRegistry registry, String reason) {
+        return Counter.builder("image.upload.rejected")
+                .description("Uploads answered with 429 before their body was read")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!"POST".equals(request.getMethod())
+                || !UPLOAD_PATHS.contains(request.getRequestURI().substring(request.getContextPath().length()))) {
+            return true;
+        }
+        String contentType = request.getContentType();
+        return contentType == null || !contentType.regionMatches(true, 0, MediaType.MULTIPART_FORM_DATA_VALUE, 0,
+                MediaType.MULTIPART_FORM_DATA_VALUE.length());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ClientLimits limits = clients.get(clientKey(request), key -> new ClientLimits(
+                new TokenBucket(requestsPerSecond, requestBurst), new TokenBucket(bytesPerSecond, byteBurst)));
+        long now = System.nanoTime();
+        long wait = limits.requests().tryTake(1, now);
+        if (wait > 0) {
+            reject(request, response, requestRateRejections, "Too many uploads, slow down", wait);
+            return;
+        }
+        long length = request.getContentLengthLong();
+        long bytes = length >= 0 ? length : unknownLengthCost;
+        wait = limits.bytes().tryTake(bytes, now);
+        if (wait > 0) {
+            reject(request, response, byteRateRejections, "Upload volume limit reached, slow down", wait);
+            return;
+        }
+        if (!acquireSlot()) {
+            // the server is busy, not the client: its retry must not be held against its rates
+            limits.requests().giveBack(1);
+            limits.bytes().giveBack(bytes);
+            reject(request, response, concurrencyRejections, "Server is busy with other uploads", TimeUnit.SECONDS.toNanos(1));
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            slots.release();
+        }
+    }
+
+    private String clientKey(HttpServletRequest request) {
+        if (!clientHeader.isEmpty()) {
+            String key = request.getHeader(clientHeader);
+            if (key != null && !key.isEmpty()) {
+                return key;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private boolean acquireSlot() {
+        if (slots.tryAcquire()) {
+            return true;
+        }
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            return false;
+        }
+        try {
+            return slots.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, Counter counter, String message,
+                        long waitNanos) {
+        counter.increment();
+        long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        // rendered by GlobalExceptionHandler, like every other error
+        exceptionResolver.resolveException(request, response, null, new TooManyRequestsException(message, retryAfterSeconds));
+    }
+
+    private record ClientLimits(TokenBucket requests, TokenBucket bytes) {
+    }
+}
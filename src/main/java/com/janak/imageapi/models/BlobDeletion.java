@@ -0,0 +1,36 @@
+package com.janak.imageapi.models;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A stored blob that may have lost its last reference, written in the same transaction that deleted or
+ * repointed the row. The blob itself is released later by the outbox worker, which checks again whether
+ * anything still references it, so an entry never deletes content that is in use.
+ */
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BlobDeletion {
+
+    // pooled ids, so the entries of a bulk delete are inserted in one batch
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "blob_deletion_seq")
+    @SequenceGenerator(name = "blob_deletion_seq", sequenceName = "blob_deletion_seq", allocationSize = 50)
+    private long id;
+
+    private String storageKey;
+
+    private Instant requestedAt;
+}
@@ -0,0 +1,8 @@
+package com.janak.imageapi.models;
+
+/**
+ * Number of images and stored bytes for one {@link ImageFormat}; {@code format} is {@code null} for rows
+ * whose format is not known yet.
+ */
+public record FormatUsage(ImageFormat format, long images, long bytes) {
+}
@@ -1,14 +1,21 @@
 package com.janak.imageapi.models;
 
+import com.janak.imageapi.utils.FileUtils;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
 
 
 import java.util.Date;
@@ -18,18 +25,63 @@ import java.util.Date;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@Table(indexes = {
+        @Index(name = "idx_image_name", columnList = "imageName", unique = true),
+        @Index(name = "idx_image_storage_key", columnList = "storageKey"),
+        // keyset paging by upload time, see ImageCursor
+        @Index(name = "idx_image_uploaded_at", columnList = "uploadedAt, id"),
+        // incremental exports, see ImageExportService
+        @Index(name = "idx_image_updated_at", columnList = "updatedAt, id"),
+        @Index(name = "idx_image_content_hash", columnList = "contentHash"),
+        // usage per format is answered from the index alone, see ImageRepository.usageByFormat
+        @Index(name = "idx_image_format_size", columnList = "format, imageSizeBytes"),
+        // searches, see ImageSearch: by type in upload order, in size order, and by dimensions
+        @Index(name = "idx_image_format_uploaded_at", columnList = "format, uploadedAt, id"),
+        @Index(name = "idx_image_size", columnList = "imageSizeBytes, id"),
+        @Index(name = "idx_image_dimensions", columnList = "width, height")
+})
 public class Image {
+
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // pooled ids rather than IDENTITY, so inserts can be batched; MySQL emulates the sequence with a table
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "image_seq")
+    @SequenceGenerator(name = "image_seq", sequenceName = "image_seq", allocationSize = Image.ID_ALLOCATION_SIZE)
     private long id;
 
     private String imageName;
 
     private String imageType;
 
-    private String imageSize;
+    @Enumerated(EnumType.STRING)
+    private ImageFormat format;
+
+    private Long imageSizeBytes;
+
+    // hex SHA-256 of the stored bytes, used as the strong ETag when serving
+    private String contentHash;
+
+    // where the content is stored, see ImageStorage; rows sharing content share the key
+    private String storageKey;
+
+    private Integer width;
+
+    private Integer height;
+
+    @Enumerated(EnumType.STRING)
+    private ProcessingStatus processingStatus;
     @CreationTimestamp
     private Date uploadedAt;
 
+    // set on insert and every entity update; the bulk updates in ImageRepository set it themselves
+    @UpdateTimestamp
+    private Date updatedAt;
 
+    /**
+     * Human-readable size for API responses, formatted when serialized rather than stored.
+     */
+    public String getImageSize() {
+        return imageSizeBytes != null && imageSizeBytes >= 0 ? FileUtils.getReadableFileSize(imageSizeBytes) : null;
+    }
 }
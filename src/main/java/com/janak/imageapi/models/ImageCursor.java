@@ -0,0 +1,142 @@
+package com.janak.imageapi.models;
+
+import com.janak.imageapi.Exception.InvalidCursorException;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Position in a keyset-paginated listing: the order of the listing and the sort key of the last image
+ * returned. Clients only ever see it as an opaque token, and the next page is fetched by seeking past
+ * that key instead of skipping rows, so deep pages cost the same as the first one.
+ *
+ * @param uploadedAt upload time of the last image, only set for {@link Order#NEWEST} and {@link Order#OLDEST}
+ * @param sizeBytes  byte size of the last image, only set for {@link Order#LARGEST} and {@link Order#SMALLEST}
+ */
+public record ImageCursor(Order order, long id, Instant uploadedAt, Long sizeBytes) {
+
+    private static final String VERSION = "v1";
+
+    public enum Order {
+        /** ascending id, the order of the offset listing */
+        ID(null, Sort.Direction.ASC),
+        /** most recently uploaded first, ties broken by id */
+        NEWEST("uploadedAt", Sort.Direction.DESC),
+        /** least recently uploaded first, ties broken by id */
+        OLDEST("uploadedAt", Sort.Direction.ASC),
+        /** biggest files first, ties broken by id */
+        LARGEST("imageSizeBytes", Sort.Direction.DESC),
+        /** smallest files first, ties broken by id */
+        SMALLEST("imageSizeBytes", Sort.Direction.ASC);
+
+        private final String key;
+        private final Sort sort;
+
+        Order(String key, Sort.Direction direction) {
+            this.key = key;
+            this.sort = key == null ? Sort.by(direction, "id") : Sort.by(direction, key, "id");
+        }
+
+        /**
+         * The property sorted on before the id, or {@code null} when sorting by id alone.
+         */
+        public String key() {
+            return key;
+        }
+
+        public Sort sort() {
+            return sort;
+        }
+
+        public static Order of(String value) {
+            if (value == null) {
+                return ID;
+            }
+            return switch (value.toLowerCase(Locale.ROOT)) {
+                case "id" -> ID;
+                case "newest" -> NEWEST;
+                case "oldest" -> OLDEST;
+                case "largest" -> LARGEST;
+                case "smallest" -> SMALLEST;
+                default -> throw new InvalidCursorException("order must be one of id, newest, oldest, largest, smallest");
+            };
+        }
+    }
+
+    public ImageCursor(Order order, long id, Instant uploadedAt) {
+        this(order, id, uploadedAt, null);
+    }
+
+    /**
+     * Cursor pointing just past {@code image} in a listing sorted by {@code order}.
+     */
+    public static ImageCursor after(Order order, Image image) {
+        return switch (order) {
+            case ID -> new ImageCursor(order, image.getId(), null);
+            // Timestamp.toInstant keeps the nanos, so rows within the same millisecond are not skipped
+            case NEWEST, OLDEST -> new ImageCursor(order, image.getId(), image.getUploadedAt().toInstant());
+            case LARGEST, SMALLEST -> new ImageCursor(order, image.getId(), null, image.getImageSizeBytes());
+        };
+    }
+
+    /**
+     * Keyset position to continue from, with the keys in the order of {@link Order#sort()}.
+     */
+    public ScrollPosition position() {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        if (uploadedAt != null) {
+            keys.put(order.key(), Timestamp.from(uploadedAt));
+        }
+        if (sizeBytes != null) {
+            keys.put(order.key(), sizeBytes);
+        }
+        keys.put("id", id);
+        return ScrollPosition.forward(keys);
+    }
+
+    public String encode() {
+        String token = VERSION + ":" + order.name() + ":" + id;
+        if (uploadedAt != null) {
+            token += ":" + uploadedAt.getEpochSecond() + ":" + uploadedAt.getNano();
+        }
+        if (sizeBytes != null) {
+            token += ":" + sizeBytes;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ImageCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+            if (parts.length < 3 || !parts[0].equals(VERSION)) {
+                throw new InvalidCursorException("cursor is invalid");
+            }
+            Order order = Order.valueOf(parts[1]);
+            long id = Long.parseLong(parts[2]);
+            int expectedParts = switch (order) {
+                case ID -> 3;
+                case NEWEST, OLDEST -> 5;
+                case LARGEST, SMALLEST -> 4;
+            };
+            if (parts.length != expectedParts) {
+                throw new InvalidCursorException("cursor is invalid");
+            }
+            return switch (order) {
+                case ID -> new ImageCursor(order, id, null);
+                case NEWEST, OLDEST -> new ImageCursor(order, id,
+                        Instant.ofEpochSecond(Long.parseLong(parts[3]), Long.parseLong(parts[4])));
+                case LARGEST, SMALLEST -> new ImageCursor(order, id, null, Long.parseLong(parts[3]));
+            };
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new InvalidCursorException("cursor is invalid");
+        }
+    }
+}
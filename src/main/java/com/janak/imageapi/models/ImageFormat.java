@@ -0,0 +1,71 @@
+package com.janak.imageapi.models;
+
+/**
+ * The image formats accepted for upload, with the media type stored for each and the file extensions
+ * that may carry it. Lookups compare in place, without regexes or lower-cased copies of the input.
+ */
+public enum ImageFormat {
+    JPEG("image/jpeg", "jpg", "jpeg"),
+    PNG("image/png", "png"),
+    GIF("image/gif", "gif"),
+    BMP("image/bmp", "bmp"),
+    WEBP("image/webp", "webp");
+
+    private static final ImageFormat[] VALUES = values();
+
+    private final String mediaType;
+
+    private final String[] extensions;
+
+    ImageFormat(String mediaType, String... extensions) {
+        this.mediaType = mediaType;
+        this.extensions = extensions;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    /**
+     * The format a file name claims by its extension, or {@code null} for any other extension.
+     */
+    public static ImageFormat fromFileName(String fileName) {
+        if (fileName == null) {
+            return null;
+        }
+        int dot = fileName.lastIndexOf('.');
+        int length = fileName.length() - dot - 1;
+        if (dot < 0 || length == 0) {
+            return null;
+        }
+        for (ImageFormat format : VALUES) {
+            for (String extension : format.extensions) {
+                if (extension.length() == length && fileName.regionMatches(true, dot + 1, extension, 0, length)) {
+                    return format;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The format a declared content type names, ignoring parameters, or {@code null} when it names none
+     * of these.
+     */
+    public static ImageFormat fromMediaType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int end = contentType.indexOf(';');
+        end = (end < 0 ? contentType.length() : end);
+        while (end > 0 && contentType.charAt(end - 1) == ' ') {
+            end--;
+        }
+        for (ImageFormat format : VALUES) {
+            if (format.mediaType.length() == end && contentType.regionMatches(true, 0, format.mediaType, 0, end)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
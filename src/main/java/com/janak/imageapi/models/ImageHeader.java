@@ -0,0 +1,14 @@
+package com.janak.imageapi.models;
+
+/**
+ * What the first bytes of an upload say about it.
+ *
+ * @param width width in pixels, or -1 when the header does not say
+ * @param height height in pixels, or -1 when the header does not say
+ */
+public record ImageHeader(ImageFormat format, int width, int height) {
+
+    public boolean hasDimensions() {
+        return width > 0 && height > 0;
+    }
+}
@@ -0,0 +1,30 @@
+package com.janak.imageapi.models;
+
+import org.springframework.http.MediaType;
+
+/**
+ * The parts of an {@link Image} row the serving path needs, resolved once so that a GET does not have
+ * to parse the content type or build the ETag again.
+ *
+ * @param storageKey key of the stored content, see {@code ImageStorage}
+ * @param size stored size in bytes, or -1 for rows uploaded before the size was recorded
+ * @param etag quoted strong ETag, or {@code null} when no content hash is known
+ */
+public record ImageMetadata(String imageName, String storageKey, MediaType contentType, long size, String etag, long lastModified) {
+
+    public static ImageMetadata from(Image image) {
+        MediaType contentType;
+        try {
+            contentType = MediaType.parseMediaType(image.getImageType());
+        } catch (IllegalArgumentException e) {
+            contentType = MediaType.APPLICATION_OCTET_STREAM;
+        }
+        return new ImageMetadata(
+                image.getImageName(),
+                image.getStorageKey() != null ? image.getStorageKey() : image.getImageName(),
+                contentType,
+                image.getImageSizeBytes() != null ? image.getImageSizeBytes() : -1,
+                image.getContentHash() != null ? "\"" + image.getContentHash() + "\"" : null,
+                image.getUploadedAt() != null ? image.getUploadedAt().getTime() : -1);
+    }
+}
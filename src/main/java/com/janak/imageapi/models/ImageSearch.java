@@ -0,0 +1,111 @@
+package com.janak.imageapi.models;
+
+import com.janak.imageapi.Exception.InvalidSearchException;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Filters of an image search. Every filter is optional and they all have to match; ranges include both
+ * bounds, except the upload window, which ends just before {@code uploadedBefore}. The filters run as
+ * one query on the stored format, size and dimensions, see the indexes on {@link Image}.
+ *
+ * @param formats any of these formats, or all formats when empty
+ */
+public record ImageSearch(Set<ImageFormat> formats,
+                          Long minSize, Long maxSize,
+                          Integer minWidth, Integer maxWidth,
+                          Integer minHeight, Integer maxHeight,
+                          Instant uploadedAfter, Instant uploadedBefore) {
+
+    public static final ImageSearch ALL = new ImageSearch(Set.of(), null, null, null, null, null, null, null, null);
+
+    /**
+     * Parses the search parameters. Types are given as media types ({@code image/png}) or as file
+     * extensions ({@code png}, {@code jpg}).
+     */
+    public static ImageSearch of(List<String> types,
+                                 Long minSize, Long maxSize,
+                                 Integer minWidth, Integer maxWidth,
+                                 Integer minHeight, Integer maxHeight,
+                                 Instant uploadedAfter, Instant uploadedBefore) {
+        Set<ImageFormat> formats = EnumSet.noneOf(ImageFormat.class);
+        if (types != null) {
+            for (String type : types) {
+                ImageFormat format = type.indexOf('/') >= 0 ? ImageFormat.fromMediaType(type) : ImageFormat.fromFileName("." + type);
+                if (format == null) {
+                    throw new InvalidSearchException("type must be one of jpeg, png, gif, bmp, webp");
+                }
+                formats.add(format);
+            }
+        }
+        checkRange(minSize, maxSize, "size");
+        checkRange(minWidth, maxWidth, "width");
+        checkRange(minHeight, maxHeight, "height");
+        if (uploadedAfter != null && uploadedBefore != null && !uploadedAfter.isBefore(uploadedBefore)) {
+            throw new InvalidSearchException("uploadedAfter must be before uploadedBefore");
+        }
+        return new ImageSearch(Set.copyOf(formats), minSize, maxSize, minWidth, maxWidth, minHeight, maxHeight,
+                uploadedAfter, uploadedBefore);
+    }
+
+    /**
+     * The filters as a query predicate for a listing sorted by {@code order}. Rows without the order's
+     * sort key are left out, as there is no place for them in a keyset; only rows stored before sizes
+     * were recorded lack one, until the metadata backfill has run.
+     */
+    public Specification<Image> specification(ImageCursor.Order order) {
+        return (root, query, builder) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (!formats.isEmpty()) {
+                predicates.add(root.get("format").in(formats));
+            }
+            between(predicates, builder, root.get("imageSizeBytes"), minSize, maxSize);
+            between(predicates, builder, root.get("width"), minWidth, maxWidth);
+            between(predicates, builder, root.get("height"), minHeight, maxHeight);
+            Path<Date> uploadedAt = root.get("uploadedAt");
+            if (uploadedAfter != null) {
+                predicates.add(builder.greaterThanOrEqualTo(uploadedAt, Timestamp.from(uploadedAfter)));
+            }
+            if (uploadedBefore != null) {
+                predicates.add(builder.lessThan(uploadedAt, Timestamp.from(uploadedBefore)));
+            }
+            if (order.key() != null) {
+                predicates.add(builder.isNotNull(root.get(order.key())));
+            }
+            return predicates.isEmpty() ? null : builder.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    private static <T extends Comparable<? super T>> void between(List<Predicate> predicates, CriteriaBuilder builder,
+                                                                  Path<T> path, T min, T max) {
+        if (min != null) {
+            predicates.add(builder.greaterThanOrEqualTo(path, min));
+        }
+        if (max != null) {
+            predicates.add(builder.lessThanOrEqualTo(path, max));
+        }
+    }
+
+    private static <T extends Number & Comparable<T>> void checkRange(T min, T max, String name) {
+        if ((min != null && min.longValue() < 0) || (max != null && max.longValue() < 0)) {
+            throw new InvalidSearchException(name + " bounds must not be negative");
+        }
+        if (min != null && max != null && min.compareTo(max) > 0) {
+            throw new InvalidSearchException("min" + capitalize(name) + " must not be greater than max" + capitalize(name));
+        }
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
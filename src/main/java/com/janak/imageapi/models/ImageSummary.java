@@ -0,0 +1,22 @@
+package com.janak.imageapi.models;
+
+import com.janak.imageapi.utils.FileUtils;
+
+import java.util.Date;
+
+/**
+ * An {@link Image} row as listed by {@code GET /api/images?page=}, selected straight into this record
+ * by {@link com.janak.imageapi.Repository.ImageRepository#findSummaries}, so no entity is hydrated or
+ * tracked by the persistence context. Serializes to the same JSON as the entity.
+ */
+public record ImageSummary(long id, String imageName, String imageType, ImageFormat format, Long imageSizeBytes,
+                           String contentHash, String storageKey, Integer width, Integer height,
+                           ProcessingStatus processingStatus, Date uploadedAt, Date updatedAt) {
+
+    /**
+     * Human-readable size, like {@link Image#getImageSize()}.
+     */
+    public String getImageSize() {
+        return imageSizeBytes != null && imageSizeBytes >= 0 ? FileUtils.getReadableFileSize(imageSizeBytes) : null;
+    }
+}
@@ -0,0 +1,78 @@
+package com.janak.imageapi.models;
+
+import com.janak.imageapi.Exception.InvalidImageVariantException;
+
+import java.util.Locale;
+
+/**
+ * A requested rendition of a stored image. A missing width or height is derived from the other one
+ * and the original aspect ratio, and with neither the original size is kept, so only the format
+ * changes; a missing format keeps the original format where it can be encoded.
+ *
+ * @param width  target width in pixels, or 0 when derived or kept
+ * @param height target height in pixels, or 0 when derived or kept
+ * @param format ImageIO format name of the output, or {@code null} to keep the original format
+ */
+public record ImageVariantSpec(int width, int height, Fit fit, String format) {
+
+    public static final int MAX_DIMENSION = 4096;
+
+    public enum Fit {
+        /** scale to fit inside the box, keeping the aspect ratio */
+        CONTAIN,
+        /** scale to cover the box, keeping the aspect ratio, and crop the overflow */
+        COVER,
+        /** stretch to exactly the box */
+        FILL
+    }
+
+    public static ImageVariantSpec of(Integer width, Integer height, String fit, String format) {
+        if (width == null && height == null && format == null) {
+            throw new InvalidImageVariantException("Either width, height or format is required");
+        }
+        int w = checkDimension(width, "width");
+        int h = checkDimension(height, "height");
+        Fit parsedFit;
+        try {
+            parsedFit = fit == null ? Fit.CONTAIN : Fit.valueOf(fit.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidImageVariantException("fit must be one of contain, cover, fill");
+        }
+        if (parsedFit != Fit.CONTAIN && (w == 0 || h == 0)) {
+            throw new InvalidImageVariantException("fit " + fit + " requires both width and height");
+        }
+        String parsedFormat = format == null ? null : normalizeFormat(format);
+        return new ImageVariantSpec(w, h, parsedFit, parsedFormat);
+    }
+
+    public static boolean isRequested(Integer width, Integer height, String fit, String format) {
+        return width != null || height != null || fit != null || format != null;
+    }
+
+    /**
+     * File name of the rendition inside the image's variant directory, e.g. {@code 200x0-contain.png}.
+     */
+    public String fileName(String resolvedFormat) {
+        return width + "x" + height + "-" + fit.name().toLowerCase(Locale.ROOT) + "." + resolvedFormat;
+    }
+
+    private static int checkDimension(Integer value, String name) {
+        if (value == null) {
+            return 0;
+        }
+        if (value < 1 || value > MAX_DIMENSION) {
+            throw new InvalidImageVariantException(name + " must be between 1 and " + MAX_DIMENSION);
+        }
+        return value;
+    }
+
+    private static String normalizeFormat(String format) {
+        return switch (format.toLowerCase(Locale.ROOT)) {
+            case "jpg", "jpeg" -> "jpg";
+            case "png" -> "png";
+            case "gif" -> "gif";
+            case "bmp" -> "bmp";
+            default -> throw new InvalidImageVariantException("format must be one of jpg, png, gif, bmp");
+        };
+    }
+}
@@ -0,0 +1,13 @@
+package com.janak.imageapi.models;
+
+/**
+ * Where an image is in the post-upload processing pipeline.
+ */
+public enum ProcessingStatus {
+    /** stored and waiting for a slot in the pipeline */
+    PENDING,
+    PROCESSING,
+    COMPLETED,
+    /** a stage kept failing after all retries */
+    FAILED
+}
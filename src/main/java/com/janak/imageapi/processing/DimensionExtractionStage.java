@@ -0,0 +1,69 @@
+package com.janak.imageapi.processing;
+
+import com.janak.imageapi.Exception.ImageNotFoundException;
+import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.storage.ImageStorage;
+import com.janak.imageapi.storage.StoredBlob;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * Records width and height of the stored image. Only the header is read, the pixels are not decoded.
+ */
+@Component
+@Order(100)
+public class DimensionExtractionStage implements ImageProcessingStage {
+
+    private final ImageRepository imageRepository;
+
+    private final ImageStorage imageStorage;
+
+    public DimensionExtractionStage(ImageRepository imageRepository, ImageStorage imageStorage) {
+        this.imageRepository = imageRepository;
+        this.imageStorage = imageStorage;
+    }
+
+    @Override
+    public String name() {
+        return "dimensions";
+    }
+
+    @Override
+    public Kind kind() {
+        return Kind.IO;
+    }
+
+    @Override
+    public void process(Image image) throws IOException {
+        if (image.getWidth() != null && image.getHeight() != null) {
+            return;
+        }
+        String storageKey = ImageStorage.storageKeyOf(image);
+        StoredBlob blob = imageStorage.find(storageKey).orElseThrow(ImageNotFoundException::new);
+        try (InputStream content = blob.file().isPresent() ? null : blob.openStream();
+             ImageInputStream input = ImageIO.createImageInputStream(
+                     content != null ? content : blob.file().get().toFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                // not a format ImageIO can read, e.g. webp; nothing to record
+                return;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                // a no-op if the image got new content meanwhile
+                imageRepository.updateDimensions(image.getId(), storageKey, reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.janak.imageapi.processing;
+
+import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.models.ProcessingStatus;
+import com.janak.imageapi.storage.ImageStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the registered {@link ImageProcessingStage}s for an image after its upload request has returned.
+ * At most {@code image.processing.queue-capacity} images are admitted at a time; an image that does not
+ * get a slot stays {@link ProcessingStatus#PENDING} and is picked up by the periodic sweep, so a burst of
+ * uploads never blocks the request threads. Failing stages are retried with exponential backoff.
+ * <p>
+ * An image is processed by one run at a time. When it gets new content while a run is under way, the
+ * new content is processed by a follow-up run right after; the old run's writes are conditional on the
+ * storage key it processed, so they do not touch the row once it points elsewhere.
+ */
+@Slf4j
+@Component
+public class ImageProcessingPipeline {
+
+    private final List<ImageProcessingStage> stages;
+
+    private final ImageRepository imageRepository;
+
+    private final Executor ioExecutor;
+
+    private final Executor cpuExecutor;
+
+    private final boolean enabled;
+
+    private final int maxAttempts;
+
+    private final Duration retryBackoff;
+
+    private final Semaphore capacity;
+
+    private final ConcurrentHashMap<Long, Run> inFlight = new ConcurrentHashMap<>();
+
+    public ImageProcessingPipeline(List<ImageProcessingStage> stages,
+                                   ImageRepository imageRepository,
+                                   @Qualifier("imageIoExecutor") Executor ioExecutor,
+                                   @Qualifier("imageCpuExecutor") Executor cpuExecutor,
+                                   @Value("${image.processing.enabled:true}") boolean enabled,
+                                   @Value("${image.processing.queue-capacity:256}") int queueCapacity,
+                                   @Value("${image.processing.max-attempts:3}") int maxAttempts,
+                                   @Value("${image.processing.retry-backoff:500ms}") Duration retryBackoff) {
+        this.stages = stages;
+        this.imageRepository = imageRepository;
+        this.ioExecutor = ioExecutor;
+        this.cpuExecutor = cpuExecutor;
+        this.enabled = enabled;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        this.capacity = new Semaphore(queueCapacity);
+    }
+
+    /**
+     * Queues {@code image} for processing without blocking.
+     *
+     * @return {@code false} when the pipeline is full or disabled; the image then stays pending
+     */
+    public boolean submit(Image image) {
+        if (!enabled) {
+            return false;
+        }
+        long id = image.getId();
+        Run submitted = new Run(image, ImageStorage.storageKeyOf(image));
+        Run current = inFlight.compute(id, (key, running) -> {
+            if (running == null) {
+                return submitted;
+            }
+            // the newest content wins; none is needed if it is what is being processed already
+            running.followUp = running.storageKey.equals(submitted.storageKey) ? null : submitted;
+            return running;
+        });
+        if (current != submitted) {
+            return true;
+        }
+        if (!capacity.tryAcquire()) {
+            // a follow-up queued in between is left to the sweep as well, its row is pending too
+            inFlight.remove(id, submitted);
+            return false;
+        }
+        process(id, submitted);
+        return true;
+    }
+
+    // holds a capacity permit, which is passed on to the follow-up run or released at the end
+    private void process(long id, Run run) {
+        CompletableFuture<Void> stagesRun = CompletableFuture.runAsync(
+                () -> imageRepository.updateProcessingStatus(id, run.storageKey, ProcessingStatus.PROCESSING), ioExecutor);
+        for (ImageProcessingStage stage : stages) {
+            stagesRun = stagesRun.thenCompose(ignored -> runStage(stage, run.image, 1));
+        }
+        stagesRun.whenComplete((ignored, failure) -> {
+            try {
+                if (failure != null) {
+                    log.warn("Processing of image {} failed", id, failure instanceof CompletionException ? failure.getCause() : failure);
+                }
+                imageRepository.updateProcessingStatus(id, run.storageKey,
+                        failure == null ? ProcessingStatus.COMPLETED : ProcessingStatus.FAILED);
+            } finally {
+                Run next = inFlight.compute(id, (key, running) -> running.followUp);
+                if (next != null) {
+                    process(id, next);
+                } else {
+                    capacity.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * Picks up images that were stored while the pipeline was full, or before a restart.
+     */
+    @Scheduled(fixedDelayString = "${image.processing.sweep-interval:30s}", initialDelayString = "${image.processing.sweep-interval:30s}")
+    public void resubmitPending() {
+        if (!enabled) {
+            return;
+        }
+        for (Image image : imageRepository.findTop100ByProcessingStatusOrderByIdAsc(ProcessingStatus.PENDING)) {
+            if (!submit(image)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Images that were being processed when the previous instance stopped go back to pending.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverInterrupted() {
+        int recovered = imageRepository.updateProcessingStatus(ProcessingStatus.PROCESSING, ProcessingStatus.PENDING);
+        if (recovered > 0) {
+            log.info("Re-queued {} images interrupted during processing", recovered);
+        }
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private CompletableFuture<Void> runStage(ImageProcessingStage stage, Image image, int attempt) {
+        Executor executor = stage.kind() == ImageProcessingStage.Kind.CPU ? cpuExecutor : ioExecutor;
+        if (attempt > 1) {
+            long delay = retryBackoff.toMillis() << (attempt - 2);
+            executor = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executor);
+        }
+        return CompletableFuture.runAsync(() -> {
+            try {
+                stage.process(image);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor).exceptionallyCompose(failure -> {
+            if (attempt >= maxAttempts) {
+                return CompletableFuture.failedFuture(failure);
+            }
+            log.debug("Stage {} failed for image {} (attempt {}), retrying", stage.name(), image.getId(), attempt);
+            return runStage(stage, image, attempt + 1);
+        });
+    }
+
+    private static final class Run {
+
+        private final Image image;
+
+        private final String storageKey;
+
+        // newer content submitted while this run is under way; only touched inside inFlight.compute
+        private Run followUp;
+
+        private Run(Image image, String storageKey) {
+            this.image = image;
+            this.storageKey = storageKey;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.janak.imageapi.processing;
+
+import com.janak.imageapi.models.Image;
+
+/**
+ * One step of the post-upload pipeline. Stages run in {@link org.springframework.core.annotation.Order}
+ * after the upload request has returned, each on the executor matching its {@link Kind}, and are
+ * retried on failure, so they must be safe to run more than once for the same image.
+ */
+public interface ImageProcessingStage {
+
+    enum Kind {
+        /** mostly waits on disk or the database */
+        IO,
+        /** decodes or encodes pixels */
+        CPU
+    }
+
+    String name();
+
+    Kind kind();
+
+    void process(Image image) throws Exception;
+}
@@ -0,0 +1,52 @@
+package com.janak.imageapi.processing;
+
+import com.janak.imageapi.Exception.InvalidImageVariantException;
+import com.janak.imageapi.Services.ImageVariantService;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.models.ImageMetadata;
+import com.janak.imageapi.models.ImageVariantSpec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Renders the listing thumbnails ahead of the first request, so gallery pages never wait on a decode.
+ */
+@Component
+@Order(200)
+public class ThumbnailPregenerationStage implements ImageProcessingStage {
+
+    private final ImageVariantService imageVariantService;
+
+    private final List<Integer> thumbnailWidths;
+
+    public ThumbnailPregenerationStage(ImageVariantService imageVariantService,
+                                       @Value("${image.processing.thumbnail-widths:256}") List<Integer> thumbnailWidths) {
+        this.imageVariantService = imageVariantService;
+        this.thumbnailWidths = thumbnailWidths;
+    }
+
+    @Override
+    public String name() {
+        return "thumbnails";
+    }
+
+    @Override
+    public Kind kind() {
+        return Kind.CPU;
+    }
+
+    @Override
+    public void process(Image image) {
+        ImageMetadata metadata = ImageMetadata.from(image);
+        try {
+            for (Integer width : thumbnailWidths) {
+                imageVariantService.resolve(metadata, ImageVariantSpec.of(width, null, null, null));
+            }
+        } catch (InvalidImageVariantException e) {
+            // the original cannot be decoded by ImageIO, retrying will not change that
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.janak.imageapi.storage;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Exposes a {@link StoredBlob} without a local file as a Spring {@link org.springframework.core.io.Resource}.
+ * The content is only fetched when {@link #getInputStream()} is called.
+ */
+public class BlobResource extends AbstractResource {
+
+    private final StoredBlob blob;
+
+    public BlobResource(StoredBlob blob) {
+        this.blob = blob;
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return blob.openStream();
+    }
+
+    @Override
+    public long contentLength() {
+        return blob.size();
+    }
+
+    @Override
+    public long lastModified() {
+        return blob.lastModified();
+    }
+
+    @Override
+    public String getFilename() {
+        return blob.key();
+    }
+
+    @Override
+    public String getDescription() {
+        return "stored blob [" + blob.key() + "]";
+    }
+}
@@ -0,0 +1,42 @@
+package com.janak.imageapi.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Where image content lives. Keys are opaque to the store: a hex SHA-256 for deduplicated content, an
+ * image name otherwise. Implementations stream in both directions and never hold a whole blob in memory.
+ * <p>
+ * Selected with {@code file.storage.backend}: {@code local} (default) for {@link LocalBlobStore},
+ * {@code s3} for {@link S3BlobStore}.
+ */
+public interface BlobStore {
+
+    boolean exists(String key) throws IOException;
+
+    /**
+     * Stores the content of {@code source} under {@code key}, replacing any existing blob. The source
+     * file is consumed: it is moved into place where possible and must not be used afterwards.
+     */
+    void put(String key, Path source) throws IOException;
+
+    /**
+     * Stores {@code length} bytes read from {@code content} under {@code key}, replacing any existing blob.
+     */
+    void put(String key, InputStream content, long length) throws IOException;
+
+    Optional<StoredBlob> find(String key) throws IOException;
+
+    /**
+     * Deletes the blob stored under {@code key}; a missing blob is not an error.
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Deletes all given blobs, using as few round trips as the backend allows. Missing blobs are skipped.
+     */
+    void deleteAll(Collection<String> keys) throws IOException;
+}
@@ -0,0 +1,51 @@
+package com.janak.imageapi.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+
+/**
+ * A blob backed by a local file.
+ */
+public record FileBlob(String key, Path path, long size, long lastModified) implements StoredBlob {
+
+    /**
+     * Reads the attributes of {@code path}, throwing {@link java.nio.file.NoSuchFileException} if it is missing.
+     */
+    public static FileBlob of(String key, Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return new FileBlob(key, path, attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    public static FileBlob of(Path path) throws IOException {
+        return of(path.getFileName().toString(), path);
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public InputStream openStream(long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new BoundedInputStream(Channels.newInputStream(channel), length);
+    }
+
+    @Override
+    public Optional<Path> file() {
+        return Optional.of(path);
+    }
+}
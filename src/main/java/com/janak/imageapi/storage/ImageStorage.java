@@ -0,0 +1,349 @@
+package com.janak.imageapi.storage;
+
+import com.janak.imageapi.Exception.FileTooLargeException;
+import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.utils.FileUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Owns the blobs behind {@link Image} rows, whichever {@link BlobStore} holds them. With
+ * {@code file.storage.deduplicate} on (the default) content is stored once per SHA-256, and every row
+ * with that hash as its storage key shares the blob; the blob is deleted when the last such row goes
+ * away. With it off every upload gets its own blob keyed by the image name, as before.
+ * <p>
+ * Committing a blob and saving the row that references it happen under the same per-key lock as the
+ * reference check in {@link #release}, so a delete can never remove a blob an upload has just reused.
+ */
+@Slf4j
+@Component
+public class ImageStorage {
+
+    // upper bound for a single transferFrom call, keeps the per-upload copy buffer small
+    private static final long TRANSFER_CHUNK_SIZE = 64 * 1024;
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ImageRepository imageRepository;
+
+    private final BlobStore blobStore;
+
+    private final Path uploadDir;
+
+    private final DataSize maxFileSize;
+
+    private final boolean deduplicate;
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public ImageStorage(ImageRepository imageRepository,
+                        BlobStore blobStore,
+                        @Value("${file.upload-dir}") String uploadPath,
+                        @Value("${spring.servlet.multipart.max-file-size}") DataSize maxFileSize,
+                        @Value("${file.storage.deduplicate:true}") boolean deduplicate) {
+        this.imageRepository = imageRepository;
+        this.blobStore = blobStore;
+        this.uploadDir = Paths.get(uploadPath).toAbsolutePath().normalize();
+        this.maxFileSize = maxFileSize;
+        this.deduplicate = deduplicate;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Streams the uploaded part into a temp file inside the upload directory, so it is never buffered
+     * on the heap. The size limit is enforced while copying, independent of what the client declared,
+     * and the SHA-256 of the content is computed on the way through.
+     */
+    public StagedUpload stage(MultipartFile upload) {
+        Path tempFile = null;
+        try {
+            Files.createDirectories(uploadDir);
+            tempFile = Files.createTempFile(uploadDir, ".upload-", ".tmp");
+            long written = 0;
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(upload.getInputStream(), digest);
+                 ReadableByteChannel source = Channels.newChannel(in);
+                 FileChannel target = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                long transferred;
+                while ((transferred = target.transferFrom(source, written, TRANSFER_CHUNK_SIZE)) > 0) {
+                    written += transferred;
+                    if (written > maxFileSize.toBytes()) {
+                        throw new FileTooLargeException(FileUtils.getReadableFileSize(maxFileSize.toBytes()));
+                    }
+                }
+            }
+            StagedUpload staged = new StagedUpload(tempFile, written, HexFormat.of().formatHex(digest.digest()));
+            tempFile = null;
+            return staged;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            deleteQuietly(tempFile);
+        }
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #stage(MultipartFile)} for streamed parts: the buffers are
+     * hashed, counted against the size limit and written to the temp file as they arrive, and released
+     * once written, so only the buffers in flight are held in memory.
+     */
+    public Mono<StagedUpload> stage(Flux<DataBuffer> content) {
+        return Mono.defer(() -> {
+            Path tempFile;
+            MessageDigest digest;
+            try {
+                Files.createDirectories(uploadDir);
+                tempFile = Files.createTempFile(uploadDir, ".upload-", ".tmp");
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (IOException e) {
+                return Mono.error(new UncheckedIOException(e));
+            } catch (NoSuchAlgorithmException e) {
+                return Mono.error(new IllegalStateException(e));
+            }
+            long[] written = new long[1];
+            Flux<DataBuffer> checked = content.handle((buffer, sink) -> {
+                written[0] += buffer.readableByteCount();
+                if (written[0] > maxFileSize.toBytes()) {
+                    DataBufferUtils.release(buffer);
+                    sink.error(new FileTooLargeException(FileUtils.getReadableFileSize(maxFileSize.toBytes())));
+                    return;
+                }
+                try (DataBuffer.ByteBufferIterator buffers = buffer.readableByteBuffers()) {
+                    buffers.forEachRemaining(digest::update);
+                }
+                sink.next(buffer);
+            });
+            return DataBufferUtils.write(checked, tempFile, StandardOpenOption.WRITE)
+                    .then(Mono.fromSupplier(() -> new StagedUpload(tempFile, written[0], HexFormat.of().formatHex(digest.digest()))))
+                    .doOnError(e -> deleteQuietly(tempFile))
+                    .doOnCancel(() -> deleteQuietly(tempFile));
+        });
+    }
+
+    /**
+     * Moves a staged upload into place and hands its storage key to {@code reference}, which saves the
+     * row pointing at it. When identical content is already stored the staged copy is dropped instead of
+     * written a second time. If {@code reference} fails, a blob this call created is removed again.
+     */
+    public <T> T commit(StagedUpload staged, String imageName, Function<String, T> reference) {
+        String storageKey = deduplicate ? staged.contentHash() : imageName;
+        ReentrantLock lock = lockFor(storageKey);
+        lock.lock();
+        try {
+            // the lock makes this check final, nobody else can create or delete the blob meanwhile
+            boolean created = !deduplicate || !blobStore.exists(storageKey);
+            if (created) {
+                blobStore.put(storageKey, staged.file());
+            } else {
+                log.debug("Reusing stored content {}", storageKey);
+            }
+            try {
+                return reference.apply(storageKey);
+            } catch (RuntimeException e) {
+                if (created) {
+                    deleteBlobQuietly(storageKey);
+                }
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Commits several staged uploads at once and hands their storage keys, in the same order, to
+     * {@code reference}, which saves all rows in one go. The locks of every key are held until it
+     * returns, as in {@link #commit}. Content that is already stored, or that occurs twice in the batch,
+     * is written once. If {@code reference} fails, every blob this call created is removed again.
+     */
+    public <T> T commitAll(List<StagedUpload> staged, List<String> imageNames, Function<List<String>, T> reference) {
+        List<String> storageKeys = new ArrayList<>(staged.size());
+        for (int i = 0; i < staged.size(); i++) {
+            storageKeys.add(deduplicate ? staged.get(i).contentHash() : imageNames.get(i));
+        }
+        int[] stripes = lockAll(storageKeys);
+        Set<String> created = new LinkedHashSet<>();
+        try {
+            for (int i = 0; i < staged.size(); i++) {
+                String storageKey = storageKeys.get(i);
+                if (created.contains(storageKey) || (deduplicate && blobStore.exists(storageKey))) {
+                    continue;
+                }
+                blobStore.put(storageKey, staged.get(i).file());
+                created.add(storageKey);
+            }
+            return reference.apply(storageKeys);
+        } catch (IOException e) {
+            created.forEach(this::deleteBlobQuietly);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            created.forEach(this::deleteBlobQuietly);
+            throw e;
+        } finally {
+            unlockAll(stripes);
+        }
+    }
+
+    /**
+     * Drops one reference to {@code storageKey}. Call after the row that pointed at it has been deleted
+     * or repointed; the file is deleted once no row references it any more.
+     *
+     * @return whether the blob was deleted, i.e. no row references it any more
+     */
+    public boolean release(String storageKey) {
+        ReentrantLock lock = lockFor(storageKey);
+        lock.lock();
+        try {
+            if (deduplicate && imageRepository.countByStorageKey(storageKey) > 0) {
+                return false;
+            }
+            blobStore.delete(storageKey);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops one reference to each of {@code storageKeys}, like {@link #release} but with a single query
+     * for the keys still referenced and a single {@link BlobStore#deleteAll} for the rest.
+     *
+     * @return the keys whose blobs were deleted
+     */
+    public Set<String> releaseAll(Collection<String> storageKeys) {
+        Set<String> unreferenced = new LinkedHashSet<>(storageKeys);
+        if (unreferenced.isEmpty()) {
+            return unreferenced;
+        }
+        int[] stripes = lockAll(unreferenced);
+        try {
+            if (deduplicate) {
+                unreferenced.removeAll(imageRepository.findReferencedStorageKeys(unreferenced));
+            }
+            blobStore.deleteAll(unreferenced);
+            return unreferenced;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            unlockAll(stripes);
+        }
+    }
+
+    public Optional<StoredBlob> find(String storageKey) {
+        try {
+            return blobStore.find(storageKey);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public boolean exists(String storageKey) {
+        try {
+            return blobStore.exists(storageKey);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Storage key of a row, falling back to its image name for rows stored before keys were recorded.
+     */
+    public static String storageKeyOf(Image image) {
+        return image.getStorageKey() != null ? image.getStorageKey() : image.getImageName();
+    }
+
+    private ReentrantLock lockFor(String storageKey) {
+        return locks[stripeOf(storageKey)];
+    }
+
+    /**
+     * Locks the stripes of all keys in index order, so two callers can never wait on each other.
+     */
+    private int[] lockAll(Collection<String> storageKeys) {
+        int[] stripes = storageKeys.stream().mapToInt(ImageStorage::stripeOf).distinct().sorted().toArray();
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+        }
+        return stripes;
+    }
+
+    private void unlockAll(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            locks[stripes[i]].unlock();
+        }
+    }
+
+    private static int stripeOf(String storageKey) {
+        return Math.floorMod(storageKey.hashCode(), LOCK_STRIPES);
+    }
+
+    private void deleteBlobQuietly(String storageKey) {
+        try {
+            blobStore.delete(storageKey);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not remove unreferenced blob {}", storageKey, e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // best effort cleanup
+        }
+    }
+
+    /**
+     * An upload copied to a temp file but not yet committed. Closing it deletes the temp file if
+     * {@link #commit} did not move it into place.
+     */
+    public record StagedUpload(Path file, long size, String contentHash) implements AutoCloseable {
+
+        @Override
+        public void close() {
+            deleteQuietly(file);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.janak.imageapi.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Stores blobs as files under {@code file.upload-dir}, spread over a two-level tree of hash-prefixed
+ * directories ({@code ab/cd/<key>}) so that no single directory grows past a few thousand entries.
+ * Hex SHA-256 keys are sharded by their own first four digits, other keys by their hash code.
+ * Files written before sharding sit directly in the upload directory and are still found there.
+ * <p>
+ * A blob is durable once {@code put} returns: its content is synced to disk before it is atomically
+ * renamed into place, and the directory is synced after, so a crash leaves either no file or the
+ * complete one under the key, never a partial file.
+ */
+@Component
+@ConditionalOnProperty(name = "file.storage.backend", havingValue = "local", matchIfMissing = true)
+public class LocalBlobStore implements BlobStore {
+
+    private static final int PARALLEL_DELETE_THRESHOLD = 8;
+
+    private final Path root;
+
+    public LocalBlobStore(@Value("${file.upload-dir}") String uploadPath) {
+        this.root = Paths.get(uploadPath).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return locate(key) != null;
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        Path target = shardedPath(key);
+        Files.createDirectories(target.getParent());
+        try {
+            sync(source);
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // source is on another file system, copy next to the target first so the final move is atomic
+            Path tempFile = Files.createTempFile(target.getParent(), ".blob-", ".tmp");
+            try {
+                Files.copy(source, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                sync(tempFile);
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+                Files.deleteIfExists(source);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+        syncDirectory(target.getParent());
+    }
+
+    @Override
+    public void put(String key, InputStream content, long length) throws IOException {
+        Path target = shardedPath(key);
+        Files.createDirectories(target.getParent());
+        Path tempFile = Files.createTempFile(target.getParent(), ".blob-", ".tmp");
+        try {
+            long copied = Files.copy(content, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            if (copied != length) {
+                throw new IOException("Expected " + length + " bytes for " + key + " but read " + copied);
+            }
+            sync(tempFile);
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        syncDirectory(target.getParent());
+    }
+
+    @Override
+    public Optional<StoredBlob> find(String key) throws IOException {
+        Path file = locate(key);
+        if (file == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(FileBlob.of(key, file));
+        } catch (NoSuchFileException e) {
+            // deleted between the lookup and reading its attributes
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(shardedPath(key));
+        deleteLegacy(key);
+    }
+
+    /**
+     * Deletes larger batches in parallel, unlinking spends its time waiting on file system metadata
+     * updates that the disk can overlap. Every key is attempted; the first failure is rethrown with the
+     * others suppressed.
+     */
+    @Override
+    public void deleteAll(Collection<String> keys) throws IOException {
+        if (keys.size() < PARALLEL_DELETE_THRESHOLD) {
+            for (String key : keys) {
+                delete(key);
+            }
+            return;
+        }
+        List<IOException> failures = keys.parallelStream()
+                .map(key -> {
+                    try {
+                        delete(key);
+                        return null;
+                    } catch (IOException e) {
+                        return e;
+                    }
+                })
+                .filter(Objects::nonNull)
+                .toList();
+        if (!failures.isEmpty()) {
+            IOException failure = failures.get(0);
+            failures.stream().skip(1).forEach(failure::addSuppressed);
+            throw failure;
+        }
+    }
+
+    /**
+     * Sharded location of {@code key}, whether or not it exists.
+     */
+    public Path shardedPath(String key) {
+        String prefix = isHex(key) ? key : String.format("%08x", key.hashCode());
+        return root.resolve(prefix.substring(0, 2)).resolve(prefix.substring(2, 4)).resolve(validated(key));
+    }
+
+    /**
+     * Root of the sharded tree, for maintenance jobs that scan it.
+     */
+    public Path root() {
+        return root;
+    }
+
+    private static void sync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // content only, the rename that follows is made durable by syncing the directory
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Makes the renames in {@code directory} durable. Not every platform can open a directory; there the
+     * file system is left to persist it.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // e.g. Windows, where directories cannot be opened as channels
+        }
+    }
+
+    private Path locate(String key) {
+        Path sharded = shardedPath(key);
+        if (Files.exists(sharded)) {
+            return sharded;
+        }
+        Path legacy = root.resolve(key);
+        return Files.isRegularFile(legacy) ? legacy : null;
+    }
+
+    private void deleteLegacy(String key) throws IOException {
+        Files.deleteIfExists(root.resolve(validated(key)));
+    }
+
+    private static String validated(String key) {
+        if (key.isEmpty() || key.equals(".") || key.equals("..") || key.indexOf('/') >= 0 || key.indexOf('\\') >= 0) {
+            throw new IllegalArgumentException("Invalid blob key " + key);
+        }
+        return key;
+    }
+
+    private static boolean isHex(String key) {
+        if (key.length() < 4) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (Character.digit(key.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,462 @@
+package com.janak.imageapi.storage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Packs small blobs into large append-only segment files instead of giving each its own file, saving an
+ * inode per image and an open() per read. Larger blobs go to the configured backend unchanged.
+ * <p>
+ * An in-memory index maps each key to its segment, offset and length. Segments are memory-mapped once,
+ * so reads are slices of the mapping. Every record carries a CRC, and deletes append a tombstone, so the
+ * index is rebuilt at startup by scanning the segments in order; a torn record at the end of the last
+ * segment (a crash mid-write) ends the scan and is overwritten by the next append. A scheduled compactor
+ * rewrites the live records of sealed segments whose live ratio dropped below
+ * {@code file.storage.packed.compaction-threshold} and deletes them.
+ * <p>
+ * Enabled with {@code file.storage.packed.enabled=true}; wraps the {@code file.storage.backend} store,
+ * which Spring injects here because a bean is never autowired into itself.
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnProperty(name = "file.storage.packed.enabled", havingValue = "true")
+public class PackedBlobStore implements BlobStore {
+
+    // magic, type, key length, data length, timestamp, crc
+    static final int HEADER_SIZE = 4 + 1 + 2 + 4 + 8 + 4;
+
+    private static final int MAGIC = 0x494D4731;
+
+    private static final int MAX_KEY_LENGTH = 1024;
+
+    private static final byte PUT = 0;
+
+    private static final byte TOMBSTONE = 1;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{8})\\.dat");
+
+    private final BlobStore backend;
+
+    private final Path dir;
+
+    private final long maxBlobSize;
+
+    private final int segmentSize;
+
+    private final double compactionThreshold;
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+
+    // serializes appends, and index changes that must agree with the order of records on disk
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private volatile Segment active;
+
+    public PackedBlobStore(BlobStore backend,
+                           @Value("${file.storage.packed.dir:segments}") String segmentPath,
+                           @Value("${file.storage.packed.max-blob-size:64KB}") DataSize maxBlobSize,
+                           @Value("${file.storage.packed.segment-size:128MB}") DataSize segmentSize,
+                           @Value("${file.storage.packed.compaction-threshold:0.5}") double compactionThreshold) throws IOException {
+        if (segmentSize.toBytes() > Integer.MAX_VALUE
+                || segmentSize.toBytes() < maxBlobSize.toBytes() + HEADER_SIZE + MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Segment size must be below 2GB and hold the largest packed blob");
+        }
+        this.backend = backend;
+        this.dir = Paths.get(segmentPath).toAbsolutePath().normalize();
+        this.maxBlobSize = maxBlobSize.toBytes();
+        this.segmentSize = (int) segmentSize.toBytes();
+        this.compactionThreshold = compactionThreshold;
+        recover();
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        return index.containsKey(key) || backend.exists(key);
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        if (Files.size(source) > maxBlobSize) {
+            backend.put(key, source);
+            return;
+        }
+        putPacked(key, Files.readAllBytes(source));
+        Files.delete(source);
+    }
+
+    @Override
+    public void put(String key, InputStream content, long length) throws IOException {
+        if (length > maxBlobSize) {
+            backend.put(key, content, length);
+            return;
+        }
+        byte[] data = content.readNBytes((int) length);
+        if (data.length != length) {
+            throw new IOException("Expected " + length + " bytes for " + key + " but read " + data.length);
+        }
+        putPacked(key, data);
+    }
+
+    @Override
+    public Optional<StoredBlob> find(String key) throws IOException {
+        Location location = index.get(key);
+        return location != null ? Optional.of(new PackedBlob(key, location)) : backend.find(key);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        if (!deletePacked(List.of(key)).isEmpty()) {
+            backend.delete(key);
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<String> keys) throws IOException {
+        List<String> notPacked = deletePacked(keys);
+        if (!notPacked.isEmpty()) {
+            backend.deleteAll(notPacked);
+        }
+    }
+
+    /**
+     * Rewrites the live records of sparsely used sealed segments into the active segment and deletes them.
+     * Readers holding a slice of a deleted segment keep a valid mapping until they drop it.
+     */
+    @Scheduled(fixedDelayString = "${file.storage.packed.compaction-interval:5m}",
+            initialDelayString = "${file.storage.packed.compaction-interval:5m}")
+    public void compact() {
+        for (Segment segment : List.copyOf(segments.values())) {
+            if (segment == active || segment.totalBytes.get() == 0
+                    || (double) segment.liveBytes.get() / segment.totalBytes.get() >= compactionThreshold) {
+                continue;
+            }
+            try {
+                compact(segment);
+            } catch (IOException e) {
+                log.warn("Compaction of segment {} failed", segment.id, e);
+            }
+        }
+    }
+
+    public Stats stats() {
+        long live = 0;
+        long total = 0;
+        for (Segment segment : segments.values()) {
+            live += segment.liveBytes.get();
+            total += segment.totalBytes.get();
+        }
+        return new Stats(index.size(), segments.size(), live, total);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void putPacked(String key, byte[] data) throws IOException {
+        writeLock.lock();
+        try {
+            Location location = append(PUT, key, data, System.currentTimeMillis());
+            active.channel.force(false);
+            track(key, location);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Appends tombstones for the packed keys among {@code keys} and returns the others.
+     */
+    private List<String> deletePacked(Collection<String> keys) throws IOException {
+        List<String> notPacked = new ArrayList<>();
+        writeLock.lock();
+        try {
+            boolean appended = false;
+            for (String key : keys) {
+                Location location = index.get(key);
+                if (location == null) {
+                    notPacked.add(key);
+                    continue;
+                }
+                append(TOMBSTONE, key, new byte[0], System.currentTimeMillis());
+                appended = true;
+                index.remove(key);
+                location.segment().liveBytes.addAndGet(-location.recordSize());
+            }
+            if (appended) {
+                active.channel.force(false);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return notPacked;
+    }
+
+    private void compact(Segment segment) throws IOException {
+        int copied = 0;
+        int position = 0;
+        while (true) {
+            Record record = Record.read(segment, position);
+            if (record == null) {
+                break;
+            }
+            position += record.size();
+            writeLock.lock();
+            try {
+                if (record.type() == PUT) {
+                    Location current = index.get(record.key());
+                    if (current != null && current.segment() == segment && current.recordOffset() == record.offset()) {
+                        byte[] data = new byte[record.length()];
+                        segment.map.get(record.dataOffset(), data);
+                        track(record.key(), append(PUT, record.key(), data, record.timestamp()));
+                        copied++;
+                    }
+                } else if (!index.containsKey(record.key()) && segments.firstKey() < segment.id) {
+                    // an older segment may still hold a put this tombstone cancels
+                    append(TOMBSTONE, record.key(), new byte[0], record.timestamp());
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        writeLock.lock();
+        try {
+            active.channel.force(false);
+            segments.remove(segment.id);
+            segment.channel.close();
+        } finally {
+            writeLock.unlock();
+        }
+        Files.deleteIfExists(segment.file);
+        log.info("Compacted segment {}: {} live records moved", segment.id, copied);
+    }
+
+    private void track(String key, Location location) {
+        location.segment().liveBytes.addAndGet(location.recordSize());
+        Location previous = index.put(key, location);
+        if (previous != null) {
+            previous.segment().liveBytes.addAndGet(-previous.recordSize());
+        }
+    }
+
+    private Location append(byte type, String key, byte[] data, long timestamp) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Blob key is too long");
+        }
+        int recordSize = HEADER_SIZE + keyBytes.length + data.length;
+        if (active == null || active.writePosition + recordSize > active.map.capacity()) {
+            active = openSegment(segments.isEmpty() ? 1 : segments.lastKey() + 1);
+        }
+        ByteBuffer record = ByteBuffer.allocate(recordSize);
+        record.putInt(MAGIC).put(type).putShort((short) keyBytes.length).putInt(data.length).putLong(timestamp);
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), 4, HEADER_SIZE - 8);
+        crc.update(keyBytes);
+        crc.update(data);
+        record.putInt((int) crc.getValue()).put(keyBytes).put(data).flip();
+
+        int offset = active.writePosition;
+        while (record.hasRemaining()) {
+            active.channel.write(record, offset + record.position());
+        }
+        active.writePosition += recordSize;
+        active.totalBytes.addAndGet(recordSize);
+        return new Location(active, offset, offset + HEADER_SIZE + keyBytes.length, data.length, timestamp, recordSize);
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        Files.createDirectories(dir);
+        Path file = dir.resolve(String.format("segment-%08d.dat", id));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // mapping read-write grows the file to the segment size; the unwritten tail stays sparse
+        long mappedSize = Math.min(Integer.MAX_VALUE, Math.max(segmentSize, channel.size()));
+        Segment segment = new Segment(id, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * Rebuilds the index by replaying every segment in order. Appending resumes after the last valid
+     * record of the newest segment.
+     */
+    private void recover() throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        List<Integer> ids;
+        try (Stream<Path> files = Files.list(dir)) {
+            ids = files.map(file -> SEGMENT_NAME.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Integer.parseInt(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+        for (int id : ids) {
+            Segment segment = openSegment(id);
+            int position = 0;
+            Record record;
+            while ((record = Record.read(segment, position)) != null) {
+                if (record.type() == PUT) {
+                    track(record.key(), new Location(segment, record.offset(), record.dataOffset(), record.length(),
+                            record.timestamp(), record.size()));
+                } else {
+                    Location removed = index.remove(record.key());
+                    if (removed != null) {
+                        removed.segment().liveBytes.addAndGet(-removed.recordSize());
+                    }
+                }
+                segment.totalBytes.addAndGet(record.size());
+                position += record.size();
+            }
+            segment.writePosition = position;
+            active = segment;
+        }
+        if (!ids.isEmpty()) {
+            log.info("Recovered {} packed blobs from {} segments", index.size(), ids.size());
+        }
+    }
+
+    public record Stats(int blobs, int segments, long liveBytes, long totalBytes) {
+    }
+
+    private record Location(Segment segment, int recordOffset, int dataOffset, int length, long lastModified,
+                            int recordSize) {
+    }
+
+    private record Record(byte type, String key, int offset, int dataOffset, int length, long timestamp, int size) {
+
+        /**
+         * Reads the record at {@code position}, or returns {@code null} at the end of the valid records:
+         * unwritten space, a torn write, or a checksum mismatch.
+         */
+        static Record read(Segment segment, int position) {
+            ByteBuffer map = segment.map;
+            if (position + HEADER_SIZE > map.capacity() || map.getInt(position) != MAGIC) {
+                return null;
+            }
+            byte type = map.get(position + 4);
+            int keyLength = map.getShort(position + 5);
+            int length = map.getInt(position + 7);
+            long timestamp = map.getLong(position + 11);
+            int checksum = map.getInt(position + 19);
+            if ((type != PUT && type != TOMBSTONE) || keyLength < 0 || keyLength > MAX_KEY_LENGTH || length < 0
+                    || (long) position + HEADER_SIZE + keyLength + length > map.capacity()) {
+                return null;
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(map.slice(position + 4, HEADER_SIZE - 8));
+            crc.update(map.slice(position + HEADER_SIZE, keyLength + length));
+            if ((int) crc.getValue() != checksum) {
+                return null;
+            }
+            byte[] key = new byte[keyLength];
+            map.get(position + HEADER_SIZE, key);
+            return new Record(type, new String(key, StandardCharsets.UTF_8), position,
+                    position + HEADER_SIZE + keyLength, length, timestamp, HEADER_SIZE + keyLength + length);
+        }
+    }
+
+    private static final class Segment {
+
+        final int id;
+        final Path file;
+        final FileChannel channel;
+        final MappedByteBuffer map;
+        final AtomicLong liveBytes = new AtomicLong();
+        final AtomicLong totalBytes = new AtomicLong();
+        int writePosition;
+
+        Segment(int id, Path file, FileChannel channel, MappedByteBuffer map) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.map = map;
+        }
+    }
+
+    private static final class PackedBlob implements StoredBlob {
+
+        private final String key;
+        private final Location location;
+
+        PackedBlob(String key, Location location) {
+            this.key = key;
+            this.location = location;
+        }
+
+        @Override
+        public String key() {
+            return key;
+        }
+
+        @Override
+        public long size() {
+            return location.length();
+        }
+
+        @Override
+        public long lastModified() {
+            return location.lastModified();
+        }
+
+        @Override
+        public InputStream openStream() {
+            return new ByteBufferInputStream(slice());
+        }
+
+        @Override
+        public InputStream openStream(long offset, long length) {
+            return new ByteBufferInputStream(slice().position((int) offset).limit((int) (offset + length)));
+        }
+
+        @Override
+        public Optional<ByteBuffer> content() {
+            return Optional.of(slice());
+        }
+
+        private ByteBuffer slice() {
+            return location.segment().map.slice(location.dataOffset(), location.length()).asReadOnlyBuffer();
+        }
+    }
+}
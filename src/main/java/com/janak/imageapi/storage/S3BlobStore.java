@@ -0,0 +1,270 @@
+package com.janak.imageapi.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.HtmlUtils;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Stores blobs in an S3-compatible bucket (AWS S3, MinIO, Ceph RGW, ...), addressed path-style as
+ * {@code <endpoint>/<bucket>/<prefix><key>}. Uploads stream from the staged file and downloads stream
+ * straight from the response body; nothing is buffered whole. Batch deletes use the multi-object
+ * delete call, up to 1000 keys per request.
+ */
+@Component
+@ConditionalOnProperty(name = "file.storage.backend", havingValue = "s3")
+public class S3BlobStore implements BlobStore {
+
+    // limit of the multi-object delete call
+    private static final int MAX_KEYS_PER_DELETE = 1000;
+
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    private final URI endpoint;
+
+    private final String bucket;
+
+    private final String prefix;
+
+    private final S3RequestSigner signer;
+
+    private final HttpClient httpClient;
+
+    public S3BlobStore(@Value("${file.storage.s3.endpoint}") URI endpoint,
+                       @Value("${file.storage.s3.region:us-east-1}") String region,
+                       @Value("${file.storage.s3.bucket}") String bucket,
+                       @Value("${file.storage.s3.access-key}") String accessKey,
+                       @Value("${file.storage.s3.secret-key}") String secretKey,
+                       @Value("${file.storage.s3.prefix:}") String prefix) {
+        this.endpoint = endpoint;
+        this.bucket = bucket;
+        this.prefix = prefix;
+        this.signer = new S3RequestSigner(accessKey, secretKey, region);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        return head(key).isPresent();
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        HttpResponse<String> response = send("PUT", objectUri(key), HttpRequest.BodyPublishers.ofFile(source),
+                S3RequestSigner.UNSIGNED_PAYLOAD, new TreeMap<>(), HttpResponse.BodyHandlers.ofString());
+        expectSuccess(response, "PUT", key);
+        Files.deleteIfExists(source);
+    }
+
+    @Override
+    public void put(String key, InputStream content, long length) throws IOException {
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.fromPublisher(
+                HttpRequest.BodyPublishers.ofInputStream(() -> content), length);
+        HttpResponse<String> response = send("PUT", objectUri(key), body, S3RequestSigner.UNSIGNED_PAYLOAD,
+                new TreeMap<>(), HttpResponse.BodyHandlers.ofString());
+        expectSuccess(response, "PUT", key);
+    }
+
+    @Override
+    public Optional<StoredBlob> find(String key) throws IOException {
+        return head(key).map(response -> new S3Blob(key,
+                response.headers().firstValueAsLong("Content-Length").orElse(-1),
+                response.headers().firstValue("Last-Modified")
+                        .map(value -> ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli())
+                        .orElse(-1L)));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        HttpResponse<String> response = send("DELETE", objectUri(key), HttpRequest.BodyPublishers.noBody(),
+                emptyPayloadHash(), new TreeMap<>(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 404) {
+            expectSuccess(response, "DELETE", key);
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<String> keys) throws IOException {
+        List<String> batch = new ArrayList<>(Math.min(keys.size(), MAX_KEYS_PER_DELETE));
+        for (String key : keys) {
+            batch.add(key);
+            if (batch.size() == MAX_KEYS_PER_DELETE) {
+                deleteBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            deleteBatch(batch);
+        }
+    }
+
+    private void deleteBatch(List<String> keys) throws IOException {
+        StringBuilder xml = new StringBuilder("<Delete><Quiet>true</Quiet>");
+        for (String key : keys) {
+            xml.append("<Object><Key>").append(HtmlUtils.htmlEscape(prefix + key)).append("</Key></Object>");
+        }
+        byte[] body = xml.append("</Delete>").toString().getBytes(StandardCharsets.UTF_8);
+        SortedMap<String, String> headers = new TreeMap<>();
+        headers.put("content-md5", Base64.getEncoder().encodeToString(md5(body)));
+        headers.put("content-type", "application/xml");
+        HttpResponse<String> response = send("POST", URI.create(bucketUri() + "?delete"),
+                HttpRequest.BodyPublishers.ofByteArray(body), S3RequestSigner.sha256Hex(body), headers,
+                HttpResponse.BodyHandlers.ofString());
+        expectSuccess(response, "DELETE", keys.size() + " keys");
+        // quiet mode only reports failures, and does so with a 200
+        if (response.body().contains("<Error>")) {
+            throw new IOException("Batch delete failed for some keys: " + response.body());
+        }
+    }
+
+    private Optional<HttpResponse<Void>> head(String key) throws IOException {
+        HttpResponse<Void> response = send("HEAD", objectUri(key), HttpRequest.BodyPublishers.noBody(),
+                emptyPayloadHash(), new TreeMap<>(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 404) {
+            return Optional.empty();
+        }
+        expectSuccess(response, "HEAD", key);
+        return Optional.of(response);
+    }
+
+    private InputStream get(String key, String range) throws IOException {
+        SortedMap<String, String> headers = new TreeMap<>();
+        if (range != null) {
+            headers.put("range", range);
+        }
+        HttpResponse<InputStream> response = send("GET", objectUri(key), HttpRequest.BodyPublishers.noBody(),
+                emptyPayloadHash(), headers, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() / 100 != 2) {
+            response.body().close();
+            throw new IOException("GET " + key + " failed with status " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private <T> HttpResponse<T> send(String method, URI uri, HttpRequest.BodyPublisher body, String payloadHash,
+                                     SortedMap<String, String> headers, HttpResponse.BodyHandler<T> handler) throws IOException {
+        headers.put("host", hostHeader(uri));
+        headers.put("x-amz-date", AMZ_DATE.format(ZonedDateTime.now(ZoneOffset.UTC)));
+        headers.put("x-amz-content-sha256", payloadHash);
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .method(method, body)
+                .timeout(Duration.ofSeconds(60))
+                .header("Authorization", signer.authorization(method, uri, headers, payloadHash));
+        headers.forEach((name, value) -> {
+            // the client sets host itself, from the same URI
+            if (!name.equals("host")) {
+                request.header(name, value);
+            }
+        });
+        try {
+            return httpClient.send(request.build(), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during " + method + " " + uri, e);
+        }
+    }
+
+    private URI objectUri(String key) {
+        return URI.create(bucketUri() + "/" + UriUtils.encodePath(prefix + key, StandardCharsets.UTF_8));
+    }
+
+    private String bucketUri() {
+        String base = endpoint.toString();
+        return (base.endsWith("/") ? base : base + "/") + UriUtils.encodePathSegment(bucket, StandardCharsets.UTF_8);
+    }
+
+    private static String hostHeader(URI uri) {
+        int port = uri.getPort();
+        boolean defaultPort = port == -1
+                || (port == 443 && "https".equals(uri.getScheme()))
+                || (port == 80 && "http".equals(uri.getScheme()));
+        return defaultPort ? uri.getHost() : uri.getHost() + ":" + port;
+    }
+
+    private static String emptyPayloadHash() {
+        return S3RequestSigner.sha256Hex(new byte[0]);
+    }
+
+    private static byte[] md5(byte[] content) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void expectSuccess(HttpResponse<?> response, String method, String target) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException(method + " " + target + " failed with status " + response.statusCode()
+                    + (response.body() instanceof String body && !body.isEmpty() ? ": " + body : ""));
+        }
+    }
+
+    private class S3Blob implements StoredBlob {
+
+        private final String key;
+        private final long size;
+        private final long lastModified;
+
+        S3Blob(String key, long size, long lastModified) {
+            this.key = key;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public String key() {
+            return key;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public long lastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return get(key, null);
+        }
+
+        @Override
+        public InputStream openStream(long offset, long length) throws IOException {
+            if (length == 0) {
+                return InputStream.nullInputStream();
+            }
+            return get(key, "bytes=" + offset + "-" + (offset + length - 1));
+        }
+    }
+}
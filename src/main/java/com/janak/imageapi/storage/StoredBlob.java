@@ -0,0 +1,41 @@
+package com.janak.imageapi.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * A blob found in a {@link BlobStore}, with the attributes the serving path needs.
+ */
+public interface StoredBlob {
+
+    String key();
+
+    long size();
+
+    long lastModified();
+
+    InputStream openStream() throws IOException;
+
+    /**
+     * Opens a stream over {@code length} bytes starting at {@code offset}.
+     */
+    InputStream openStream(long offset, long length) throws IOException;
+
+    /**
+     * The local file holding the blob, for backends that have one. Lets the serving path use sendfile
+     * or {@link java.nio.channels.FileChannel#transferTo} instead of copying through the heap.
+     */
+    default Optional<Path> file() {
+        return Optional.empty();
+    }
+
+    /**
+     * The whole blob as a read-only buffer, for backends that already hold it in memory or mapped.
+     */
+    default Optional<ByteBuffer> content() {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,21 @@
+package com.janak.imageapi.utils;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchUploadResponse {
+    // true only when every file was stored
+    private boolean success;
+    private int succeeded;
+    private int failed;
+    private List<BatchUploadResult> results;
+
+    public BatchUploadResponse(List<BatchUploadResult> results) {
+        this.results = results;
+        this.succeeded = (int) results.stream().filter(BatchUploadResult::isSuccess).count();
+        this.failed = results.size() - succeeded;
+        this.success = failed == 0;
+    }
+}
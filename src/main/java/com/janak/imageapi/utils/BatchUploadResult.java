@@ -0,0 +1,34 @@
+package com.janak.imageapi.utils;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.janak.imageapi.Exception.ErrorResponse;
+import com.janak.imageapi.models.Image;
+import lombok.Data;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchUploadResult {
+    // position of the file in the request
+    private int index;
+    private String fileName;
+    private boolean success;
+    private Image data;
+    private ErrorResponse error;
+
+    public static BatchUploadResult succeeded(int index, String fileName, Image data) {
+        BatchUploadResult result = new BatchUploadResult();
+        result.setIndex(index);
+        result.setFileName(fileName);
+        result.setSuccess(true);
+        result.setData(data);
+        return result;
+    }
+
+    public static BatchUploadResult failed(int index, String fileName, ErrorResponse error) {
+        BatchUploadResult result = new BatchUploadResult();
+        result.setIndex(index);
+        result.setFileName(fileName);
+        result.setError(error);
+        return result;
+    }
+}
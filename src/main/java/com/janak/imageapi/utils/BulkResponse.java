@@ -0,0 +1,19 @@
+package com.janak.imageapi.utils;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkResponse<T> {
+    private boolean success = true;
+    // in the order the ids were requested
+    private List<T> data;
+    // requested ids that do not exist
+    private List<Long> missing;
+
+    public BulkResponse(List<T> data, List<Long> missing) {
+        this.data = data;
+        this.missing = missing;
+    }
+}
@@ -0,0 +1,19 @@
+package com.janak.imageapi.utils;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CursorResponse<T> {
+
+    private List<T> data;
+    private int size;
+    // pass back as ?cursor= to get the next page, null on the last page
+    private String nextCursor;
+    private boolean hasNext;
+    // approximate, only filled in when asked for
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long totalItems;
+}
@@ -2,13 +2,13 @@ package com.janak.imageapi.utils;
 
 public class FileUtils {
 
+        private static final String[] UNITS = {"B", "KB", "MB", "GB", "TB"};
+
         public static String getReadableFileSize(long sizeInBytes) {
             if (sizeInBytes <= 0) return "0 B";
-            final String[] units = new String[]{"B", "KB", "MB", "GB", "TB"};
-            int digitGroups = (int) (Math.log10(sizeInBytes) / Math.log10(1024));
-            return String.format("%.1f %s", sizeInBytes / Math.pow(1024, digitGroups), units[digitGroups]);
+            // powers of 1024 below the size, from its highest set bit
+            int digitGroups = Math.min((63 - Long.numberOfLeadingZeros(sizeInBytes)) / 10, UNITS.length - 1);
+            return String.format("%.1f %s", sizeInBytes / (double) (1L << (10 * digitGroups)), UNITS[digitGroups]);
         }
 
     }
-
-
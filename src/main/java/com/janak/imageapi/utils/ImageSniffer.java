@@ -0,0 +1,195 @@
+package com.janak.imageapi.utils;
+
+import com.janak.imageapi.models.ImageFormat;
+import com.janak.imageapi.models.ImageHeader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Detects the real format of an image file from its magic bytes and reads width and height from the
+ * format header, without decoding anything. Only the first {@value #HEADER_SIZE} bytes are read, except
+ * for JPEG, where the dimensions sit in the first SOF segment: the segments before it are skipped by
+ * their length fields rather than read. One small buffer is allocated per call.
+ */
+public final class ImageSniffer {
+
+    public static final int HEADER_SIZE = 32;
+
+    // JPEG segments to walk before giving up on finding the frame header
+    private static final int MAX_JPEG_SEGMENTS = 256;
+
+    private ImageSniffer() {
+    }
+
+    /**
+     * The format and dimensions of {@code file}, or {@code null} when it is none of the formats in
+     * {@link ImageFormat}.
+     */
+    public static ImageHeader sniff(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return sniff(channel);
+        }
+    }
+
+    public static ImageHeader sniff(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        int length = read(channel, header, 0);
+        ImageFormat format = detect(header, length);
+        if (format == null) {
+            return null;
+        }
+        return switch (format) {
+            case PNG -> length >= 24 && ascii(header, 12, "IHDR")
+                    ? dimensions(format, header.getInt(16), header.getInt(20))
+                    : unknownDimensions(format);
+            case GIF -> length >= 10
+                    ? dimensions(format, u16le(header, 6), u16le(header, 8))
+                    : unknownDimensions(format);
+            case BMP -> bmp(header, length);
+            case WEBP -> webp(header, length);
+            case JPEG -> jpeg(channel, header);
+        };
+    }
+
+    /**
+     * The format the first {@code length} bytes of {@code header} identify, or {@code null}.
+     */
+    public static ImageFormat detect(ByteBuffer header, int length) {
+        if (length >= 3 && u8(header, 0) == 0xFF && u8(header, 1) == 0xD8 && u8(header, 2) == 0xFF) {
+            return ImageFormat.JPEG;
+        }
+        if (length >= 8 && header.getLong(0) == 0x89504E470D0A1A0AL) {
+            return ImageFormat.PNG;
+        }
+        if (length >= 6 && (ascii(header, 0, "GIF87a") || ascii(header, 0, "GIF89a"))) {
+            return ImageFormat.GIF;
+        }
+        if (length >= 12 && ascii(header, 0, "RIFF") && ascii(header, 8, "WEBP")) {
+            return ImageFormat.WEBP;
+        }
+        if (length >= 18 && ascii(header, 0, "BM")) {
+            return ImageFormat.BMP;
+        }
+        return null;
+    }
+
+    private static ImageHeader bmp(ByteBuffer header, int length) {
+        if (length < 26) {
+            return unknownDimensions(ImageFormat.BMP);
+        }
+        if (i32le(header, 14) == 12) {
+            // OS/2 BITMAPCOREHEADER, 16-bit sizes
+            return dimensions(ImageFormat.BMP, u16le(header, 18), u16le(header, 20));
+        }
+        // a negative height marks a top-down bitmap
+        return dimensions(ImageFormat.BMP, i32le(header, 18), Math.abs(i32le(header, 22)));
+    }
+
+    private static ImageHeader webp(ByteBuffer header, int length) {
+        if (length >= 30 && ascii(header, 12, "VP8X")) {
+            return dimensions(ImageFormat.WEBP, u24le(header, 24) + 1, u24le(header, 27) + 1);
+        }
+        if (length >= 25 && ascii(header, 12, "VP8L") && u8(header, 20) == 0x2F) {
+            int bits = i32le(header, 21);
+            return dimensions(ImageFormat.WEBP, (bits & 0x3FFF) + 1, ((bits >>> 14) & 0x3FFF) + 1);
+        }
+        if (length >= 30 && ascii(header, 12, "VP8 ")
+                && u8(header, 23) == 0x9D && u8(header, 24) == 0x01 && u8(header, 25) == 0x2A) {
+            return dimensions(ImageFormat.WEBP, u16le(header, 26) & 0x3FFF, u16le(header, 28) & 0x3FFF);
+        }
+        return unknownDimensions(ImageFormat.WEBP);
+    }
+
+    /**
+     * Walks the marker segments after SOI up to the first start-of-frame, which holds the dimensions.
+     */
+    private static ImageHeader jpeg(FileChannel channel, ByteBuffer buffer) throws IOException {
+        long position = 2;
+        for (int segment = 0; segment < MAX_JPEG_SEGMENTS; segment++) {
+            // marker, length, and for a frame header its precision, height and width
+            int read = read(channel, buffer.clear().limit(9), position);
+            if (read < 4 || u8(buffer, 0) != 0xFF) {
+                break;
+            }
+            int marker = u8(buffer, 1);
+            if (marker == 0xFF) {
+                // fill byte before the marker
+                position++;
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                // standalone markers, no length field
+                position += 2;
+                continue;
+            }
+            if (marker == 0xDA || marker == 0xD9) {
+                // scan data or end of image before any frame header
+                break;
+            }
+            if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                return read == 9
+                        ? dimensions(ImageFormat.JPEG, buffer.getShort(7) & 0xFFFF, buffer.getShort(5) & 0xFFFF)
+                        : unknownDimensions(ImageFormat.JPEG);
+            }
+            int segmentLength = buffer.getShort(2) & 0xFFFF;
+            if (segmentLength < 2) {
+                break;
+            }
+            position += 2 + segmentLength;
+        }
+        return unknownDimensions(ImageFormat.JPEG);
+    }
+
+    /**
+     * Reads into {@code buffer} from {@code position} until it is full or the file ends, and returns the
+     * number of bytes read.
+     */
+    private static int read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static ImageHeader dimensions(ImageFormat format, int width, int height) {
+        return width > 0 && height > 0 ? new ImageHeader(format, width, height) : unknownDimensions(format);
+    }
+
+    private static ImageHeader unknownDimensions(ImageFormat format) {
+        return new ImageHeader(format, -1, -1);
+    }
+
+    private static boolean ascii(ByteBuffer buffer, int offset, String expected) {
+        for (int i = 0; i < expected.length(); i++) {
+            if (buffer.get(offset + i) != (byte) expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int u8(ByteBuffer buffer, int offset) {
+        return buffer.get(offset) & 0xFF;
+    }
+
+    private static int u16le(ByteBuffer buffer, int offset) {
+        return u8(buffer, offset) | u8(buffer, offset + 1) << 8;
+    }
+
+    private static int u24le(ByteBuffer buffer, int offset) {
+        return u16le(buffer, offset) | u8(buffer, offset + 2) << 16;
+    }
+
+    private static int i32le(ByteBuffer buffer, int offset) {
+        return u16le(buffer, offset) | u16le(buffer, offset + 2) << 16;
+    }
+}
@@ -0,0 +1,28 @@
+package com.janak.imageapi.utils;
+
+import com.janak.imageapi.models.FormatUsage;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class StorageUsageResponse {
+
+    private boolean success;
+    private long totalImages;
+    private long totalBytes;
+    private List<FormatUsage> formats;
+
+    public StorageUsageResponse(List<FormatUsage> formats) {
+        this.success = true;
+        this.formats = formats;
+        for (FormatUsage usage : formats) {
+            totalImages += usage.images();
+            totalBytes += usage.bytes();
+        }
+    }
+
+    public String getTotalSize() {
+        return FileUtils.getReadableFileSize(totalBytes);
+    }
+}
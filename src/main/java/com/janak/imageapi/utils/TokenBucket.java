@@ -0,0 +1,66 @@
+package com.janak.imageapi.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket refilled at {@code rate} tokens per second up to {@code capacity}, in the form of the
+ * generic cell rate algorithm: instead of a token count and a refill time, the whole state is the
+ * instant at which the bucket would be full again. Taking tokens moves that instant forward, and a take
+ * that would move it further than {@code capacity} tokens into the future is refused. One
+ * compare-and-set per take, so concurrent callers never block each other.
+ */
+public final class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final long capacity;
+
+    private final double nanosPerToken;
+
+    private final long burstNanos;
+
+    // the instant at which the bucket is full again; in the past while it is full
+    private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE / 2);
+
+    public TokenBucket(double rate, long capacity) {
+        if (rate <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("rate and capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.nanosPerToken = NANOS_PER_SECOND / rate;
+        this.burstNanos = (long) Math.min(capacity * nanosPerToken, Long.MAX_VALUE / 4);
+    }
+
+    /**
+     * Takes {@code tokens}, at most a full bucket, if the bucket holds them at {@code now}
+     * ({@link System#nanoTime}).
+     *
+     * @return 0 when they were taken, otherwise the nanoseconds until they will be available
+     */
+    public long tryTake(long tokens, long now) {
+        long cost = cost(tokens);
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + cost;
+            long wait = next - now;
+            if (wait > burstNanos) {
+                return wait - burstNanos;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Returns {@code tokens} taken by {@link #tryTake} for work that was turned away after all. Once the
+     * bucket has refilled in the meantime this has no effect, it never holds more than {@code capacity}.
+     */
+    public void giveBack(long tokens) {
+        fullAt.addAndGet(-cost(tokens));
+    }
+
+    private long cost(long tokens) {
+        return (long) Math.min(Math.min(tokens, capacity) * nanosPerToken, burstNanos);
+    }
+}
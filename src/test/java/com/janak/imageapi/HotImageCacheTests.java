@@ -0,0 +1,108 @@
+package com.janak.imageapi;
+
+import com.janak.imageapi.Services.HotImageCache;
+import com.janak.imageapi.models.ImageMetadata;
+import com.janak.imageapi.storage.FileBlob;
+import com.janak.imageapi.storage.StoredBlob;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotImageCacheTests {
+
+    @TempDir
+    Path uploadDir;
+
+    @Test
+    void get_ShouldLoadOnceIntoDirectBufferAndCountHits() throws IOException {
+        HotImageCache cache = new HotImageCache(true, DataSize.ofKilobytes(64), DataSize.ofKilobytes(16));
+        Path file = write("a.png", 100);
+
+        ByteBuffer first = cache.get(metadata("a.png", 100), () -> blob(file));
+        ByteBuffer second = cache.get(metadata("a.png", 100), () -> blob(file));
+
+        assertNotNull(first);
+        assertTrue(first.isDirect());
+        assertTrue(first.isReadOnly());
+        assertEquals(100, second.remaining());
+        HotImageCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(100, stats.cachedBytes());
+    }
+
+    @Test
+    void bindTo_ShouldExportHitRatio() throws IOException {
+        HotImageCache cache = new HotImageCache(true, DataSize.ofKilobytes(64), DataSize.ofKilobytes(16));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        Path file = write("a.png", 100);
+
+        cache.get(metadata("a.png", 100), () -> blob(file));
+        cache.get(metadata("a.png", 100), () -> blob(file));
+
+        assertEquals(0.5, registry.get("cache.hit.ratio").tag("cache", "image.hot").gauge().value());
+        assertEquals(1, registry.get("cache.gets").tags("cache", "image.hot", "result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void get_WhenDisabledOrTooLarge_ShouldBypassCache() throws IOException {
+        Path file = write("big.png", 2048);
+
+        assertNull(new HotImageCache(false, DataSize.ofKilobytes(64), DataSize.ofKilobytes(16))
+                .get(metadata("big.png", 2048), () -> blob(file)));
+        assertNull(new HotImageCache(true, DataSize.ofKilobytes(64), DataSize.ofKilobytes(1))
+                .get(metadata("big.png", 2048), () -> blob(file)));
+    }
+
+    @Test
+    void get_WhenTotalBytesExceedLimit_ShouldEvict() throws IOException {
+        HotImageCache cache = new HotImageCache(true, DataSize.ofKilobytes(4), DataSize.ofKilobytes(4));
+        for (int i = 0; i < 8; i++) {
+            Path file = write(i + ".png", 1024);
+            cache.get(metadata(i + ".png", 1024), () -> blob(file));
+        }
+
+        HotImageCache.Stats stats = cache.stats();
+        assertTrue(stats.cachedBytes() <= 4096);
+        assertTrue(stats.evictions() >= 4);
+    }
+
+    @Test
+    void invalidate_ShouldForceReload() throws IOException {
+        HotImageCache cache = new HotImageCache(true, DataSize.ofKilobytes(64), DataSize.ofKilobytes(16));
+        Path file = write("a.png", 10);
+        cache.get(metadata("a.png", 10), () -> blob(file));
+
+        cache.invalidate("a.png");
+        Files.delete(file);
+
+        assertNull(cache.get(metadata("a.png", 10), () -> blob(file)));
+    }
+
+    private static Optional<StoredBlob> blob(Path file) {
+        try {
+            return Optional.of(FileBlob.of(file));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Path write(String name, int size) throws IOException {
+        return Files.write(uploadDir.resolve(name), new byte[size]);
+    }
+
+    private static ImageMetadata metadata(String name, long size) {
+        return new ImageMetadata(name, name, MediaType.IMAGE_PNG, size, null, 0);
+    }
+}
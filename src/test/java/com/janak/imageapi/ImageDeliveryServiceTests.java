@@ -0,0 +1,193 @@
+package com.janak.imageapi;
+
+import com.janak.imageapi.Exception.ImageNotFoundException;
+import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.Services.HotImageCache;
+import com.janak.imageapi.Services.ImageDeliveryService;
+import com.janak.imageapi.Services.ImageMetadataIndex;
+import com.janak.imageapi.Services.ImageMetrics;
+import com.janak.imageapi.Services.ImageVariantService;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.storage.ImageStorage;
+import com.janak.imageapi.storage.LocalBlobStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ImageDeliveryServiceTests {
+
+    private static final byte[] CONTENT = "0123456789".getBytes();
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @TempDir
+    Path uploadDir;
+
+    private ImageMetadataIndex metadataIndex;
+    private ImageDeliveryService deliveryService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        metadataIndex = new ImageMetadataIndex(imageRepository, false);
+        deliveryService = new ImageDeliveryService(metadataIndex, disabledCache(), variantService(), storage(),
+                new ImageMetrics(meterRegistry));
+        Files.write(uploadDir.resolve("test.png"), CONTENT);
+        Image image = Image.builder()
+                .id(1L)
+                .imageName("test.png")
+                .imageType("image/png")
+                .imageSizeBytes((long) CONTENT.length)
+                .contentHash("abc123")
+                .uploadedAt(new Date(1_700_000_000_000L))
+                .build();
+        lenient().when(imageRepository.findByImageName("test.png")).thenReturn(Optional.of(image));
+        request = new MockHttpServletRequest("GET", "/api/images/image/test.png");
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    void serve_WithoutRange_ShouldSendWholeFileWithValidators() throws IOException {
+        deliveryService.serve("test.png", request, response);
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+        assertEquals(CONTENT.length, response.getContentLengthLong());
+        assertEquals("image/png", response.getContentType());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("\"abc123\"", response.getHeader(HttpHeaders.ETAG));
+        assertEquals(CONTENT.length, meterRegistry.get("image.bytes.out").counter().count());
+        assertEquals(1, meterRegistry.get("image.serve").tag("stage", "transfer").timer().count());
+        assertEquals(0, meterRegistry.get("image.streams.active").gauge().value());
+        assertNotNull(response.getHeader(HttpHeaders.LAST_MODIFIED));
+    }
+
+    @Test
+    void serve_WithMatchingIfNoneMatch_ShouldReturnNotModified() throws IOException {
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"abc123\"");
+
+        deliveryService.serve("test.png", request, response);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void serve_WithIfModifiedSinceAfterUpload_ShouldReturnNotModified() throws IOException {
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, 1_700_000_100_000L);
+
+        deliveryService.serve("test.png", request, response);
+
+        assertEquals(304, response.getStatus());
+    }
+
+    @Test
+    void serve_WithSingleRange_ShouldReturnPartialContent() throws IOException {
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+
+        deliveryService.serve("test.png", request, response);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("2345", response.getContentAsString());
+        assertEquals("bytes 2-5/10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(4, response.getContentLengthLong());
+    }
+
+    @Test
+    void serve_WithStaleIfRange_ShouldIgnoreRange() throws IOException {
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"other\"");
+
+        deliveryService.serve("test.png", request, response);
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+    }
+
+    @Test
+    void serve_WithUnsatisfiableRange_ShouldReturn416() throws IOException {
+        request.addHeader(HttpHeaders.RANGE, "bytes=50-60");
+
+        deliveryService.serve("test.png", request, response);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void serve_WhenSendfileSupported_ShouldDelegateToContainer() throws IOException {
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=4-");
+
+        deliveryService.serve("test.png", request, response);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(uploadDir.resolve("test.png").toAbsolutePath().normalize().toString(),
+                request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(4L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(10L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    void serve_WithHotImageCache_ShouldServeRangeFromMemoryAfterFirstRead() throws IOException {
+        HotImageCache cache = new HotImageCache(true, DataSize.ofMegabytes(1), DataSize.ofKilobytes(256));
+        deliveryService = new ImageDeliveryService(metadataIndex, cache, variantService(), storage(),
+                new ImageMetrics(meterRegistry));
+        deliveryService.serve("test.png", request, new MockHttpServletResponse());
+        Files.delete(uploadDir.resolve("test.png"));
+        request.addHeader(HttpHeaders.RANGE, "bytes=7-");
+
+        deliveryService.serve("test.png", request, response);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("789", response.getContentAsString());
+        assertEquals(1, cache.stats().hits());
+        assertEquals(1, cache.stats().misses());
+    }
+
+    @Test
+    void serve_WithUnknownImage_ShouldThrowImageNotFoundException() {
+        when(imageRepository.findByImageName("missing.png")).thenReturn(Optional.empty());
+
+        assertThrows(ImageNotFoundException.class, () -> deliveryService.serve("missing.png", request, response));
+    }
+
+    private ImageVariantService variantService() {
+        return new ImageVariantService(storage(), uploadDir.resolve("variants").toString(), List.of(256), 0, Duration.ofSeconds(1));
+    }
+
+    private ImageStorage storage() {
+        return new ImageStorage(imageRepository, new LocalBlobStore(uploadDir.toString()), uploadDir.toString(), DataSize.ofMegabytes(2), true);
+    }
+
+    private static HotImageCache disabledCache() {
+        return new HotImageCache(false, DataSize.ofMegabytes(1), DataSize.ofKilobytes(256));
+    }
+}
@@ -0,0 +1,120 @@
+package com.janak.imageapi;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.Services.ImageExportService;
+import com.janak.imageapi.models.Image;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the NDJSON export against an in-memory database, inside the test's transaction.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class ImageExportServiceTests {
+
+    private static final Instant BASE = Instant.parse("2024-05-01T10:00:00Z");
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ImageExportService exportService;
+
+    private List<Long> ids;
+
+    @BeforeEach
+    void setUp() {
+        exportService = new ImageExportService(imageRepository, objectMapper);
+        ids = new ArrayList<>();
+        // more rows than one fetch, last written in reverse id order
+        int count = ImageRepository.EXPORT_FETCH_SIZE + 20;
+        for (int i = 0; i < count; i++) {
+            Image image = imageRepository.save(Image.builder().imageName("image-" + i + ".png").imageSizeBytes(1024L).build());
+            ids.add(image.getId());
+        }
+        imageRepository.flush();
+        for (int i = 0; i < count; i++) {
+            entityManager.getEntityManager()
+                    .createNativeQuery("update image set updated_at = ?1 where id = ?2")
+                    .setParameter(1, Timestamp.from(BASE.minusSeconds(i)))
+                    .setParameter(2, ids.get(i))
+                    .executeUpdate();
+        }
+        entityManager.clear();
+    }
+
+    @Test
+    void export_ShouldWriteEveryImageAsOneJsonLineInIdOrder() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = exportService.export(null, out);
+
+        List<JsonNode> lines = lines(out);
+        assertEquals(ids.size(), count);
+        assertEquals(ids, lines.stream().map(line -> line.get("id").asLong()).toList());
+        assertEquals("image-0.png", lines.get(0).get("imageName").asText());
+        assertEquals("1.0 KB", lines.get(0).get("imageSize").asText());
+        // projections only, nothing was attached to the persistence context
+        assertEquals(0, entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount());
+    }
+
+    @Test
+    void export_SinceWatermark_ShouldWriteImagesWrittenAtOrAfterItInThatOrder() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // rows 0 to 2 were last written at BASE, BASE - 1s and BASE - 2s
+        long count = exportService.export(BASE.minusSeconds(2), out);
+
+        assertEquals(3, count);
+        assertEquals(List.of(ids.get(2), ids.get(1), ids.get(0)),
+                lines(out).stream().map(line -> line.get("id").asLong()).toList());
+    }
+
+    @Test
+    void export_SinceWatermark_ShouldIncludeImagesChangedAfterTheirUpload() throws IOException {
+        Image renamed = imageRepository.findById(ids.get(5)).orElseThrow();
+        renamed.setImageName("renamed.png");
+        imageRepository.saveAndFlush(renamed);
+        imageRepository.updateDimensions(ids.get(6), "image-6.png", 64, 48);
+        entityManager.clear();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = exportService.export(BASE.plusSeconds(1), out);
+
+        List<JsonNode> lines = lines(out);
+        assertEquals(2, count);
+        assertEquals(Set.of(ids.get(5), ids.get(6)),
+                Set.copyOf(lines.stream().map(line -> line.get("id").asLong()).toList()));
+    }
+
+    private List<JsonNode> lines(ByteArrayOutputStream out) throws IOException {
+        String ndjson = out.toString(StandardCharsets.UTF_8);
+        assertTrue(ndjson.endsWith("\n"));
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : ndjson.split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,84 @@
+package com.janak.imageapi;
+
+import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.Services.ImageMetadataCache;
+import com.janak.imageapi.Services.ImageMetadataIndex;
+import com.janak.imageapi.config.ImageMetadataBackfill;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.models.ImageFormat;
+import com.janak.imageapi.storage.ImageStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageMetadataBackfillTests {
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private ImageStorage imageStorage;
+
+    @Mock
+    private ImageMetadataCache imageCache;
+
+    private ImageMetadataIndex metadataIndex;
+    private ImageMetadataBackfill backfill;
+
+    @BeforeEach
+    void setUp() {
+        metadataIndex = new ImageMetadataIndex(imageRepository, false);
+        backfill = new ImageMetadataBackfill(imageRepository, imageStorage, imageCache, metadataIndex, true);
+    }
+
+    @Test
+    void backfill_ShouldInvalidateAndReindexEachBatchAsItIsWritten() {
+        List<Image> firstBatch = LongStream.rangeClosed(1, 500).mapToObj(ImageMetadataBackfillTests::legacyImage).toList();
+        when(imageRepository.findIncompleteAfter(eq(0L), any(Limit.class))).thenReturn(firstBatch);
+        when(imageRepository.findIncompleteAfter(eq(500L), any(Limit.class))).thenReturn(List.of(legacyImage(501L)));
+        when(imageRepository.fillSizeAndFormat(anyLong(), eq(42L), eq(ImageFormat.PNG))).thenReturn(1);
+        // the index still holds what was there before the backfill
+        metadataIndex.put(Image.builder().id(501L).imageName("501.png").imageType("image/png").build());
+
+        backfill.backfill();
+
+        verify(imageCache).invalidate(LongStream.rangeClosed(1, 500).boxed().toList());
+        verify(imageCache).invalidate(List.of(501L));
+        assertEquals(42L, metadataIndex.find("501.png").orElseThrow().size());
+        assertEquals(501, metadataIndex.size());
+    }
+
+    @Test
+    void backfill_WithNothingLearned_ShouldLeaveCachesAlone() {
+        Image unknown = Image.builder().id(1L).imageName("1.bin").imageSizeBytes(42L).build();
+        when(imageRepository.findIncompleteAfter(eq(0L), any(Limit.class))).thenReturn(List.of(unknown));
+
+        backfill.backfill();
+
+        verify(imageRepository, never()).fillSizeAndFormat(anyLong(), any(), any());
+        verifyNoInteractions(imageCache);
+        assertEquals(0, metadataIndex.size());
+    }
+
+    private static Image legacyImage(long id) {
+        return Image.builder()
+                .id(id)
+                .imageName(id + ".png")
+                .imageType("image/png")
+                .imageSizeBytes(42L)
+                .build();
+    }
+}
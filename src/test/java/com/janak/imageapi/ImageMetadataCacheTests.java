@@ -0,0 +1,150 @@
+package com.janak.imageapi;
+
+import com.janak.imageapi.Services.CacheInvalidationBus;
+import com.janak.imageapi.Services.ImageMetadataCache;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.models.ImageSummary;
+import com.janak.imageapi.models.ProcessingStatus;
+import com.janak.imageapi.utils.PaginatedResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageMetadataCacheTests {
+
+    private final List<CacheInvalidationBus> buses = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (CacheInvalidationBus bus : buses) {
+            bus.close();
+        }
+    }
+
+    @Test
+    void getImage_ShouldCacheFinishedRowsAndReportHitRatio() throws IOException {
+        ImageMetadataCache cache = cache(bus(0, List.of()));
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 4; i++) {
+            cache.getImage(1L, id -> {
+                loads.incrementAndGet();
+                return Optional.of(image(id, ProcessingStatus.COMPLETED));
+            });
+        }
+
+        assertEquals(1, loads.get());
+        ImageMetadataCache.Stats stats = cache.stats();
+        assertEquals(3, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(0.75, stats.hitRate());
+        assertEquals(1, stats.entries());
+    }
+
+    @Test
+    void getImage_InvalidatedWhileLoading_ShouldNotCacheTheLoadedRow() throws IOException {
+        ImageMetadataCache cache = cache(bus(0, List.of()));
+
+        cache.getImage(1L, id -> {
+            // a write commits and invalidates while the old row is on its way back
+            cache.invalidate(List.of(id));
+            return Optional.of(image(id, ProcessingStatus.COMPLETED));
+        });
+
+        assertEquals(0, cache.stats().entries());
+    }
+
+    @Test
+    void getImages_ShouldLoadOnlyMissingIdsInOneCall() throws IOException {
+        ImageMetadataCache cache = cache(bus(0, List.of()));
+        cache.getImage(1L, id -> Optional.of(image(id, ProcessingStatus.COMPLETED)));
+        List<List<Long>> loaderCalls = new ArrayList<>();
+
+        Map<Long, Image> found = cache.getImages(List.of(1L, 2L, 3L), ids -> {
+            loaderCalls.add(List.copyOf(ids));
+            return List.of(image(2L, ProcessingStatus.COMPLETED));
+        });
+
+        assertEquals(List.of(List.of(2L, 3L)), loaderCalls);
+        assertEquals(2, found.size());
+    }
+
+    @Test
+    void getPage_ShouldBeDroppedByAnyWrite() throws IOException {
+        ImageMetadataCache cache = cache(bus(0, List.of()));
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.getPage(1, 10, () -> page(loads));
+        cache.getPage(1, 10, () -> page(loads));
+        cache.invalidate(List.of());
+        cache.getPage(1, 10, () -> page(loads));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidate_ShouldReachOtherInstance() throws Exception {
+        int portA = freePort();
+        int portB = freePort();
+        ImageMetadataCache nodeA = cache(bus(portA, List.of("localhost:" + portB)));
+        // both nodes may share one peer list, a node ignores its own messages
+        ImageMetadataCache nodeB = cache(bus(portB, List.of("localhost:" + portA, "localhost:" + portB)));
+        AtomicInteger loadsOnB = new AtomicInteger();
+        nodeB.getImage(7L, id -> {
+            loadsOnB.incrementAndGet();
+            return Optional.of(image(id, ProcessingStatus.COMPLETED));
+        });
+
+        nodeA.invalidate(List.of(7L));
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (nodeB.stats().remoteInvalidations() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, nodeB.stats().remoteInvalidations());
+        assertTrue(nodeB.stats().lastRemoteLagMillis() >= 0);
+        nodeB.getImage(7L, id -> {
+            loadsOnB.incrementAndGet();
+            return Optional.of(image(id, ProcessingStatus.COMPLETED));
+        });
+        assertEquals(2, loadsOnB.get());
+    }
+
+    private CacheInvalidationBus bus(int port, List<String> peers) throws IOException {
+        CacheInvalidationBus bus = new CacheInvalidationBus(port, peers);
+        buses.add(bus);
+        return bus;
+    }
+
+    private static ImageMetadataCache cache(CacheInvalidationBus bus) {
+        return new ImageMetadataCache(true, 100, Duration.ofMinutes(1), bus);
+    }
+
+    private static Image image(long id, ProcessingStatus status) {
+        return Image.builder().id(id).imageName(id + ".png").processingStatus(status).build();
+    }
+
+    private static PaginatedResponse<ImageSummary> page(AtomicInteger loads) {
+        loads.incrementAndGet();
+        PaginatedResponse<ImageSummary> page = new PaginatedResponse<>();
+        page.setData(List.of(new ImageSummary(1L, "1.png", null, null, null, null, null, null, null,
+                ProcessingStatus.COMPLETED, null, null)));
+        return page;
+    }
+
+    private static int freePort() throws IOException {
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.janak.imageapi;
+
+import com.janak.imageapi.Exception.ImageNotFoundException;
+import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.Services.ImageMetadataIndex;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.models.ImageMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageMetadataIndexTests {
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    private ImageMetadataIndex metadataIndex;
+
+    @BeforeEach
+    void setUp() {
+        metadataIndex = new ImageMetadataIndex(imageRepository, true);
+    }
+
+    @Test
+    void lookup_AfterPut_ShouldNotQueryRepository() {
+        metadataIndex.put(image(1L, "a.png"));
+
+        ImageMetadata metadata = metadataIndex.lookup("a.png");
+
+        assertEquals(MediaType.IMAGE_PNG, metadata.contentType());
+        assertEquals(42L, metadata.size());
+        assertEquals("\"hash-1\"", metadata.etag());
+        verify(imageRepository, never()).findByImageName(anyString());
+    }
+
+    @Test
+    void lookup_WithUnknownName_ShouldLoadFromRepositoryOnce() {
+        when(imageRepository.findByImageName("b.png")).thenReturn(Optional.of(image(2L, "b.png")));
+
+        metadataIndex.lookup("b.png");
+        metadataIndex.lookup("b.png");
+
+        verify(imageRepository, times(1)).findByImageName("b.png");
+    }
+
+    @Test
+    void lookup_AfterRemove_ShouldThrowWhenRowIsGone() {
+        metadataIndex.put(image(1L, "a.png"));
+        metadataIndex.remove("a.png");
+        when(imageRepository.findByImageName("a.png")).thenReturn(Optional.empty());
+
+        assertThrows(ImageNotFoundException.class, () -> metadataIndex.lookup("a.png"));
+    }
+
+    @Test
+    void lookup_RacingARemoval_ShouldNotPutTheNameBack() {
+        // the row is read, then deleted and removed from the index before the lookup caches it
+        when(imageRepository.findByImageName("a.png")).thenAnswer(invocation -> {
+            metadataIndex.remove("a.png");
+            return Optional.of(image(1L, "a.png"));
+        });
+
+        assertEquals(42L, metadataIndex.lookup("a.png").size());
+
+        assertTrue(metadataIndex.find("a.png").isEmpty());
+    }
+
+    @Test
+    void preload_ShouldPageThroughRepositoryById() {
+        List<Image> firstBatch = LongStream.rangeClosed(1, 1000).mapToObj(id -> image(id, id + ".png")).toList();
+        when(imageRepository.findTop1000ByIdGreaterThanOrderByIdAsc(0L)).thenReturn(firstBatch);
+        when(imageRepository.findTop1000ByIdGreaterThanOrderByIdAsc(1000L)).thenReturn(List.of(image(1001L, "1001.png")));
+
+        metadataIndex.preload();
+
+        assertEquals(1001, metadataIndex.size());
+        verify(imageRepository, times(2)).findTop1000ByIdGreaterThanOrderByIdAsc(anyLong());
+    }
+
+    private static Image image(long id, String name) {
+        return Image.builder()
+                .id(id)
+                .imageName(name)
+                .imageType("image/png")
+                .imageSizeBytes(42L)
+                .contentHash("hash-" + id)
+                .build();
+    }
+}
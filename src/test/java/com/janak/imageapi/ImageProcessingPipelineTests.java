@@ -0,0 +1,192 @@
+package com.janak.imageapi;
+
+import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.models.ProcessingStatus;
+import com.janak.imageapi.processing.ImageProcessingPipeline;
+import com.janak.imageapi.processing.ImageProcessingStage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageProcessingPipelineTests {
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void submit_ShouldRunStagesInOrderAndMarkCompleted() {
+        List<String> calls = new CopyOnWriteArrayList<>();
+        ImageProcessingPipeline pipeline = pipeline(2, 3,
+                stage("first", ImageProcessingStage.Kind.IO, image -> calls.add("first")),
+                stage("second", ImageProcessingStage.Kind.CPU, image -> calls.add("second")));
+
+        assertTrue(pipeline.submit(image(1L)));
+
+        verify(imageRepository, timeout(2000)).updateProcessingStatus(1L, "1.png", ProcessingStatus.COMPLETED);
+        verify(imageRepository).updateProcessingStatus(1L, "1.png", ProcessingStatus.PROCESSING);
+        assertEquals(List.of("first", "second"), calls);
+    }
+
+    @Test
+    void submit_WithFlakyStage_ShouldRetryThenComplete() {
+        AtomicInteger attempts = new AtomicInteger();
+        ImageProcessingPipeline pipeline = pipeline(2, 3, stage("flaky", ImageProcessingStage.Kind.IO, image -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("transient");
+            }
+        }));
+
+        pipeline.submit(image(1L));
+
+        verify(imageRepository, timeout(2000)).updateProcessingStatus(1L, "1.png", ProcessingStatus.COMPLETED);
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void submit_WithStageFailingEveryAttempt_ShouldMarkFailed() {
+        AtomicInteger attempts = new AtomicInteger();
+        ImageProcessingPipeline pipeline = pipeline(2, 2, stage("broken", ImageProcessingStage.Kind.CPU, image -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("permanent");
+        }));
+
+        pipeline.submit(image(1L));
+
+        verify(imageRepository, timeout(2000)).updateProcessingStatus(1L, "1.png", ProcessingStatus.FAILED);
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void submit_WhenFull_ShouldRejectWithoutBlockingAndLeaveImagePending() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        ImageProcessingPipeline pipeline = pipeline(1, 1,
+                stage("slow", ImageProcessingStage.Kind.IO, image -> release.await(5, TimeUnit.SECONDS)));
+
+        assertTrue(pipeline.submit(image(1L)));
+        assertFalse(pipeline.submit(image(2L)));
+        release.countDown();
+
+        verify(imageRepository, timeout(2000)).updateProcessingStatus(1L, "1.png", ProcessingStatus.COMPLETED);
+        verify(imageRepository, never()).updateProcessingStatus(eq(2L), any(), any(ProcessingStatus.class));
+    }
+
+    @Test
+    void submit_WithNewContentWhileProcessing_ShouldProcessItAfterTheRunningOne() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> processed = new CopyOnWriteArrayList<>();
+        ImageProcessingPipeline pipeline = pipeline(2, 1, stage("slow", ImageProcessingStage.Kind.IO, image -> {
+            if (image.getStorageKey().equals("old")) {
+                started.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            processed.add(image.getStorageKey());
+        }));
+
+        assertTrue(pipeline.submit(image(1L, "old")));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // updateImage while the old content is still being processed
+        assertTrue(pipeline.submit(image(1L, "new")));
+        release.countDown();
+
+        verify(imageRepository, timeout(2000)).updateProcessingStatus(1L, "new", ProcessingStatus.COMPLETED);
+        verify(imageRepository).updateProcessingStatus(1L, "old", ProcessingStatus.COMPLETED);
+        assertEquals(List.of("old", "new"), processed);
+        assertEquals(0, pipeline.inFlightCount());
+    }
+
+    @Test
+    void submit_WithSameContentWhileProcessing_ShouldNotRunAgain() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        ImageProcessingPipeline pipeline = pipeline(2, 1, stage("slow", ImageProcessingStage.Kind.IO, image -> {
+            runs.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+        }));
+
+        assertTrue(pipeline.submit(image(1L, "same")));
+        assertTrue(pipeline.submit(image(1L, "same")));
+        release.countDown();
+
+        verify(imageRepository, timeout(2000)).updateProcessingStatus(1L, "same", ProcessingStatus.COMPLETED);
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void resubmitPending_ShouldSubmitPendingImages() {
+        ImageProcessingPipeline pipeline = pipeline(4, 1, stage("noop", ImageProcessingStage.Kind.IO, image -> { }));
+        when(imageRepository.findTop100ByProcessingStatusOrderByIdAsc(ProcessingStatus.PENDING))
+                .thenReturn(List.of(image(7L), image(8L)));
+
+        pipeline.resubmitPending();
+
+        verify(imageRepository, timeout(2000)).updateProcessingStatus(7L, "7.png", ProcessingStatus.COMPLETED);
+        verify(imageRepository, timeout(2000)).updateProcessingStatus(8L, "8.png", ProcessingStatus.COMPLETED);
+    }
+
+    private ImageProcessingPipeline pipeline(int queueCapacity, int maxAttempts, ImageProcessingStage... stages) {
+        return new ImageProcessingPipeline(List.of(stages), imageRepository, executor, executor, true,
+                queueCapacity, maxAttempts, Duration.ofMillis(10));
+    }
+
+    private static Image image(long id) {
+        return Image.builder().id(id).imageName(id + ".png").processingStatus(ProcessingStatus.PENDING).build();
+    }
+
+    private static Image image(long id, String storageKey) {
+        return Image.builder().id(id).imageName(id + ".png").storageKey(storageKey)
+                .processingStatus(ProcessingStatus.PENDING).build();
+    }
+
+    private interface StageBody {
+        void run(Image image) throws Exception;
+    }
+
+    private static ImageProcessingStage stage(String name, ImageProcessingStage.Kind kind, StageBody body) {
+        return new ImageProcessingStage() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public Kind kind() {
+                return kind;
+            }
+
+            @Override
+            public void process(Image image) throws Exception {
+                body.run(image);
+            }
+        };
+    }
+}
@@ -0,0 +1,260 @@
+package com.janak.imageapi;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.models.FormatUsage;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.models.ImageCursor;
+import com.janak.imageapi.models.ImageFormat;
+import com.janak.imageapi.models.ImageSearch;
+import com.janak.imageapi.models.ImageSummary;
+import com.janak.imageapi.models.ProcessingStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the keyset, listing, search, bulk and usage queries of {@link ImageRepository} against an in-memory database.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class ImageRepositoryTests {
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private List<Image> saved;
+
+    @BeforeEach
+    void setUp() {
+        saved = new ArrayList<>();
+        Instant base = Instant.parse("2024-05-01T10:00:00Z");
+        for (int i = 0; i < 7; i++) {
+            Image image = imageRepository.saveAndFlush(Image.builder().imageName("image-" + i + ".png").build());
+            // pairs of rows share an upload time, so the id tie-break is exercised; the column is
+            // insert-only for the entity, so the time is written directly
+            entityManager.getEntityManager()
+                    .createNativeQuery("update image set uploaded_at = ?1 where id = ?2")
+                    .setParameter(1, Timestamp.from(base.plusMillis(i / 2)))
+                    .setParameter(2, image.getId())
+                    .executeUpdate();
+            saved.add(image);
+        }
+        entityManager.clear();
+        saved.replaceAll(image -> imageRepository.findById(image.getId()).orElseThrow());
+    }
+
+    @Test
+    void scroll_ById_ShouldVisitEveryRowOnceInIdOrder() {
+        List<Long> expected = saved.stream().map(Image::getId).sorted().toList();
+
+        assertEquals(expected, scrollAll(ImageCursor.Order.ID, 3));
+    }
+
+    @Test
+    void scroll_ByNewest_ShouldVisitEveryRowOnceNewestFirst() {
+        List<Long> expected = saved.stream()
+                .sorted(Comparator.comparing(Image::getUploadedAt).thenComparing(Image::getId).reversed())
+                .map(Image::getId)
+                .toList();
+
+        assertEquals(expected, scrollAll(ImageCursor.Order.NEWEST, 2));
+    }
+
+    @Test
+    void scroll_WithSearch_ShouldOnlyVisitMatchingRowsInSizeOrder() {
+        for (int i = 0; i < saved.size(); i++) {
+            Image image = saved.get(i);
+            image.setFormat(i == 0 ? ImageFormat.JPEG : ImageFormat.PNG);
+            // sizes repeat, so the id tie-break is exercised; row 4 has no size yet
+            image.setImageSizeBytes(i == 4 ? null : 100L * (i % 2 + 1));
+            image.setWidth(100 * (i + 1));
+        }
+        imageRepository.saveAllAndFlush(saved);
+        ImageSearch search = ImageSearch.of(List.of("png"), 50L, null, null, 500, null, null, null, null);
+
+        // rows 1 to 3 with sizes 200, 100, 200: row 0 is a jpeg, row 4 has no size, rows 5 and 6 are too wide
+        List<Long> largestFirst = List.of(saved.get(3).getId(), saved.get(1).getId(), saved.get(2).getId());
+        List<Long> smallestFirst = List.of(saved.get(2).getId(), saved.get(1).getId(), saved.get(3).getId());
+
+        assertEquals(largestFirst, scrollAll(search.specification(ImageCursor.Order.LARGEST), ImageCursor.Order.LARGEST, 2));
+        assertEquals(smallestFirst, scrollAll(search.specification(ImageCursor.Order.SMALLEST), ImageCursor.Order.SMALLEST, 1));
+    }
+
+    @Test
+    void scroll_WithUploadWindow_ShouldVisitRowsOldestFirst() {
+        Instant base = Instant.parse("2024-05-01T10:00:00Z");
+        ImageSearch search = ImageSearch.of(null, null, null, null, null, null, null, base.plusMillis(1), base.plusMillis(3));
+
+        List<Long> expected = saved.subList(2, 6).stream().map(Image::getId).toList();
+
+        assertEquals(expected, scrollAll(search.specification(ImageCursor.Order.OLDEST), ImageCursor.Order.OLDEST, 3));
+    }
+
+    @Test
+    void scroll_PastLastRow_ShouldReturnEmptyWindow() {
+        long lastId = saved.get(saved.size() - 1).getId();
+
+        Window<Image> window = imageRepository.scroll(ImageCursor.Order.ID.sort(),
+                new ImageCursor(ImageCursor.Order.ID, lastId, null).position(), 3);
+
+        assertTrue(window.isEmpty());
+        assertFalse(window.hasNext());
+    }
+
+    @Test
+    void findSummaries_ShouldPageInIdOrderAndSerializeLikeTheEntity() throws JsonProcessingException {
+        Image image = saved.get(3);
+        image.setImageType("image/png");
+        image.setFormat(ImageFormat.PNG);
+        image.setImageSizeBytes(2048L);
+        image.setContentHash("abc123");
+        image.setStorageKey("abc123");
+        image.setWidth(64);
+        image.setHeight(48);
+        image.setProcessingStatus(ProcessingStatus.COMPLETED);
+        imageRepository.saveAndFlush(image);
+        entityManager.clear();
+
+        Page<ImageSummary> page = imageRepository.findSummaries(PageRequest.of(1, 3));
+
+        assertEquals(List.of(saved.get(3).getId(), saved.get(4).getId(), saved.get(5).getId()),
+                page.getContent().stream().map(ImageSummary::id).toList());
+        assertEquals(7, page.getTotalElements());
+        assertEquals(3, page.getTotalPages());
+        ObjectMapper objectMapper = new ObjectMapper();
+        Image entity = imageRepository.findById(image.getId()).orElseThrow();
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsString(entity)),
+                objectMapper.readTree(objectMapper.writeValueAsString(page.getContent().get(0))));
+    }
+
+    @Test
+    void processingUpdates_ShouldOnlyApplyWhileTheRowHoldsTheProcessedContent() {
+        Image image = saved.get(0);
+        image.setStorageKey("new");
+        imageRepository.saveAndFlush(image);
+
+        int stale = imageRepository.updateDimensions(image.getId(), "old", 10, 10)
+                + imageRepository.updateProcessingStatus(image.getId(), "old", ProcessingStatus.COMPLETED);
+        int current = imageRepository.updateDimensions(image.getId(), "new", 20, 30);
+        // rows without a storage key are stored under their name
+        int legacy = imageRepository.updateDimensions(saved.get(1).getId(), "image-1.png", 40, 50);
+        entityManager.clear();
+
+        assertEquals(0, stale);
+        assertEquals(2, current + legacy);
+        Image reloaded = imageRepository.findById(image.getId()).orElseThrow();
+        assertEquals(20, reloaded.getWidth());
+        assertNull(reloaded.getProcessingStatus());
+        assertEquals(40, imageRepository.findById(saved.get(1).getId()).orElseThrow().getWidth());
+    }
+
+    @Test
+    void deleteImagesByIds_ShouldLeaveOnlyContentOfRemainingRowsReferenced() {
+        saved.get(0).setStorageKey("shared");
+        saved.get(1).setStorageKey("shared");
+        saved.get(2).setStorageKey("single");
+        imageRepository.saveAllAndFlush(saved.subList(0, 3));
+
+        int deleted = imageRepository.deleteImagesByIds(List.of(saved.get(1).getId(), saved.get(2).getId(), -1L));
+
+        assertEquals(2, deleted);
+        assertEquals(Set.of("shared"), imageRepository.findReferencedStorageKeys(List.of("shared", "single", "unknown")));
+    }
+
+    @Test
+    void findReferencedKeys_ShouldMatchStorageKeysAndNamesOfRowsWithoutOne() {
+        saved.get(0).setStorageKey("hash");
+        saved.get(1).setStorageKey("hash");
+        imageRepository.saveAllAndFlush(saved.subList(0, 2));
+
+        // image-0.png is stored under its hash now, image-2.png under its name
+        Set<String> referenced = imageRepository.findReferencedKeys(List.of("hash", "image-0.png", "image-2.png", "unknown"));
+
+        assertEquals(Set.of("hash", "image-2.png"), referenced);
+    }
+
+    @Test
+    void usageByFormat_ShouldCountAndSumPerFormat() {
+        for (int i = 0; i < 4; i++) {
+            saved.get(i).setFormat(i < 3 ? ImageFormat.PNG : ImageFormat.JPEG);
+            saved.get(i).setImageSizeBytes(100L * (i + 1));
+        }
+        imageRepository.saveAllAndFlush(saved.subList(0, 4));
+
+        Map<ImageFormat, FormatUsage> usage = new HashMap<>();
+        imageRepository.usageByFormat().forEach(row -> usage.put(row.format(), row));
+
+        assertEquals(new FormatUsage(ImageFormat.PNG, 3, 600), usage.get(ImageFormat.PNG));
+        assertEquals(new FormatUsage(ImageFormat.JPEG, 1, 400), usage.get(ImageFormat.JPEG));
+        assertEquals(new FormatUsage(null, 3, 0), usage.get(null));
+    }
+
+    @Test
+    void fillSizeAndFormat_ShouldOnlyFillMissingValues() {
+        Image complete = saved.get(0);
+        complete.setFormat(ImageFormat.GIF);
+        complete.setImageSizeBytes(10L);
+        imageRepository.saveAndFlush(complete);
+        Image partial = saved.get(1);
+
+        List<Image> incomplete = imageRepository.findIncompleteAfter(0, Limit.of(3));
+        imageRepository.fillSizeAndFormat(complete.getId(), 99L, ImageFormat.PNG);
+        imageRepository.fillSizeAndFormat(partial.getId(), 20L, ImageFormat.PNG);
+        // bulk updates bypass the persistence context
+        entityManager.clear();
+
+        assertEquals(List.of(saved.get(1).getId(), saved.get(2).getId(), saved.get(3).getId()),
+                incomplete.stream().map(Image::getId).toList());
+        Image reloadedComplete = imageRepository.findById(complete.getId()).orElseThrow();
+        Image reloadedPartial = imageRepository.findById(partial.getId()).orElseThrow();
+        assertEquals(ImageFormat.GIF, reloadedComplete.getFormat());
+        assertEquals(10L, reloadedComplete.getImageSizeBytes());
+        assertEquals(ImageFormat.PNG, reloadedPartial.getFormat());
+        assertEquals(20L, reloadedPartial.getImageSizeBytes());
+        assertEquals("20.0 B", reloadedPartial.getImageSize());
+    }
+
+    private List<Long> scrollAll(ImageCursor.Order order, int size) {
+        return scrollAll(ImageSearch.ALL.specification(order), order, size);
+    }
+
+    private List<Long> scrollAll(Specification<Image> filter, ImageCursor.Order order, int size) {
+        List<Long> visited = new ArrayList<>();
+        ScrollPosition position = ScrollPosition.keyset();
+        Window<Image> window;
+        do {
+            window = imageRepository.scroll(filter, order.sort(), position, size);
+            assertTrue(window.size() <= size);
+            window.forEach(image -> visited.add(image.getId()));
+            if (window.hasNext()) {
+                // go through the encoded token, as a client would
+                Image last = window.getContent().get(window.size() - 1);
+                position = ImageCursor.decode(ImageCursor.after(order, last).encode()).position();
+            }
+        } while (window.hasNext());
+        return visited;
+    }
+}
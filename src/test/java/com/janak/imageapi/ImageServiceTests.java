@@ -1,61 +1,151 @@
 package com.janak.imageapi;
 
 import com.janak.imageapi.Exception.FileRequiredException;
+import com.janak.imageapi.Exception.FileTooLargeException;
 import com.janak.imageapi.Exception.FileTypeNotSupportedException;
+import com.janak.imageapi.Exception.ImageContentMismatchException;
 import com.janak.imageapi.Exception.ImageNotFoundException;
+import com.janak.imageapi.Exception.InvalidBatchException;
+import com.janak.imageapi.Exception.InvalidCursorException;
+import com.janak.imageapi.Exception.InvalidSearchException;
+import com.janak.imageapi.Repository.BlobDeletionRepository;
 import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.Services.BlobDeletionOutbox;
+import com.janak.imageapi.Services.CacheInvalidationBus;
+import com.janak.imageapi.Services.HotImageCache;
+import com.janak.imageapi.Services.ImageCounter;
+import com.janak.imageapi.Services.ImageMetadataCache;
+import com.janak.imageapi.Services.ImageMetadataIndex;
+import com.janak.imageapi.Services.ImageMetrics;
 import com.janak.imageapi.Services.ImageServiceImpl;
+import com.janak.imageapi.Services.ImageVariantService;
+import com.janak.imageapi.models.BlobDeletion;
 import com.janak.imageapi.models.Image;
+import com.janak.imageapi.models.ImageCursor;
+import com.janak.imageapi.models.ImageFormat;
+import com.janak.imageapi.models.ImageSearch;
+import com.janak.imageapi.models.ImageSummary;
+import com.janak.imageapi.models.ProcessingStatus;
+import com.janak.imageapi.processing.ImageProcessingPipeline;
+import com.janak.imageapi.storage.ImageStorage;
+import com.janak.imageapi.storage.LocalBlobStore;
+import com.janak.imageapi.utils.BatchUploadResponse;
+import com.janak.imageapi.utils.BatchUploadResult;
+import com.janak.imageapi.utils.BulkResponse;
+import com.janak.imageapi.utils.CursorResponse;
 import com.janak.imageapi.utils.FileUtils;
 import com.janak.imageapi.utils.PaginatedResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class ImageServiceImplTest {
 
+    private static final byte[] TEST_PNG = png("test image content");
+    private static final byte[] OTHER_JPEG = jpeg("other image content");
+    private static final byte[] OTHER_GIF = gif("other image content");
+
     @Mock
     private ImageRepository imageRepository;
 
-    @InjectMocks
+    @Mock
+    private ImageProcessingPipeline processingPipeline;
+
+    @Mock
+    private BlobDeletionRepository deletionRepository;
+
     private ImageServiceImpl imageService;
 
-    private final String uploadPath = "test-uploads";
+    private BlobDeletionOutbox deletionOutbox;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // what the outbox table holds, behind the mocked repository
+    private final List<BlobDeletion> pendingDeletions = new ArrayList<>();
+
+    @TempDir
+    Path uploadDir;
+
+    private String uploadPath;
+    private LocalBlobStore blobStore;
     private MultipartFile validImageFile;
     private MultipartFile invalidImageFile;
     private MultipartFile emptyFile;
     private Image testImage;
 
     @BeforeEach
-    void setUp() {
-        imageService = new ImageServiceImpl(imageRepository,"test-uploads");
+    void setUp() throws IOException {
+        uploadPath = uploadDir.toString();
+        blobStore = new LocalBlobStore(uploadPath);
+        ImageStorage imageStorage = new ImageStorage(imageRepository, blobStore, uploadPath, DataSize.ofMegabytes(2), true);
+        deletionOutbox = new BlobDeletionOutbox(deletionRepository, imageStorage,
+                new HotImageCache(false, DataSize.ofMegabytes(1), DataSize.ofKilobytes(256)),
+                new ImageVariantService(imageStorage, uploadDir.resolve("variants").toString(), List.of(256), 0, Duration.ofSeconds(1)));
+        lenient().when(deletionRepository.saveAll(any())).thenAnswer(invocation -> {
+            List<BlobDeletion> deletions = invocation.getArgument(0);
+            pendingDeletions.addAll(deletions);
+            return deletions;
+        });
+        lenient().when(deletionRepository.findOldest(any())).thenAnswer(invocation -> List.copyOf(pendingDeletions));
+        lenient().when(deletionRepository.deleteByIds(anyCollection())).thenAnswer(invocation -> {
+            int processed = pendingDeletions.size();
+            pendingDeletions.clear();
+            return processed;
+        });
+        imageService = new ImageServiceImpl(imageRepository, new ImageMetadataIndex(imageRepository, false),
+                deletionOutbox, processingPipeline, imageStorage,
+                new ImageCounter(imageRepository, Duration.ofMinutes(1)),
+                new ImageMetadataCache(true, 1000, Duration.ofMinutes(1), new CacheInvalidationBus(0, List.of())),
+                new ImageMetrics(meterRegistry), TransactionOperations.withoutTransaction(), ForkJoinPool.commonPool(), 100);
 
 
         validImageFile = new MockMultipartFile(
                 "image",
                 "test.png",
                 "image/png",
-                "test image content".getBytes()
+                TEST_PNG
         );
 
         invalidImageFile = new MockMultipartFile(
@@ -76,12 +166,12 @@ class ImageServiceImplTest {
                 .id(1L)
                 .imageName("test.png")
                 .imageType("image/png")
-                .imageSize("10 KB")
+                .imageSizeBytes(10240L)
                 .build();
     }
 
     @Test
-    void saveImage_WithValidImage_ShouldSaveSuccessfully() throws IOException {
+    void saveImage_WithValidImage_ShouldSaveSuccessfully() throws Exception {
         // Arrange
         when(imageRepository.save(any(Image.class))).thenReturn(testImage);
 
@@ -94,7 +184,198 @@ class ImageServiceImplTest {
         verify(imageRepository, times(1)).save(any(Image.class));
 
         // Clean up
-        Files.deleteIfExists(Paths.get(uploadPath, testImage.getImageName()));
+        Files.deleteIfExists(storedFile(TEST_PNG));
+    }
+
+    @Test
+    void saveImage_ShouldTimeEachStageAndCountReceivedBytes() throws Exception {
+        when(imageRepository.save(any(Image.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        imageService.saveImage(validImageFile);
+
+        for (String stage : List.of("validate", "write", "persist")) {
+            assertEquals(1, meterRegistry.get("image.upload").tag("stage", stage).timer().count(), stage);
+        }
+        assertEquals(TEST_PNG.length, meterRegistry.get("image.bytes.in").counter().count());
+
+        Files.deleteIfExists(storedFile(TEST_PNG));
+    }
+
+    @Test
+    void saveImage_ShouldRecordSha256OfStoredContent() throws Exception {
+        // Arrange
+        when(imageRepository.save(any(Image.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        String expectedHash = HexFormat.of().formatHex(
+                MessageDigest.getInstance("SHA-256").digest(TEST_PNG));
+
+        // Act
+        Image savedImage = imageService.saveImage(validImageFile);
+
+        // Assert
+        assertEquals(expectedHash, savedImage.getContentHash());
+        assertEquals(expectedHash, savedImage.getStorageKey());
+        assertTrue(Files.exists(storedFile(TEST_PNG)));
+
+        // Clean up
+        Files.deleteIfExists(storedFile(TEST_PNG));
+    }
+
+    @Test
+    void saveImage_WithDuplicateContent_ShouldStoreContentOnce() throws Exception {
+        // Arrange
+        when(imageRepository.save(any(Image.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Path stored = storedFile(TEST_PNG);
+        Files.deleteIfExists(stored);
+
+        // Act
+        Image first = imageService.saveImage(validImageFile);
+        Files.setLastModifiedTime(stored, FileTime.fromMillis(0));
+        Image second = imageService.saveImage(validImageFile);
+
+        // Assert
+        assertNotEquals(first.getImageName(), second.getImageName());
+        assertEquals(first.getStorageKey(), second.getStorageKey());
+        // the second upload must not have replaced the stored file
+        assertEquals(0, Files.getLastModifiedTime(stored).toMillis());
+        try (var files = Files.list(stored.getParent())) {
+            assertEquals(1, files.count());
+        }
+
+        // Clean up
+        Files.deleteIfExists(stored);
+    }
+
+    @Test
+    void deleteImage_WithSharedContent_ShouldDeleteFileWithLastReference() throws Exception {
+        // Arrange
+        when(imageRepository.save(any(Image.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Image first = imageService.saveImage(validImageFile);
+        Image second = imageService.saveImage(validImageFile);
+        first.setId(1L);
+        second.setId(2L);
+        when(imageRepository.findById(1L)).thenReturn(Optional.of(first));
+        when(imageRepository.findById(2L)).thenReturn(Optional.of(second));
+        when(imageRepository.findReferencedStorageKeys(anyCollection()))
+                .thenReturn(Set.of(first.getStorageKey()), Set.of());
+        when(imageRepository.deleteImageById(anyLong())).thenReturn(1);
+        Path stored = storedFile(TEST_PNG);
+
+        // Act & Assert
+        imageService.deleteImage(1L);
+        deletionOutbox.process();
+        assertTrue(Files.exists(stored));
+
+        imageService.deleteImage(2L);
+        deletionOutbox.process();
+        assertFalse(Files.exists(stored));
+    }
+
+    @Test
+    void saveImage_ShouldStoreSniffedTypeAndHeaderDimensions() throws Exception {
+        // Arrange
+        when(imageRepository.save(any(Image.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        Image savedImage = imageService.saveImage(new MockMultipartFile("image", "photo.PNG", "image/x-png", TEST_PNG));
+
+        // Assert
+        assertEquals("image/png", savedImage.getImageType());
+        assertEquals(ImageFormat.PNG, savedImage.getFormat());
+        assertEquals(TEST_PNG.length, savedImage.getImageSizeBytes());
+        assertEquals(3, savedImage.getWidth());
+        assertEquals(2, savedImage.getHeight());
+
+        // Clean up
+        Files.deleteIfExists(storedFile(TEST_PNG));
+    }
+
+    @Test
+    void saveImage_WithContentNotMatchingExtension_ShouldThrowAndStoreNothing() throws Exception {
+        MultipartFile disguised = new MockMultipartFile("image", "photo.jpg", "image/jpeg", TEST_PNG);
+
+        assertThrows(ImageContentMismatchException.class, () -> imageService.saveImage(disguised));
+        verify(imageRepository, never()).save(any(Image.class));
+        assertFalse(Files.exists(storedFile(TEST_PNG)));
+    }
+
+    @Test
+    void saveImage_WithNonImageContent_ShouldThrowFileTypeNotSupported() {
+        MultipartFile text = new MockMultipartFile("image", "notes.png", "image/png", "just some text".getBytes());
+
+        assertThrows(FileTypeNotSupportedException.class, () -> imageService.saveImage(text));
+        verify(imageRepository, never()).save(any(Image.class));
+    }
+
+    @Test
+    void saveImages_ShouldInsertAllRowsInOneSaveAllAndReportFailuresPerFile() throws Exception {
+        // Arrange
+        when(imageRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        MultipartFile other = new MockMultipartFile("files", "other.jpg", "image/jpeg", OTHER_JPEG);
+
+        // Act
+        BatchUploadResponse response = imageService.saveImages(List.of(validImageFile, invalidImageFile, validImageFile, other));
+
+        // Assert
+        assertFalse(response.isSuccess());
+        assertEquals(3, response.getSucceeded());
+        assertEquals(1, response.getFailed());
+        List<BatchUploadResult> results = response.getResults();
+        assertEquals(List.of(0, 1, 2, 3), results.stream().map(BatchUploadResult::getIndex).toList());
+        assertEquals(400, results.get(1).getError().getStatus());
+        assertEquals("other.jpg", results.get(3).getFileName());
+        // identical files in one batch share the stored content
+        assertEquals(results.get(0).getData().getStorageKey(), results.get(2).getData().getStorageKey());
+        assertNotEquals(results.get(0).getData().getImageName(), results.get(2).getData().getImageName());
+        verify(imageRepository, times(1)).saveAll(anyList());
+        verify(imageRepository, never()).save(any(Image.class));
+        assertTrue(Files.exists(storedFile(TEST_PNG)));
+        assertTrue(Files.exists(storedFile(OTHER_JPEG)));
+
+        // Clean up
+        Files.deleteIfExists(storedFile(TEST_PNG));
+        Files.deleteIfExists(storedFile(OTHER_JPEG));
+    }
+
+    @Test
+    void saveImages_WhenInsertFails_ShouldFailEveryFileAndRemoveStoredContent() throws Exception {
+        // Arrange
+        when(imageRepository.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("duplicate"));
+        Files.deleteIfExists(storedFile(TEST_PNG));
+
+        // Act
+        BatchUploadResponse response = imageService.saveImages(List.of(validImageFile, emptyFile));
+
+        // Assert
+        assertEquals(0, response.getSucceeded());
+        assertEquals(500, response.getResults().get(0).getError().getStatus());
+        assertEquals(400, response.getResults().get(1).getError().getStatus());
+        assertFalse(Files.exists(storedFile(TEST_PNG)));
+    }
+
+    @Test
+    void saveImages_WithMoreFilesThanBatchLimit_ShouldThrowInvalidBatchException() {
+        List<MultipartFile> files = Collections.nCopies(101, validImageFile);
+
+        assertThrows(InvalidBatchException.class, () -> imageService.saveImages(files));
+        verifyNoInteractions(imageRepository);
+    }
+
+    @Test
+    void saveImage_WithFileLargerThanLimit_ShouldThrowFileTooLargeExceptionAndLeaveNoFile() throws IOException {
+        // Arrange
+        MultipartFile largeFile = new MockMultipartFile(
+                "image",
+                "large.png",
+                "image/png",
+                new byte[(int) DataSize.ofMegabytes(2).toBytes() + 1]
+        );
+
+        // Act & Assert
+        assertThrows(FileTooLargeException.class, () -> imageService.saveImage(largeFile));
+        verify(imageRepository, never()).save(any(Image.class));
+        try (var files = Files.list(Paths.get(uploadPath))) {
+            assertTrue(files.noneMatch(file -> file.getFileName().toString().endsWith(".tmp")));
+        }
     }
 
     @Test
@@ -118,12 +399,15 @@ class ImageServiceImplTest {
     @Test
     void getAllImages_ShouldReturnPaginatedResponse() {
         // Arrange
-        List<Image> images = Arrays.asList(testImage, testImage, testImage);
-        Page<Image> page = new PageImpl<>(images);
-        when(imageRepository.findAll(any(Pageable.class))).thenReturn(page);
+        ImageSummary summary = new ImageSummary(testImage.getId(), testImage.getImageName(), testImage.getImageType(),
+                testImage.getFormat(), testImage.getImageSizeBytes(), testImage.getContentHash(),
+                testImage.getStorageKey(), testImage.getWidth(), testImage.getHeight(),
+                testImage.getProcessingStatus(), testImage.getUploadedAt(), testImage.getUpdatedAt());
+        Page<ImageSummary> page = new PageImpl<>(Arrays.asList(summary, summary, summary));
+        when(imageRepository.findSummaries(any(Pageable.class))).thenReturn(page);
 
         // Act
-        PaginatedResponse<Image> response = imageService.getAllImages(1, 10);
+        PaginatedResponse<ImageSummary> response = imageService.getAllImages(1, 10);
 
         // Assert
         assertNotNull(response);
@@ -135,6 +419,87 @@ class ImageServiceImplTest {
         assertTrue(response.isLast());
     }
 
+    @Test
+    void scrollImages_WithMoreRows_ShouldReturnCursorPastLastImageWithoutCounting() {
+        // Arrange
+        Image second = Image.builder().id(2L).imageName("second.png").build();
+        when(imageRepository.scroll(any(), eq(ImageCursor.Order.ID.sort()), eq(ScrollPosition.keyset()), eq(2)))
+                .thenReturn(Window.from(List.of(testImage, second), index -> ScrollPosition.keyset(), true));
+
+        // Act
+        CursorResponse<Image> response = imageService.scrollImages("", "id", 2, false);
+
+        // Assert
+        assertEquals(2, response.getSize());
+        assertTrue(response.isHasNext());
+        assertEquals(new ImageCursor(ImageCursor.Order.ID, 2L, null), ImageCursor.decode(response.getNextCursor()));
+        assertNull(response.getTotalItems());
+        verify(imageRepository, never()).count();
+    }
+
+    @Test
+    void scrollImages_WithCursor_ShouldSeekPastItInTheCursorsOrder() {
+        // Arrange
+        Instant uploadedAt = Instant.parse("2024-05-01T10:15:30.123456789Z");
+        String cursor = new ImageCursor(ImageCursor.Order.NEWEST, 7L, uploadedAt).encode();
+        when(imageRepository.scroll(any(), any(), any(), anyInt()))
+                .thenReturn(Window.from(List.of(testImage), index -> ScrollPosition.keyset(), false));
+        when(imageRepository.count()).thenReturn(42L);
+
+        // Act
+        CursorResponse<Image> response = imageService.scrollImages(cursor, "id", 500, true);
+
+        // Assert
+        ArgumentCaptor<ScrollPosition> position = ArgumentCaptor.forClass(ScrollPosition.class);
+        verify(imageRepository).scroll(any(), eq(ImageCursor.Order.NEWEST.sort()), position.capture(),
+                eq(ImageServiceImpl.MAX_SCROLL_SIZE));
+        Map<String, Object> keys = ((KeysetScrollPosition) position.getValue()).getKeys();
+        assertEquals(List.of("uploadedAt", "id"), List.copyOf(keys.keySet()));
+        assertEquals(uploadedAt, ((Timestamp) keys.get("uploadedAt")).toInstant());
+        assertEquals(7L, keys.get("id"));
+        assertFalse(response.isHasNext());
+        assertNull(response.getNextCursor());
+        assertEquals(42L, response.getTotalItems());
+    }
+
+    @Test
+    void scrollImages_WithTamperedCursor_ShouldThrowInvalidCursorException() {
+        assertThrows(InvalidCursorException.class, () -> imageService.scrollImages("bm90LWEtY3Vyc29y", "id", 10, false));
+        assertThrows(InvalidCursorException.class, () -> imageService.scrollImages("", "random", 10, false));
+    }
+
+    @Test
+    void searchImages_BySize_ShouldReturnCursorCarryingTheSizeOfTheLastImage() {
+        // Arrange
+        Image second = Image.builder().id(2L).imageName("second.png").imageSizeBytes(512L).build();
+        ImageSearch search = ImageSearch.of(List.of("png", "image/jpeg"), 100L, 1000L, null, null, null, null, null, null);
+        when(imageRepository.scroll(any(), eq(ImageCursor.Order.LARGEST.sort()), eq(ScrollPosition.keyset()), eq(2)))
+                .thenReturn(Window.from(List.of(testImage, second), index -> ScrollPosition.keyset(), true));
+
+        // Act
+        CursorResponse<Image> response = imageService.searchImages(search, null, "largest", 2);
+
+        // Assert
+        assertEquals(Set.of(ImageFormat.PNG, ImageFormat.JPEG), search.formats());
+        ImageCursor next = ImageCursor.decode(response.getNextCursor());
+        assertEquals(new ImageCursor(ImageCursor.Order.LARGEST, 2L, null, 512L), next);
+        assertEquals(Map.of("imageSizeBytes", 512L, "id", 2L), ((KeysetScrollPosition) next.position()).getKeys());
+        assertNull(response.getTotalItems());
+    }
+
+    @Test
+    void searchImages_WithInvalidFilters_ShouldThrowInvalidSearchException() {
+        assertThrows(InvalidSearchException.class,
+                () -> ImageSearch.of(List.of("tiff"), null, null, null, null, null, null, null, null));
+        assertThrows(InvalidSearchException.class,
+                () -> ImageSearch.of(null, 1000L, 100L, null, null, null, null, null, null));
+        assertThrows(InvalidSearchException.class,
+                () -> ImageSearch.of(null, null, null, -1, null, null, null, null, null));
+        Instant now = Instant.now();
+        assertThrows(InvalidSearchException.class,
+                () -> ImageSearch.of(null, null, null, null, null, null, null, now, now));
+    }
+
     @Test
     void getImageById_WithExistingId_ShouldReturnImage() {
         // Arrange
@@ -148,6 +513,42 @@ class ImageServiceImplTest {
         assertEquals(testImage.getId(), foundImage.getId());
     }
 
+    @Test
+    void getImageById_AfterUpdate_ShouldServeFromCacheUntilTheRowIsWritten() throws Exception {
+        // Arrange
+        testImage.setProcessingStatus(ProcessingStatus.COMPLETED);
+        when(imageRepository.findById(1L)).thenAnswer(invocation -> Optional.of(Image.builder()
+                .id(1L).imageName(testImage.getImageName()).processingStatus(testImage.getProcessingStatus()).build()));
+        when(imageRepository.save(any(Image.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act & Assert
+        imageService.getImageById(1L);
+        imageService.getImageById(1L);
+        verify(imageRepository, times(1)).findById(1L);
+
+        imageService.updateImage(1L, validImageFile);
+        clearInvocations(imageRepository);
+        imageService.getImageById(1L);
+        verify(imageRepository, times(1)).findById(1L);
+
+        // Clean up
+        Files.deleteIfExists(storedFile(TEST_PNG));
+    }
+
+    @Test
+    void getImageById_WhileProcessing_ShouldNotCacheTheRow() {
+        // Arrange
+        testImage.setProcessingStatus(ProcessingStatus.PROCESSING);
+        when(imageRepository.findById(1L)).thenReturn(Optional.of(testImage));
+
+        // Act
+        imageService.getImageById(1L);
+        imageService.getImageById(1L);
+
+        // Assert
+        verify(imageRepository, times(2)).findById(1L);
+    }
+
     @Test
     void getImageById_WithNonExistingId_ShouldThrowImageNotFoundException() {
         // Arrange
@@ -158,13 +559,13 @@ class ImageServiceImplTest {
     }
 
     @Test
-    void updateImage_WithValidData_ShouldUpdateSuccessfully() throws IOException {
+    void updateImage_WithValidData_ShouldUpdateSuccessfully() throws Exception {
         // Arrange
         Image updatedImage = Image.builder()
                 .id(1L)
                 .imageName("updated.png")
                 .imageType("image/png")
-                .imageSize("15 KB")
+                .imageSizeBytes(15360L)
                 .build();
 
         when(imageRepository.findById(1L)).thenReturn(Optional.of(testImage));
@@ -179,7 +580,48 @@ class ImageServiceImplTest {
         verify(imageRepository, times(1)).save(any(Image.class));
 
         // Clean up
-        Files.deleteIfExists(Paths.get(uploadPath, updatedImage.getImageName()));
+        Files.deleteIfExists(storedFile(TEST_PNG));
+    }
+
+    @Test
+    void updateImage_ShouldReleaseReplacedContentThroughTheOutbox() throws Exception {
+        // Arrange
+        when(imageRepository.save(any(Image.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Image existing = imageService.saveImage(new MockMultipartFile("image", "old.gif", "image/gif", OTHER_GIF));
+        existing.setId(1L);
+        when(imageRepository.findById(1L)).thenReturn(Optional.of(existing));
+
+        // Act
+        imageService.updateImage(1L, validImageFile);
+
+        // Assert
+        assertTrue(Files.exists(storedFile(OTHER_GIF)));
+        assertEquals(List.of(storedKey(OTHER_GIF)), pendingDeletions.stream().map(BlobDeletion::getStorageKey).toList());
+        deletionOutbox.process();
+        assertFalse(Files.exists(storedFile(OTHER_GIF)));
+        assertTrue(Files.exists(storedFile(TEST_PNG)));
+
+        // Clean up
+        Files.deleteIfExists(storedFile(TEST_PNG));
+    }
+
+    @Test
+    void updateImage_WhenSaveFails_ShouldKeepOldContentAndRemoveNewContent() throws Exception {
+        // Arrange
+        when(imageRepository.save(any(Image.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Image existing = imageService.saveImage(new MockMultipartFile("image", "old.gif", "image/gif", OTHER_GIF));
+        existing.setId(1L);
+        when(imageRepository.findById(1L)).thenReturn(Optional.of(existing));
+        when(imageRepository.save(any(Image.class))).thenThrow(new DataIntegrityViolationException("db down"));
+
+        // Act & Assert
+        assertThrows(DataIntegrityViolationException.class, () -> imageService.updateImage(1L, validImageFile));
+        assertTrue(Files.exists(storedFile(OTHER_GIF)));
+        assertFalse(Files.exists(storedFile(TEST_PNG)));
+        assertTrue(pendingDeletions.isEmpty());
+
+        // Clean up
+        Files.deleteIfExists(storedFile(OTHER_GIF));
     }
 
     @Test
@@ -203,6 +645,7 @@ class ImageServiceImplTest {
         Path testFilePath = Paths.get(uploadPath, testImage.getImageName());
         Files.createDirectories(testFilePath.getParent());
         Files.write(testFilePath, "test content".getBytes());
+        when(imageRepository.findByImageName(testImage.getImageName())).thenReturn(Optional.of(testImage));
 
         // Act
         Resource resource = imageService.getImageAsResource(testImage.getImageName());
@@ -231,14 +674,72 @@ class ImageServiceImplTest {
         Files.write(testFilePath, "test content".getBytes());
 
         when(imageRepository.findById(1L)).thenReturn(Optional.of(testImage));
-        doNothing().when(imageRepository).deleteById(1L);
+        when(imageRepository.deleteImageById(1L)).thenReturn(1);
 
         // Act
         imageService.deleteImage(1L);
 
         // Assert
-        verify(imageRepository, times(1)).deleteById(1L);
+        verify(imageRepository, times(1)).findById(1L);
+        verify(imageRepository, times(1)).deleteImageById(1L);
+        verify(imageRepository, never()).deleteById(anyLong());
+        // the file goes in the background, after the row
+        assertTrue(Files.exists(testFilePath));
+        assertEquals(1, deletionOutbox.process());
         assertFalse(Files.exists(testFilePath));
+        assertTrue(pendingDeletions.isEmpty());
+    }
+
+    @Test
+    void getImagesByIds_ShouldReturnImagesInRequestedOrderAndReportMissingIds() {
+        // Arrange
+        Image third = Image.builder().id(3L).imageName("third.png").build();
+        when(imageRepository.findAllById(List.of(3L, 1L, 9L))).thenReturn(List.of(testImage, third));
+
+        // Act
+        BulkResponse<Image> response = imageService.getImagesByIds(List.of(3L, 1L, 9L, 3L));
+
+        // Assert
+        assertEquals(List.of(third, testImage), response.getData());
+        assertEquals(List.of(9L), response.getMissing());
+        verify(imageRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void deleteImages_ShouldDeleteRowsWithOneQueryAndKeepContentStillReferenced() throws Exception {
+        // Arrange
+        when(imageRepository.save(any(Image.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Image shared = imageService.saveImage(validImageFile);
+        Image unique = imageService.saveImage(new MockMultipartFile("image", "other.gif", "image/gif", OTHER_GIF));
+        shared.setId(1L);
+        unique.setId(2L);
+        when(imageRepository.findAllById(List.of(1L, 2L, 5L))).thenReturn(List.of(shared, unique));
+        // another row still points at the shared content
+        when(imageRepository.findReferencedStorageKeys(anyCollection())).thenReturn(Set.of(shared.getStorageKey()));
+
+        // Act
+        BulkResponse<Long> response = imageService.deleteImages(List.of(1L, 2L, 5L));
+        deletionOutbox.process();
+
+        // Assert
+        assertEquals(List.of(1L, 2L), response.getData());
+        assertEquals(List.of(5L), response.getMissing());
+        verify(imageRepository, times(1)).deleteImagesByIds(Set.of(1L, 2L));
+        verify(imageRepository, never()).findById(anyLong());
+        verify(imageRepository, never()).countByStorageKey(anyString());
+        assertTrue(Files.exists(storedFile(TEST_PNG)));
+        assertFalse(Files.exists(storedFile(OTHER_GIF)));
+
+        // Clean up
+        Files.deleteIfExists(storedFile(TEST_PNG));
+    }
+
+    @Test
+    void deleteImages_WithTooManyIds_ShouldThrowInvalidBatchException() {
+        List<Long> ids = LongStream.rangeClosed(1, ImageServiceImpl.MAX_BULK_IDS + 1).boxed().toList();
+
+        assertThrows(InvalidBatchException.class, () -> imageService.deleteImages(ids));
+        verifyNoInteractions(imageRepository);
     }
 
     @Test
@@ -277,4 +778,36 @@ class ImageServiceImplTest {
         assertThrows(FileTypeNotSupportedException.class,
                 () -> imageService.validateImageFile(fileWithInvalidExt));
     }
-}
\ No newline at end of file
+
+    private Path storedFile(byte[] content) throws Exception {
+        return blobStore.shardedPath(storedKey(content));
+    }
+
+    private static String storedKey(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    /**
+     * A PNG signature and IHDR chunk for a 3x2 image, followed by {@code body} instead of image data.
+     */
+    private static byte[] png(String body) {
+        ByteBuffer header = ByteBuffer.allocate(24)
+                .putLong(0x89504E470D0A1A0AL).putInt(13).put("IHDR".getBytes()).putInt(3).putInt(2);
+        return concat(header.array(), body);
+    }
+
+    private static byte[] jpeg(String body) {
+        // SOI, then a baseline frame header for 5x4
+        return concat(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xC0, 0, 11, 8, 0, 4, 0, 5}, body);
+    }
+
+    private static byte[] gif(String body) {
+        return concat(new byte[]{'G', 'I', 'F', '8', '9', 'a', 7, 0, 6, 0}, body);
+    }
+
+    private static byte[] concat(byte[] header, String body) {
+        byte[] content = Arrays.copyOf(header, header.length + body.length());
+        System.arraycopy(body.getBytes(), 0, content, header.length, body.length());
+        return content;
+    }
+}
@@ -0,0 +1,117 @@
+package com.janak.imageapi;
+
+import com.janak.imageapi.models.ImageFormat;
+import com.janak.imageapi.models.ImageHeader;
+import com.janak.imageapi.utils.ImageSniffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageSnifferTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sniff_WithImageIoEncodedFiles_ShouldDetectFormatAndDimensions() throws IOException {
+        BufferedImage image = new BufferedImage(7, 5, BufferedImage.TYPE_INT_RGB);
+
+        assertEquals(new ImageHeader(ImageFormat.PNG, 7, 5), sniff(encode(image, "png")));
+        assertEquals(new ImageHeader(ImageFormat.JPEG, 7, 5), sniff(encode(image, "jpg")));
+        assertEquals(new ImageHeader(ImageFormat.GIF, 7, 5), sniff(encode(image, "gif")));
+        assertEquals(new ImageHeader(ImageFormat.BMP, 7, 5), sniff(encode(image, "bmp")));
+    }
+
+    @Test
+    void sniff_WithJpegMetadataAndFillBytesBeforeFrame_ShouldSkipToFrameHeader() throws IOException {
+        ByteBuffer jpeg = ByteBuffer.allocate(4 + 2 + 1000 + 2 + 9);
+        jpeg.put(new byte[]{(byte) 0xFF, (byte) 0xD8});
+        // APP1 segment with a 1000 byte payload, as EXIF data would be
+        jpeg.put(new byte[]{(byte) 0xFF, (byte) 0xE1}).putShort((short) 1002).put(new byte[1000]);
+        jpeg.put(new byte[]{(byte) 0xFF, (byte) 0xFF});
+        // progressive frame header, 640x480
+        jpeg.put(new byte[]{(byte) 0xFF, (byte) 0xC2}).putShort((short) 17).put((byte) 8).putShort((short) 480).putShort((short) 640);
+
+        assertEquals(new ImageHeader(ImageFormat.JPEG, 640, 480), sniff(jpeg.array()));
+    }
+
+    @Test
+    void sniff_WithJpegWithoutFrameHeader_ShouldKeepFormatWithoutDimensions() throws IOException {
+        byte[] jpeg = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xDA, 0, 2};
+
+        assertEquals(new ImageHeader(ImageFormat.JPEG, -1, -1), sniff(jpeg));
+    }
+
+    @Test
+    void sniff_WithTopDownBmp_ShouldReportPositiveHeight() throws IOException {
+        ByteBuffer bmp = ByteBuffer.allocate(54).order(ByteOrder.LITTLE_ENDIAN);
+        bmp.put((byte) 'B').put((byte) 'M').position(14);
+        bmp.putInt(40).putInt(300).putInt(-200);
+
+        assertEquals(new ImageHeader(ImageFormat.BMP, 300, 200), sniff(bmp.array()));
+    }
+
+    @Test
+    void sniff_WithEachWebpVariant_ShouldReadDimensionsFromChunkHeader() throws IOException {
+        ByteBuffer lossy = webp("VP8 ");
+        lossy.position(23);
+        lossy.put((byte) 0x9D).put((byte) 0x01).put((byte) 0x2A).putShort((short) 400).putShort((short) 300);
+
+        ByteBuffer lossless = webp("VP8L");
+        lossless.position(20);
+        lossless.put((byte) 0x2F).putInt((400 - 1) | (300 - 1) << 14);
+
+        ByteBuffer extended = webp("VP8X");
+        extended.position(24);
+        // 24-bit little-endian width - 1 and height - 1
+        extended.put((byte) 0x8F).put((byte) 0x01).put((byte) 0).put((byte) 0x2B).put((byte) 0x01).put((byte) 0);
+
+        assertEquals(new ImageHeader(ImageFormat.WEBP, 400, 300), sniff(lossy.array()));
+        assertEquals(new ImageHeader(ImageFormat.WEBP, 400, 300), sniff(lossless.array()));
+        assertEquals(new ImageHeader(ImageFormat.WEBP, 400, 300), sniff(extended.array()));
+    }
+
+    @Test
+    void sniff_WithUnknownOrTruncatedContent_ShouldReturnNull() throws IOException {
+        assertNull(sniff("plain text, not an image".getBytes()));
+        assertNull(sniff(new byte[]{(byte) 0x89, 'P', 'N'}));
+        assertNull(sniff(new byte[0]));
+    }
+
+    @Test
+    void fromFileNameAndMediaType_ShouldIgnoreCaseAndParameters() {
+        assertEquals(ImageFormat.JPEG, ImageFormat.fromFileName("photo.JPEG"));
+        assertEquals(ImageFormat.JPEG, ImageFormat.fromFileName("archive.tar.jpg"));
+        assertNull(ImageFormat.fromFileName("photo.jpg.txt"));
+        assertNull(ImageFormat.fromFileName("png"));
+        assertNull(ImageFormat.fromFileName("photo."));
+        assertEquals(ImageFormat.WEBP, ImageFormat.fromMediaType("Image/WebP; q=0.8"));
+        assertNull(ImageFormat.fromMediaType("image/pngx"));
+    }
+
+    private ByteBuffer webp(String chunk) {
+        ByteBuffer webp = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+        webp.put("RIFF".getBytes()).putInt(32).put("WEBP".getBytes()).put(chunk.getBytes()).putInt(20);
+        return webp;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, format, out));
+        return out.toByteArray();
+    }
+
+    private ImageHeader sniff(byte[] content) throws IOException {
+        return ImageSniffer.sniff(Files.write(Files.createTempFile(dir, "sniff", ".bin"), content));
+    }
+}
@@ -0,0 +1,190 @@
+package com.janak.imageapi;
+
+import com.janak.imageapi.Exception.ImageNotFoundException;
+import com.janak.imageapi.Exception.InvalidImageVariantException;
+import com.janak.imageapi.Exception.ServiceUnavailableException;
+import com.janak.imageapi.Services.ImageVariantService;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.models.ImageMetadata;
+import com.janak.imageapi.models.ImageVariantSpec;
+import com.janak.imageapi.storage.ImageStorage;
+import com.janak.imageapi.storage.LocalBlobStore;
+import com.janak.imageapi.storage.StoredBlob;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ImageVariantServiceTests {
+
+    @TempDir
+    Path root;
+
+    private Path uploadDir;
+    private Path variantDir;
+    private ImageVariantService variantService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        uploadDir = Files.createDirectories(root.resolve("uploads"));
+        variantDir = root.resolve("variants");
+        variantService = new ImageVariantService(
+                new ImageStorage(null, new LocalBlobStore(uploadDir.toString()), uploadDir.toString(), DataSize.ofMegabytes(2), true), variantDir.toString(),
+                List.of(10, 20, 50, 64, 100, 120), 0, Duration.ofSeconds(1));
+        ImageIO.write(new BufferedImage(400, 200, BufferedImage.TYPE_INT_ARGB), "png", uploadDir.resolve("a.png").toFile());
+    }
+
+    @Test
+    void resolve_WithWidthOnly_ShouldKeepAspectRatio() throws IOException {
+        Path variant = variantService.resolve(metadata("a.png"), ImageVariantSpec.of(100, null, null, null));
+
+        BufferedImage rendition = ImageIO.read(variant.toFile());
+        assertEquals(100, rendition.getWidth());
+        assertEquals(50, rendition.getHeight());
+        assertEquals(variantDir.resolve("a.png").resolve("100x0-contain.png"), variant);
+    }
+
+    @Test
+    void resolve_WithCoverAndFormat_ShouldCropToBoxAndReencode() throws IOException {
+        Path variant = variantService.resolve(metadata("a.png"), ImageVariantSpec.of(50, 50, "cover", "jpeg"));
+
+        BufferedImage rendition = ImageIO.read(variant.toFile());
+        assertEquals(50, rendition.getWidth());
+        assertEquals(50, rendition.getHeight());
+        assertTrue(variant.getFileName().toString().endsWith(".jpg"));
+    }
+
+    @Test
+    void resolve_WhenAlreadyGenerated_ShouldServeFromDisk() {
+        ImageVariantSpec spec = ImageVariantSpec.of(64, 64, null, null);
+
+        Path first = variantService.resolve(metadata("a.png"), spec);
+        Path second = variantService.resolve(metadata("a.png"), spec);
+
+        assertEquals(first, second);
+        assertEquals(1, variantService.generatedCount());
+    }
+
+    @Test
+    void resolve_WithConcurrentRequests_ShouldGenerateOnce() throws Exception {
+        ImageVariantSpec spec = ImageVariantSpec.of(120, 120, "fill", null);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Path>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return variantService.resolve(metadata("a.png"), spec);
+                }));
+            }
+            start.countDown();
+            for (Future<Path> result : results) {
+                assertTrue(Files.exists(result.get()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, variantService.generatedCount());
+    }
+
+    @Test
+    void resolve_WithFormatOnly_ShouldReEncodeAtTheOriginalSize() throws IOException {
+        Path variant = variantService.resolve(metadata("a.png"), ImageVariantSpec.of(null, null, null, "jpg"));
+
+        BufferedImage rendition = ImageIO.read(variant.toFile());
+        assertEquals(400, rendition.getWidth());
+        assertEquals(200, rendition.getHeight());
+        assertTrue(variant.getFileName().toString().endsWith(".jpg"));
+    }
+
+    @Test
+    void resolve_WithSizeNotConfigured_ShouldBeRejectedWithoutRendering() {
+        assertThrows(InvalidImageVariantException.class,
+                () -> variantService.resolve(metadata("a.png"), ImageVariantSpec.of(101, null, null, null)));
+        assertThrows(InvalidImageVariantException.class,
+                () -> variantService.resolve(metadata("a.png"), ImageVariantSpec.of(100, 99, "fill", null)));
+
+        assertFalse(Files.exists(variantDir));
+        assertEquals(0, variantService.generatedCount());
+    }
+
+    @Test
+    void resolve_WhenAllGenerationSlotsAreBusy_ShouldBeRejectedWithoutDecoding() throws Exception {
+        Path source = uploadDir.resolve("a.png");
+        CountDownLatch decoding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        StoredBlob slowBlob = mock(StoredBlob.class);
+        when(slowBlob.openStream()).thenAnswer(invocation -> {
+            decoding.countDown();
+            release.await();
+            return Files.newInputStream(source);
+        });
+        ImageStorage storage = mock(ImageStorage.class);
+        when(storage.find("slow.png")).thenReturn(Optional.of(slowBlob));
+        when(storage.exists("slow.png")).thenReturn(true);
+        ImageVariantService service = new ImageVariantService(storage, variantDir.toString(), List.of(64), 1, Duration.ZERO);
+
+        CompletableFuture<Path> running = CompletableFuture.supplyAsync(
+                () -> service.resolve(metadata("slow.png"), ImageVariantSpec.of(64, null, null, null)));
+        assertTrue(decoding.await(5, TimeUnit.SECONDS));
+        ServiceUnavailableException rejected = assertThrows(ServiceUnavailableException.class,
+                () -> service.resolve(metadata("other.png"), ImageVariantSpec.of(64, null, null, null)));
+        release.countDown();
+
+        assertEquals(503, rejected.getStatus().value());
+        assertTrue(Files.exists(running.get(5, TimeUnit.SECONDS)));
+        assertEquals(1, service.generatedCount());
+    }
+
+    @Test
+    void purge_ShouldRemoveAllRenditions() {
+        variantService.resolve(metadata("a.png"), ImageVariantSpec.of(10, null, null, null));
+        variantService.resolve(metadata("a.png"), ImageVariantSpec.of(20, null, null, null));
+
+        variantService.purge("a.png");
+
+        assertFalse(Files.exists(variantDir.resolve("a.png")));
+    }
+
+    @Test
+    void resolve_WithMissingOriginal_ShouldThrowImageNotFoundException() {
+        assertThrows(ImageNotFoundException.class,
+                () -> variantService.resolve(metadata("missing.png"), ImageVariantSpec.of(10, null, null, null)));
+    }
+
+    @Test
+    void of_WithInvalidParameters_ShouldThrowInvalidImageVariantException() {
+        assertThrows(InvalidImageVariantException.class, () -> ImageVariantSpec.of(null, null, "contain", null));
+        assertThrows(InvalidImageVariantException.class, () -> ImageVariantSpec.of(null, null, "cover", "png"));
+        assertThrows(InvalidImageVariantException.class, () -> ImageVariantSpec.of(0, 10, null, null));
+        assertThrows(InvalidImageVariantException.class, () -> ImageVariantSpec.of(10, 10, "squash", null));
+        assertThrows(InvalidImageVariantException.class, () -> ImageVariantSpec.of(10, null, "cover", null));
+        assertThrows(InvalidImageVariantException.class, () -> ImageVariantSpec.of(10, 10, null, "tiff"));
+    }
+
+    private static ImageMetadata metadata(String imageName) {
+        return ImageMetadata.from(Image.builder().imageName(imageName).imageType("image/png").build());
+    }
+}
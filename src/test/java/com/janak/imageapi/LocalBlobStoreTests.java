@@ -0,0 +1,111 @@
+package com.janak.imageapi;
+
+import com.janak.imageapi.storage.LocalBlobStore;
+import com.janak.imageapi.storage.StoredBlob;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalBlobStoreTests {
+
+    private static final String HASH = "ab12" + "0".repeat(60);
+
+    @TempDir
+    Path root;
+
+    private LocalBlobStore blobStore;
+
+    @BeforeEach
+    void setUp() {
+        blobStore = new LocalBlobStore(root.toString());
+    }
+
+    @Test
+    void put_WithContentHash_ShouldShardByHashPrefix() throws IOException {
+        Path staged = Files.write(root.resolve("staged.tmp"), "content".getBytes());
+
+        blobStore.put(HASH, staged);
+
+        assertTrue(Files.exists(root.resolve("ab").resolve("12").resolve(HASH)));
+        assertFalse(Files.exists(staged));
+        assertTrue(blobStore.exists(HASH));
+    }
+
+    @Test
+    void put_WithImageName_ShouldShardByNameHash() throws IOException {
+        blobStore.put("a.png", new ByteArrayInputStream("content".getBytes()), 7);
+
+        Path stored = blobStore.shardedPath("a.png");
+        assertNotEquals(root, stored.getParent());
+        assertEquals(root, stored.getParent().getParent().getParent());
+        assertArrayEquals("content".getBytes(), Files.readAllBytes(stored));
+    }
+
+    @Test
+    void put_WithShortStream_ShouldFailAndLeaveNothing() {
+        assertThrows(IOException.class,
+                () -> blobStore.put("a.png", new ByteArrayInputStream("content".getBytes()), 100));
+
+        assertFalse(blobStore.exists("a.png"));
+    }
+
+    @Test
+    void find_WithLegacyFlatFile_ShouldFallBackToUploadDirectory() throws IOException {
+        Files.write(root.resolve("legacy.png"), "legacy".getBytes());
+
+        StoredBlob blob = blobStore.find("legacy.png").orElseThrow();
+
+        assertEquals(6, blob.size());
+        assertEquals(root.resolve("legacy.png"), blob.file().orElseThrow());
+    }
+
+    @Test
+    void openStream_WithRange_ShouldReturnOnlyThatRange() throws IOException {
+        blobStore.put(HASH, new ByteArrayInputStream("0123456789".getBytes()), 10);
+
+        try (InputStream in = blobStore.find(HASH).orElseThrow().openStream(3, 4)) {
+            assertEquals("3456", new String(in.readAllBytes()));
+        }
+    }
+
+    @Test
+    void deleteAll_ShouldRemoveShardedAndLegacyFilesAndSkipMissing() throws IOException {
+        blobStore.put(HASH, new ByteArrayInputStream("a".getBytes()), 1);
+        Files.write(root.resolve("legacy.png"), "b".getBytes());
+
+        blobStore.deleteAll(List.of(HASH, "legacy.png", "missing.png"));
+
+        assertFalse(blobStore.exists(HASH));
+        assertFalse(blobStore.exists("legacy.png"));
+    }
+
+    @Test
+    void deleteAll_WithManyKeys_ShouldDeleteEveryBlob() throws IOException {
+        List<String> keys = IntStream.range(0, 50).mapToObj(i -> "image-" + i + ".png").toList();
+        for (String key : keys) {
+            blobStore.put(key, new ByteArrayInputStream("content".getBytes()), 7);
+        }
+
+        blobStore.deleteAll(keys);
+
+        for (String key : keys) {
+            assertFalse(blobStore.exists(key), key);
+        }
+    }
+
+    @Test
+    void put_WithPathInKey_ShouldBeRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> blobStore.put("../escape.png", new ByteArrayInputStream(new byte[0]), 0));
+    }
+}
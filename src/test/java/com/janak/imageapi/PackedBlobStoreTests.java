@@ -0,0 +1,180 @@
+package com.janak.imageapi;
+
+import com.janak.imageapi.storage.BlobStore;
+import com.janak.imageapi.storage.LocalBlobStore;
+import com.janak.imageapi.storage.PackedBlobStore;
+import com.janak.imageapi.storage.StoredBlob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedBlobStoreTests {
+
+    @TempDir
+    Path root;
+
+    private Path segmentDir;
+    private LocalBlobStore backend;
+    private PackedBlobStore blobStore;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        segmentDir = root.resolve("segments");
+        backend = new LocalBlobStore(root.resolve("uploads").toString());
+        blobStore = open();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        blobStore.close();
+    }
+
+    @Test
+    void put_WithSmallBlob_ShouldPackItIntoSegment() throws IOException {
+        put("a", "small content");
+
+        StoredBlob blob = blobStore.find("a").orElseThrow();
+        assertEquals(13, blob.size());
+        assertTrue(blob.file().isEmpty());
+        assertEquals("small content", read(blob));
+        assertFalse(backend.exists("a"));
+        assertEquals(1, segmentFiles().size());
+    }
+
+    @Test
+    void put_WithLargeBlob_ShouldDelegateToBackend() throws IOException {
+        byte[] large = new byte[2048];
+        blobStore.put("big", new ByteArrayInputStream(large), large.length);
+
+        assertTrue(backend.exists("big"));
+        assertTrue(blobStore.find("big").orElseThrow().file().isPresent());
+    }
+
+    @Test
+    void openStream_WithRange_ShouldReadFromMapping() throws IOException {
+        put("a", "0123456789");
+
+        try (InputStream in = blobStore.find("a").orElseThrow().openStream(4, 3)) {
+            assertEquals("456", new String(in.readAllBytes()));
+        }
+    }
+
+    @Test
+    void recover_ShouldReplayPutsAndTombstones() throws IOException {
+        put("a", "first");
+        put("b", "second");
+        put("a", "replaced");
+        blobStore.delete("b");
+        blobStore.close();
+
+        blobStore = open();
+
+        assertEquals("replaced", read(blobStore.find("a").orElseThrow()));
+        assertTrue(blobStore.find("b").isEmpty());
+    }
+
+    @Test
+    void recover_WithTornTail_ShouldKeepValidRecordsAndAppendAfterThem() throws IOException {
+        put("a", "kept");
+        blobStore.close();
+        Path segment = segmentFiles().get(0);
+        // 23 byte header, 1 byte key, 4 bytes of data
+        int end = 23 + 1 + 4;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // the start of a record whose write never completed
+            channel.write(ByteBuffer.wrap(new byte[]{0x49, 0x4D, 0x47, 0x31, 0, 0, 1}), end);
+        }
+
+        blobStore = open();
+        put("c", "after crash");
+        blobStore.close();
+        blobStore = open();
+
+        assertEquals("kept", read(blobStore.find("a").orElseThrow()));
+        assertEquals("after crash", read(blobStore.find("c").orElseThrow()));
+    }
+
+    @Test
+    void compact_ShouldReclaimDeletedSpaceAndSurviveRestart() throws IOException {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            keys.add("key-" + i);
+            blobStore.put("key-" + i, new ByteArrayInputStream(new byte[512]), 512);
+        }
+        int segmentsBefore = segmentFiles().size();
+        assertTrue(segmentsBefore > 2);
+        for (int i = 0; i < 40; i++) {
+            if (i % 10 != 0) {
+                blobStore.delete(keys.get(i));
+            }
+        }
+
+        blobStore.compact();
+
+        assertTrue(segmentFiles().size() < segmentsBefore);
+        assertTrue(blobStore.stats().liveBytes() * 2 >= blobStore.stats().totalBytes() - 8 * 1024);
+        blobStore.close();
+        blobStore = open();
+        for (int i = 0; i < 40; i++) {
+            assertEquals(i % 10 == 0, blobStore.exists(keys.get(i)), keys.get(i));
+        }
+        assertEquals(512, blobStore.find("key-30").orElseThrow().size());
+    }
+
+    @Test
+    void context_WithPackedStorageEnabled_ShouldWrapConfiguredBackend() {
+        new ApplicationContextRunner()
+                .withInitializer(context -> context.getBeanFactory()
+                        .setConversionService(ApplicationConversionService.getSharedInstance()))
+                .withUserConfiguration(LocalBlobStore.class, PackedBlobStore.class)
+                .withPropertyValues("file.upload-dir=" + root.resolve("context-uploads"),
+                        "file.storage.packed.enabled=true",
+                        "file.storage.packed.dir=" + root.resolve("context-segments"))
+                .run(context -> {
+                    BlobStore store = context.getBean(BlobStore.class);
+                    assertInstanceOf(PackedBlobStore.class, store);
+                    byte[] large = new byte[128 * 1024];
+                    store.put("big", new ByteArrayInputStream(large), large.length);
+                    assertTrue(context.getBean(LocalBlobStore.class).exists("big"));
+                });
+    }
+
+    private PackedBlobStore open() throws IOException {
+        return new PackedBlobStore(backend, segmentDir.toString(), DataSize.ofKilobytes(1), DataSize.ofKilobytes(4), 0.5);
+    }
+
+    private void put(String key, String content) throws IOException {
+        byte[] bytes = content.getBytes();
+        blobStore.put(key, new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    private static String read(StoredBlob blob) throws IOException {
+        try (InputStream in = blob.openStream()) {
+            return new String(in.readAllBytes());
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(segmentDir)) {
+            return files.sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.janak.imageapi;
+
+import com.janak.imageapi.Controller.ReactiveImageController;
+import com.janak.imageapi.Exception.FileTypeNotSupportedException;
+import com.janak.imageapi.Exception.GlobalExceptionHandler;
+import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.Services.ImageExportService;
+import com.janak.imageapi.Services.ImageMetadataIndex;
+import com.janak.imageapi.Services.ImageMetrics;
+import com.janak.imageapi.Services.ImageService;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.storage.ImageStorage;
+import com.janak.imageapi.storage.ImageStorage.StagedUpload;
+import com.janak.imageapi.storage.LocalBlobStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveImageControllerTests {
+
+    private static final byte[] CONTENT = "0123456789".getBytes();
+
+    @Mock
+    private ImageService imageService;
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private ImageExportService exportService;
+
+    @TempDir
+    Path uploadDir;
+
+    private ImageMetadataIndex metadataIndex;
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        metadataIndex = new ImageMetadataIndex(imageRepository, false);
+        ImageStorage storage = new ImageStorage(imageRepository, new LocalBlobStore(uploadDir.toString()),
+                uploadDir.toString(), DataSize.ofKilobytes(1), true);
+        ReactiveImageController controller = new ReactiveImageController(imageService, metadataIndex, storage,
+                exportService, new ImageMetrics(new SimpleMeterRegistry()), Schedulers.boundedElastic());
+        client = WebTestClient.bindToController(controller).controllerAdvice(new GlobalExceptionHandler()).build();
+    }
+
+    @Test
+    void upload_ShouldStreamFilePartToStagingAndSave() throws NoSuchAlgorithmException {
+        AtomicReference<byte[]> stagedContent = new AtomicReference<>();
+        AtomicReference<StagedUpload> stagedUpload = new AtomicReference<>();
+        when(imageService.saveImage(eq("photo.png"), eq("image/png"), any())).thenAnswer(invocation -> {
+            StagedUpload staged = invocation.getArgument(2);
+            stagedUpload.set(staged);
+            stagedContent.set(Files.readAllBytes(staged.file()));
+            return Image.builder().id(1L).imageName("stored.png").build();
+        });
+
+        client.post().uri("/api/images/upload")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(filePart("file", "photo.png", MediaType.IMAGE_PNG)))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody().jsonPath("$.data.imageName").isEqualTo("stored.png");
+
+        assertArrayEquals(CONTENT, stagedContent.get());
+        assertEquals(CONTENT.length, stagedUpload.get().size());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(CONTENT)),
+                stagedUpload.get().contentHash());
+        assertFalse(Files.exists(stagedUpload.get().file()));
+    }
+
+    @Test
+    void upload_WithUnsupportedType_ShouldRejectBeforeStaging() throws IOException {
+        doThrow(new FileTypeNotSupportedException()).when(imageService).validateImageFile("text/plain", "notes.txt");
+
+        client.post().uri("/api/images/upload")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(filePart("file", "notes.txt", MediaType.TEXT_PLAIN)))
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verify(imageService, never()).saveImage(any(), any(), any());
+        try (var files = Files.list(uploadDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void upload_WithoutFilePart_ShouldReturnBadRequest() {
+        client.post().uri("/api/images/upload")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(filePart("other", "photo.png", MediaType.IMAGE_PNG)))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void getImage_WithRange_ShouldReturnPartialContent() throws IOException {
+        indexImage();
+
+        client.get().uri("/api/images/image/test.png")
+                .header(HttpHeaders.RANGE, "bytes=2-5")
+                .exchange()
+                .expectStatus().isEqualTo(206)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10")
+                .expectBody(String.class).isEqualTo("2345");
+    }
+
+    @Test
+    void getImage_WithMatchingETag_ShouldReturnNotModified() throws IOException {
+        indexImage();
+
+        client.get().uri("/api/images/image/test.png")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"abc123\"")
+                .exchange()
+                .expectStatus().isNotModified();
+
+        verify(imageService, never()).getImageAsResource(any());
+    }
+
+    @Test
+    void export_ShouldStreamWhatTheExportWritesAsNdjson() throws IOException {
+        Instant since = Instant.parse("2024-05-01T10:00:00Z");
+        when(exportService.export(eq(since), any())).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(1);
+            out.write("{\"id\":1}\n{\"id\":2}\n".getBytes(StandardCharsets.UTF_8));
+            return 2L;
+        });
+
+        String body = client.get().uri("/api/images/export?updatedSince=2024-05-01T10:00:00Z")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        assertEquals("{\"id\":1}\n{\"id\":2}\n", body);
+    }
+
+    private void indexImage() throws IOException {
+        Path file = Files.write(uploadDir.resolve("test.png"), CONTENT);
+        metadataIndex.put(Image.builder()
+                .id(1L)
+                .imageName("test.png")
+                .imageType("image/png")
+                .imageSizeBytes((long) CONTENT.length)
+                .contentHash("abc123")
+                .uploadedAt(new Date(1_700_000_000_000L))
+                .build());
+        lenient().when(imageService.getImageAsResource("test.png")).thenReturn(new FileSystemResource(file));
+    }
+
+    private static MultiValueMap<String, HttpEntity<?>> filePart(String name, String filename, MediaType contentType) {
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part(name, new ByteArrayResource(CONTENT) {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+        }).contentType(contentType);
+        return builder.build();
+    }
+}
@@ -0,0 +1,102 @@
+package com.janak.imageapi;
+
+import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.Services.BlobDeletionOutbox;
+import com.janak.imageapi.config.StorageReconciler;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.storage.ImageStorage;
+import com.janak.imageapi.storage.LocalBlobStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StorageReconcilerTests {
+
+    private static final String REFERENCED = "ab12" + "0".repeat(60);
+    private static final String ORPHANED = "cd34" + "0".repeat(60);
+    private static final String RECENT = "ef56" + "0".repeat(60);
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private BlobDeletionOutbox deletionOutbox;
+
+    @TempDir
+    Path root;
+
+    private LocalBlobStore blobStore;
+    private StorageReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        blobStore = new LocalBlobStore(root.toString());
+        ImageStorage imageStorage = new ImageStorage(imageRepository, blobStore, root.toString(), DataSize.ofMegabytes(1), true);
+        reconciler = new StorageReconciler(imageRepository, imageStorage, deletionOutbox, blobStore, Duration.ofHours(1));
+    }
+
+    @Test
+    void reconcile_ShouldQueueOldUnreferencedFilesAndReportRowsWithoutContent() throws IOException {
+        store(REFERENCED, true);
+        store(ORPHANED, true);
+        store(RECENT, false);
+        // written before sharding, still referenced by a row without a storage key
+        age(Files.write(root.resolve("legacy.png"), new byte[1]));
+        // staging leftovers of a crashed upload, and of one that is still running
+        age(Files.write(root.resolve(".upload-1.tmp"), new byte[1]));
+        Path running = Files.write(root.resolve(".upload-2.tmp"), new byte[1]);
+        // renditions kept under the same root are not stored content
+        Files.createDirectories(root.resolve("variants"));
+        age(Files.write(root.resolve("variants").resolve("x.png"), new byte[1]));
+        when(imageRepository.findReferencedKeys(anyCollection())).thenReturn(Set.of(REFERENCED, "legacy.png"));
+        when(imageRepository.findTop1000ByIdGreaterThanOrderByIdAsc(anyLong())).thenReturn(List.of(
+                Image.builder().id(1L).storageKey(REFERENCED).build(),
+                Image.builder().id(2L).imageName("legacy.png").build(),
+                Image.builder().id(3L).storageKey("ff00" + "0".repeat(60)).build()));
+
+        StorageReconciler.Result result = reconciler.reconcile();
+
+        assertEquals(new StorageReconciler.Result(4, 1, 1, 1), result);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> queued = ArgumentCaptor.forClass(Collection.class);
+        verify(deletionOutbox).enqueue(queued.capture());
+        assertEquals(List.of(ORPHANED), List.copyOf(queued.getValue()));
+        assertFalse(Files.exists(root.resolve(".upload-1.tmp")));
+        assertTrue(Files.exists(running));
+        assertTrue(Files.exists(blobStore.shardedPath(ORPHANED)));
+    }
+
+    private void store(String key, boolean old) throws IOException {
+        blobStore.put(key, new ByteArrayInputStream(new byte[1]), 1);
+        if (old) {
+            age(blobStore.shardedPath(key));
+        }
+    }
+
+    private static Path age(Path file) throws IOException {
+        return Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+    }
+}
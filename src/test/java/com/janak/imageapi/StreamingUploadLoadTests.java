@@ -0,0 +1,245 @@
+package com.janak.imageapi;
+
+import com.janak.imageapi.Repository.BlobDeletionRepository;
+import com.janak.imageapi.Repository.ImageRepository;
+import com.janak.imageapi.Services.BlobDeletionOutbox;
+import com.janak.imageapi.Services.CacheInvalidationBus;
+import com.janak.imageapi.Services.HotImageCache;
+import com.janak.imageapi.Services.ImageCounter;
+import com.janak.imageapi.Services.ImageMetadataCache;
+import com.janak.imageapi.Services.ImageMetadataIndex;
+import com.janak.imageapi.Services.ImageMetrics;
+import com.janak.imageapi.Services.ImageServiceImpl;
+import com.janak.imageapi.Services.ImageVariantService;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.processing.ImageProcessingPipeline;
+import com.janak.imageapi.storage.ImageStorage;
+import com.janak.imageapi.storage.LocalBlobStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that {@link ImageServiceImpl#saveImage} streams uploads. The multipart files generate their
+ * content on the fly and refuse {@code getBytes()}, so any code path that buffers a whole upload fails.
+ * The load test, run with {@code -Pload-tests}, also pushes many large uploads in parallel and checks
+ * that heap usage stays far below the amount of data uploaded.
+ */
+@ExtendWith(MockitoExtension.class)
+class StreamingUploadLoadTests {
+
+    private static final int PARALLEL_UPLOADS = 32;
+    private static final long UPLOAD_SIZE = DataSize.ofMegabytes(8).toBytes();
+    private static final long MAX_HEAP_GROWTH = DataSize.ofMegabytes(64).toBytes();
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private ImageProcessingPipeline processingPipeline;
+
+    @Mock
+    private BlobDeletionRepository deletionRepository;
+
+    @TempDir
+    Path uploadDir;
+
+    private LocalBlobStore blobStore;
+    private ImageServiceImpl imageService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        blobStore = new LocalBlobStore(uploadDir.toString());
+        ImageStorage imageStorage = new ImageStorage(imageRepository, blobStore, uploadDir.toString(), DataSize.ofMegabytes(16), true);
+        BlobDeletionOutbox deletionOutbox = new BlobDeletionOutbox(deletionRepository, imageStorage,
+                new HotImageCache(false, DataSize.ofMegabytes(1), DataSize.ofKilobytes(256)),
+                new ImageVariantService(imageStorage, uploadDir.resolve("variants").toString(), List.of(256), 0, Duration.ofSeconds(1)));
+        imageService = new ImageServiceImpl(imageRepository, new ImageMetadataIndex(imageRepository, false),
+                deletionOutbox, processingPipeline, imageStorage, new ImageCounter(imageRepository, Duration.ofMinutes(1)),
+                new ImageMetadataCache(false, 1000, Duration.ofMinutes(1), new CacheInvalidationBus(0, List.of())),
+                new ImageMetrics(new SimpleMeterRegistry()), TransactionOperations.withoutTransaction(), ForkJoinPool.commonPool(), 100);
+        when(imageRepository.save(any(Image.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void saveImage_ShouldStreamTheUploadToStorage() throws Exception {
+        Image image = imageService.saveImage(new GeneratedMultipartFile("large.png", DataSize.ofMegabytes(1).toBytes(), 1));
+
+        assertEquals(DataSize.ofMegabytes(1).toBytes(), Files.size(blobStore.shardedPath(image.getStorageKey())));
+    }
+
+    @Test
+    @Tag("load")
+    void saveImage_WithManyParallelLargeUploads_ShouldKeepHeapBounded() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(PARALLEL_UPLOADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Image>> results = new ArrayList<>();
+        try {
+            System.gc();
+            resetHeapPeaks();
+            long heapBefore = heapUsed();
+
+            for (int i = 0; i < PARALLEL_UPLOADS; i++) {
+                int seed = i;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return imageService.saveImage(new GeneratedMultipartFile("large.png", UPLOAD_SIZE, seed));
+                }));
+            }
+            start.countDown();
+            for (Future<Image> result : results) {
+                Image image = result.get();
+                assertEquals(UPLOAD_SIZE, Files.size(blobStore.shardedPath(image.getStorageKey())));
+            }
+
+            long heapGrowth = heapPeak() - heapBefore;
+            assertTrue(heapGrowth < MAX_HEAP_GROWTH,
+                    "heap grew by " + heapGrowth + " bytes for " + PARALLEL_UPLOADS * UPLOAD_SIZE + " uploaded bytes");
+        } finally {
+            executor.shutdownNow();
+        }
+        try (var files = Files.walk(uploadDir)) {
+            assertEquals(PARALLEL_UPLOADS, files.filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().endsWith(".tmp"))
+                    .count());
+        }
+    }
+
+    private static void resetHeapPeaks() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long heapUsed() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .mapToLong(pool -> pool.getUsage().getUsed())
+                .sum();
+    }
+
+    private static long heapPeak() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                .sum();
+    }
+
+    /**
+     * Multipart file whose content is produced while it is read instead of being held in memory. Files
+     * with different seeds have different content, so they are not deduplicated. The content starts
+     * with a PNG signature so that it passes content sniffing.
+     */
+    private static class GeneratedMultipartFile implements MultipartFile {
+
+        private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+        private final String originalFilename;
+        private final long size;
+        private final int seed;
+
+        GeneratedMultipartFile(String originalFilename, long size, int seed) {
+            this.originalFilename = originalFilename;
+            this.size = size;
+            this.seed = seed;
+        }
+
+        @Override
+        public String getName() {
+            return "file";
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return originalFilename;
+        }
+
+        @Override
+        public String getContentType() {
+            return "image/png";
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public byte[] getBytes() {
+            throw new AssertionError("upload must not be buffered in memory");
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new InputStream() {
+                private long remaining = size;
+
+                @Override
+                public int read() {
+                    if (remaining == 0) {
+                        return -1;
+                    }
+                    return next() & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    if (remaining == 0) {
+                        return -1;
+                    }
+                    int count = (int) Math.min(length, remaining);
+                    for (int i = 0; i < count; i++) {
+                        buffer[offset + i] = next();
+                    }
+                    return count;
+                }
+
+                private byte next() {
+                    long position = size - remaining--;
+                    return position < PNG_SIGNATURE.length ? PNG_SIGNATURE[(int) position] : (byte) (remaining ^ seed);
+                }
+            };
+        }
+
+        @Override
+        public void transferTo(File dest) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.janak.imageapi;
+
+import com.janak.imageapi.Exception.GlobalExceptionHandler;
+import com.janak.imageapi.config.UploadAdmissionFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.mvc.method.annotation.ExceptionHandlerExceptionResolver;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadAdmissionFilterTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ExceptionHandlerExceptionResolver exceptionResolver;
+
+    @BeforeEach
+    void setUp() {
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.registerSingleton("globalExceptionHandler", GlobalExceptionHandler.class);
+        context.refresh();
+        exceptionResolver = new ExceptionHandlerExceptionResolver();
+        exceptionResolver.setApplicationContext(context);
+        exceptionResolver.getMessageConverters().add(new MappingJackson2HttpMessageConverter());
+        exceptionResolver.afterPropertiesSet();
+    }
+
+    @Test
+    void upload_OverRequestRate_ShouldBeRejectedWithRetryAfterForThatClientOnly() throws Exception {
+        UploadAdmissionFilter filter = filter(1, DataSize.ofMegabytes(10), 4, 0);
+
+        assertEquals(200, upload(filter, "10.0.0.1", 100).getStatus());
+        MockHttpServletResponse rejected = upload(filter, "10.0.0.1", 100);
+        MockHttpServletResponse otherClient = upload(filter, "10.0.0.2", 100);
+
+        assertEquals(429, rejected.getStatus());
+        assertEquals("1", rejected.getHeader(HttpHeaders.RETRY_AFTER));
+        assertTrue(rejected.getContentAsString().contains("\"status\":429"));
+        assertEquals(200, otherClient.getStatus());
+        assertEquals(1, rejectedCount("request-rate"));
+    }
+
+    @Test
+    void upload_OverByteRate_ShouldBeRejectedBeforeTheBodyIsRead() throws Exception {
+        UploadAdmissionFilter filter = filter(100, DataSize.ofKilobytes(1), 4, 0);
+
+        assertEquals(200, upload(filter, "10.0.0.1", 800).getStatus());
+        MockHttpServletResponse rejected = upload(filter, "10.0.0.1", 800);
+
+        assertEquals(429, rejected.getStatus());
+        assertNotNull(rejected.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(1, rejectedCount("byte-rate"));
+    }
+
+    @Test
+    void upload_WhenAllSlotsAreTaken_ShouldBeRejectedAfterTheWaitQueueIsFull() throws Exception {
+        UploadAdmissionFilter filter = filter(100, DataSize.ofMegabytes(10), 1, 0);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<MockHttpServletResponse> running = CompletableFuture.supplyAsync(() -> {
+            try {
+                return upload(filter, "10.0.0.1", 100, new MockFilterChain() {
+                    @Override
+                    public void doFilter(jakarta.servlet.ServletRequest request, jakarta.servlet.ServletResponse response) {
+                        entered.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        MockHttpServletResponse rejected = upload(filter, "10.0.0.2", 100);
+        release.countDown();
+
+        assertEquals(429, rejected.getStatus());
+        assertEquals(1, rejectedCount("concurrency"));
+        assertEquals(200, running.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(0, meterRegistry.get("image.upload.active").gauge().value());
+    }
+
+    @Test
+    void upload_RejectedForConcurrency_ShouldNotSpendTheClientsTokens() throws Exception {
+        UploadAdmissionFilter filter = filter(1, DataSize.ofKilobytes(1), 1, 0);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<MockHttpServletResponse> running = CompletableFuture.supplyAsync(() -> {
+            try {
+                return upload(filter, "10.0.0.1", 100, new MockFilterChain() {
+                    @Override
+                    public void doFilter(jakarta.servlet.ServletRequest request, jakarta.servlet.ServletResponse response) {
+                        entered.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        assertEquals(429, upload(filter, "10.0.0.2", 800).getStatus());
+        release.countDown();
+        assertEquals(200, running.get(5, TimeUnit.SECONDS).getStatus());
+
+        // the retry finds both of its buckets as full as before the rejected attempt
+        assertEquals(200, upload(filter, "10.0.0.2", 800).getStatus());
+        assertEquals(1, rejectedCount("concurrency"));
+        assertEquals(0, rejectedCount("request-rate") + rejectedCount("byte-rate"));
+    }
+
+    @Test
+    void upload_WithUnknownLength_ShouldBeChargedTheFixedCostOnly() throws Exception {
+        UploadAdmissionFilter filter = filter(100, DataSize.ofKilobytes(1), 4, 0);
+
+        assertEquals(200, upload(filter, "10.0.0.1", -1).getStatus());
+        // a chunked upload leaves the rest of the bucket to the next one
+        assertEquals(200, upload(filter, "10.0.0.1", 400).getStatus());
+        assertEquals(429, upload(filter, "10.0.0.1", 400).getStatus());
+    }
+
+    @Test
+    void nonMultipartRequests_ShouldNotBeLimited() throws Exception {
+        UploadAdmissionFilter filter = filter(1, DataSize.ofBytes(1), 1, 0);
+
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/images");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+            assertEquals(200, response.getStatus());
+        }
+    }
+
+    @Test
+    void multipartRequestsOutsideTheUploadEndpoints_ShouldNotBeLimited() throws Exception {
+        UploadAdmissionFilter filter = filter(1, DataSize.ofBytes(1), 1, 0);
+
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/images/1");
+            request.setContentType(MediaType.MULTIPART_FORM_DATA_VALUE + "; boundary=x");
+            request.setContent(new byte[100]);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+            assertEquals(200, response.getStatus());
+        }
+    }
+
+    private UploadAdmissionFilter filter(long requestBurst, DataSize byteBurst, int maxConcurrent, int maxWaiting) {
+        return new UploadAdmissionFilter(1, requestBurst, DataSize.ofBytes(1), byteBurst, DataSize.ofBytes(512), "", 1000,
+                maxConcurrent, maxWaiting, Duration.ofMillis(10), meterRegistry, exceptionResolver);
+    }
+
+    private MockHttpServletResponse upload(UploadAdmissionFilter filter, String client, int length)
+            throws ServletException, IOException {
+        return upload(filter, client, length, new MockFilterChain());
+    }
+
+    private MockHttpServletResponse upload(UploadAdmissionFilter filter, String client, int length, MockFilterChain chain)
+            throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/images/upload");
+        request.setContentType(MediaType.MULTIPART_FORM_DATA_VALUE + "; boundary=x");
+        if (length >= 0) {
+            request.setContent(new byte[length]);
+        }
+        request.setRemoteAddr(client);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private double rejectedCount(String reason) {
+        return meterRegistry.get("image.upload.rejected").tag("reason", reason).counter().count();
+    }
+}
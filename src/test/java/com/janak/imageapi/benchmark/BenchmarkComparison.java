@@ -0,0 +1,125 @@
+package com.janak.imageapi.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result ({@code -rf json}) with a baseline run, benchmark by benchmark and
+ * parameter set by parameter set, on the score and, when the gc profiler ran, on the allocation per
+ * operation. A difference counts as a regression when it is worse than {@code threshold} percent and
+ * larger than the two runs' error margins together, so noise between runs does not fail the build.
+ * Exits with status 1 when anything regressed; benchmarks missing on one side are listed, not failed.
+ * <p>
+ * {@code mvn -Pbenchmark exec:exec@compare [-Dbenchmark.baseline=...] [-Dbenchmark.threshold=10]}
+ */
+public final class BenchmarkComparison {
+
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private BenchmarkComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BenchmarkComparison <baseline.json> <current.json> [threshold percent]");
+            System.exit(2);
+        }
+        Path baselineFile = Paths.get(args[0]);
+        if (!Files.exists(baselineFile)) {
+            System.err.println("No baseline at " + baselineFile + ", copy a result there to compare against it");
+            System.exit(2);
+        }
+        Map<String, JsonNode> baseline = read(baselineFile);
+        Map<String, JsonNode> current = read(Paths.get(args[1]));
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+
+        int regressions = 0;
+        System.out.printf(Locale.ROOT, "%-70s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf(Locale.ROOT, "%-70s %14s%n", entry.getKey(), "(new)");
+                continue;
+            }
+            JsonNode after = entry.getValue();
+            boolean higherIsBetter = "thrpt".equals(after.path("mode").asText());
+            if (compare(entry.getKey(), before.path("primaryMetric"), after.path("primaryMetric"), higherIsBetter, threshold)) {
+                regressions++;
+            }
+            JsonNode beforeAllocation = allocation(before);
+            JsonNode afterAllocation = allocation(after);
+            if (beforeAllocation != null && afterAllocation != null
+                    && compare(entry.getKey() + " [alloc]", beforeAllocation, afterAllocation, false, threshold)) {
+                regressions++;
+            }
+        }
+        baseline.keySet().stream().filter(key -> !current.containsKey(key))
+                .forEach(key -> System.out.printf(Locale.ROOT, "%-70s %14s%n", key, "(missing)"));
+
+        if (regressions > 0) {
+            System.out.println(regressions + " regression(s) beyond " + threshold + "%");
+            System.exit(1);
+        }
+        System.out.println("No regressions beyond " + threshold + "%");
+    }
+
+    /**
+     * Prints one line and returns whether {@code after} is a regression from {@code before}.
+     */
+    private static boolean compare(String name, JsonNode before, JsonNode after, boolean higherIsBetter, double threshold) {
+        double base = before.path("score").asDouble();
+        double score = after.path("score").asDouble();
+        double change = base == 0 ? (score == 0 ? 0 : 100) : (score - base) / base * 100;
+        double worse = higherIsBetter ? -change : change;
+        double noise = error(before) + error(after);
+        boolean regressed = worse > threshold && Math.abs(score - base) > noise;
+        String unit = after.path("scoreUnit").asText();
+        System.out.printf(Locale.ROOT, "%-70s %14s %14s %+8.1f%%%s%n", name, format(base, unit), format(score, unit),
+                change, regressed ? "  REGRESSION" : "");
+        return regressed;
+    }
+
+    private static double error(JsonNode metric) {
+        double error = metric.path("scoreError").asDouble(0);
+        // NaN when a run had a single iteration
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    private static JsonNode allocation(JsonNode result) {
+        for (Map.Entry<String, JsonNode> metric : result.path("secondaryMetrics").properties()) {
+            if (metric.getKey().endsWith(ALLOCATION)) {
+                return metric.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String format(double score, String unit) {
+        return String.format(Locale.ROOT, "%.3f %s", score, unit);
+    }
+
+    /**
+     * Results by benchmark name and parameters, e.g. {@code UploadWriteBenchmark.streaming size=65536}.
+     */
+    private static Map<String, JsonNode> read(Path file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file.toFile())) {
+            String benchmark = result.path("benchmark").asText();
+            StringBuilder key = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1));
+            Map<String, String> params = new TreeMap<>();
+            result.path("params").properties().forEach(param -> params.put(param.getKey(), param.getValue().asText()));
+            params.forEach((name, value) -> key.append(' ').append(name).append('=').append(value));
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+}
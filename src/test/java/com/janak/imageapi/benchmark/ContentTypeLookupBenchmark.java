@@ -0,0 +1,75 @@
+package com.janak.imageapi.benchmark;
+
+import com.janak.imageapi.Services.ImageMetadataIndex;
+import com.janak.imageapi.models.Image;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares how the serving path resolves the content type of an image: probing the file on every
+ * request (the old {@code getContentType}) versus reading it from the {@link ImageMetadataIndex}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentTypeLookupBenchmark {
+
+    private static final int IMAGE_COUNT = 1024;
+
+    private Path uploadDir;
+    private String[] imageNames;
+    private ImageMetadataIndex metadataIndex;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        uploadDir = Files.createTempDirectory("content-type-benchmark");
+        // the index only touches the repository on a miss, and every name below is put first
+        metadataIndex = new ImageMetadataIndex(null, false);
+        imageNames = new String[IMAGE_COUNT];
+        for (int i = 0; i < IMAGE_COUNT; i++) {
+            String name = i + (i % 2 == 0 ? ".png" : ".jpg");
+            Files.write(uploadDir.resolve(name), new byte[]{(byte) i});
+            imageNames[i] = name;
+            metadataIndex.put(Image.builder()
+                    .id(i)
+                    .imageName(name)
+                    .imageType(i % 2 == 0 ? "image/png" : "image/jpeg")
+                    .imageSizeBytes(1L)
+                    .contentHash(Integer.toHexString(i))
+                    .build());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(uploadDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private String nextName() {
+        next = (next + 1) & (IMAGE_COUNT - 1);
+        return imageNames[next];
+    }
+
+    @Benchmark
+    public MediaType probeContentType() throws IOException {
+        return MediaType.parseMediaType(Files.probeContentType(uploadDir.resolve(nextName())));
+    }
+
+    @Benchmark
+    public MediaType indexedLookup() {
+        return metadataIndex.lookup(nextName()).contentType();
+    }
+}
@@ -0,0 +1,127 @@
+package com.janak.imageapi.benchmark;
+
+import com.janak.imageapi.ImageApiApplication;
+import com.janak.imageapi.Services.ImageService;
+import com.janak.imageapi.models.Image;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * The application as benchmarks see it: the full service layer on an in-memory H2 database, with
+ * uploads stored on tmpfs so disk latency does not drown out the code being measured. No web server is
+ * started and background work (processing, backfill) is off, so it does not run during measurement.
+ * The directory can be moved with {@code -Dbenchmark.dir=...}, e.g. to compare against a real disk.
+ * {@link #startServer} also starts Tomcat, for {@link ImageApiLoadTest}.
+ */
+final class EmbeddedImageApi {
+
+    private static final Path TMPFS = Paths.get("/dev/shm");
+
+    private EmbeddedImageApi() {
+    }
+
+    /**
+     * A fresh directory under {@code benchmark.dir}, {@code /dev/shm} when it is available, or the
+     * temp directory otherwise.
+     */
+    static Path createDirectory(String prefix) throws IOException {
+        String configured = System.getProperty("benchmark.dir");
+        Path parent = configured != null ? Paths.get(configured)
+                : Files.isDirectory(TMPFS) && Files.isWritable(TMPFS) ? TMPFS
+                : Paths.get(System.getProperty("java.io.tmpdir"));
+        Files.createDirectories(parent);
+        return Files.createTempDirectory(parent, prefix);
+    }
+
+    /**
+     * Starts the application without a web server. Further {@code --key=value} arguments are passed on
+     * to the application.
+     */
+    static ConfigurableApplicationContext start(Path uploadDir, String... args) {
+        return run(WebApplicationType.NONE, uploadDir, args);
+    }
+
+    /**
+     * Like {@link #start}, with Tomcat listening on a free port, see {@link #port}.
+     */
+    static ConfigurableApplicationContext startServer(Path uploadDir, String... args) {
+        String[] serverArgs = Arrays.copyOf(args, args.length + 1);
+        serverArgs[args.length] = "--server.port=0";
+        return run(WebApplicationType.SERVLET, uploadDir, serverArgs);
+    }
+
+    static int port(ConfigurableApplicationContext context) {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    private static ConfigurableApplicationContext run(WebApplicationType type, Path uploadDir, String... args) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.datasource.url", "jdbc:h2:mem:benchmark-" + uploadDir.getFileName() + ";DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.jpa.properties.hibernate.format_sql", "false");
+        properties.put("logging.level.root", "WARN");
+        properties.put("file.upload-dir", uploadDir.toString());
+        properties.put("file.variant-dir", uploadDir.resolve("variants").toString());
+        properties.put("file.storage.packed.dir", uploadDir.resolve("segments").toString());
+        properties.put("image.processing.enabled", "false");
+        properties.put("image.metadata-backfill.enabled", "false");
+        // a repeated option would be joined with the default, not replace it
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            properties.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return new SpringApplicationBuilder(ImageApiApplication.class)
+                .web(type)
+                .logStartupInfo(false)
+                // arguments, as they have to win over application.properties
+                .run(properties.entrySet().stream().map(e -> "--" + e.getKey() + "=" + e.getValue()).toArray(String[]::new));
+    }
+
+    /**
+     * Uploads {@code count} distinct 64x48 PNGs through the service, so rows, index entries and stored
+     * files are all in place.
+     */
+    static List<Image> seed(ImageService imageService, int count) throws IOException {
+        List<Image> images = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+            image.setRGB(0, 0, i);
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", content);
+            images.add(imageService.saveImage(new MockMultipartFile("file", "photo-" + i + ".png", "image/png",
+                    content.toByteArray())));
+        }
+        return images;
+    }
+
+    static void delete(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package com.janak.imageapi.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load test of the HTTP API. Boots the application with Tomcat on a free port, H2 and a
+ * fresh upload directory (see {@link EmbeddedImageApi}), seeds it with images, and then has
+ * {@code concurrency} clients send a weighted mix of uploads, listings, metadata reads, downloads and
+ * deletes for {@code duration}, after a {@code warmup} that is not measured. Latencies go into one
+ * HdrHistogram per operation; the report gives throughput, error rate and percentiles, and the full
+ * distributions are written to {@code report-dir} as {@code .hgrm} files. Only the loopback interface is
+ * used, so it runs offline ({@code mvn -o}) once the build's dependencies are in the local repository.
+ * <p>
+ * By default every client sends its next request as soon as the previous one returned. With
+ * {@code rate} set, the clients pace themselves to that many requests per second in total, and each
+ * request's latency is taken from when it was due rather than from when it was sent. That way a slow
+ * response also counts against the requests queued behind it, which avoids coordinated omission.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@load -Dload.args="--concurrency=64 --duration=60s --sizes=64KB,2MB"
+ * </pre>
+ * Options, all {@code --name=value}:
+ * <ul>
+ *     <li>{@code concurrency} (16), {@code duration} (30s), {@code warmup} (10s)</li>
+ *     <li>{@code mix} (upload:15,list:15,get:20,serve:45,delete:5), relative weights</li>
+ *     <li>{@code sizes} (16KB,256KB,2MB), upload sizes, picked evenly</li>
+ *     <li>{@code seed} (200), images uploaded before the warmup</li>
+ *     <li>{@code rate} (0 = unpaced), total requests per second</li>
+ *     <li>{@code url}, an instance to test instead of booting one</li>
+ *     <li>{@code report-dir} (target/load-test), {@code max-error-rate} (0.01); the run exits with
+ *     status 1 above it</li>
+ *     <li>anything else is passed to the booted application, e.g. {@code --image.cache.enabled=true};
+ *     its upload limits are off unless {@code --image.upload.limit.enabled=true}</li>
+ * </ul>
+ */
+public final class ImageApiLoadTest {
+
+    enum Operation {UPLOAD, LIST, GET, SERVE, DELETE}
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    private static final String BOUNDARY = "----image-api-load-test";
+
+    private static final String CLIENT_HEADER = "X-Load-Client";
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final String baseUrl;
+
+    private final List<byte[]> payloads;
+
+    private final ImagePool pool = new ImagePool();
+
+    // appended after the PNG data, so every upload is distinct content and deduplication does not kick in
+    private final AtomicLong uploads = new AtomicLong();
+
+    private ImageApiLoadTest(String baseUrl, List<byte[]> payloads) {
+        this.baseUrl = baseUrl;
+        this.payloads = payloads;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        List<String> applicationArgs = new ArrayList<>();
+        // the upload limits are per client, and the seeding alone would exceed them; with
+        // --image.upload.limit.enabled=true every load client counts as a client of its own
+        applicationArgs.add("--image.upload.limit.enabled=false");
+        applicationArgs.add("--image.upload.limit.client-header=" + CLIENT_HEADER);
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, separator);
+            if (isOption(name)) {
+                options.put(name, arg.substring(separator + 1));
+            } else {
+                applicationArgs.add(arg);
+            }
+        }
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "16"));
+        Duration duration = DurationStyle.detectAndParse(options.getOrDefault("duration", "30s"));
+        Duration warmup = DurationStyle.detectAndParse(options.getOrDefault("warmup", "10s"));
+        Map<Operation, Integer> mix = parseMix(options.getOrDefault("mix", "upload:15,list:15,get:20,serve:45,delete:5"));
+        List<byte[]> payloads = new ArrayList<>();
+        for (String size : options.getOrDefault("sizes", "16KB,256KB,2MB").split(",")) {
+            payloads.add(png(DataSize.parse(size.trim()).toBytes()));
+        }
+        int seed = Integer.parseInt(options.getOrDefault("seed", "200"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        Path reportDir = Paths.get(options.getOrDefault("report-dir", "target/load-test"));
+        double maxErrorRate = Double.parseDouble(options.getOrDefault("max-error-rate", "0.01"));
+
+        ConfigurableApplicationContext context = null;
+        Path uploadDir = null;
+        String url = options.get("url");
+        if (url == null) {
+            uploadDir = EmbeddedImageApi.createDirectory("image-api-load-test");
+            context = EmbeddedImageApi.startServer(uploadDir, applicationArgs.toArray(String[]::new));
+            url = "http://localhost:" + EmbeddedImageApi.port(context);
+        }
+        int status = 0;
+        try {
+            ImageApiLoadTest loadTest = new ImageApiLoadTest(url, payloads);
+            System.out.printf(Locale.ROOT, "Seeding %d images at %s%n", seed, url);
+            loadTest.seed(seed);
+            System.out.printf(Locale.ROOT, "%d clients, %s warmup, %s measured, mix %s%n", concurrency, warmup, duration, mix);
+            Result result = loadTest.run(concurrency, warmup, duration, mix, rate);
+            result.print(System.out, duration);
+            result.write(reportDir);
+            double errorRate = result.errorRate();
+            if (errorRate > maxErrorRate) {
+                System.out.printf(Locale.ROOT, "Error rate %.2f%% is above %.2f%%%n", errorRate * 100, maxErrorRate * 100);
+                status = 1;
+            }
+        } finally {
+            if (context != null) {
+                context.close();
+                EmbeddedImageApi.delete(uploadDir);
+            }
+        }
+        // the HTTP client's threads would keep the JVM alive
+        System.exit(status);
+    }
+
+    private static boolean isOption(String name) {
+        return List.of("concurrency", "duration", "warmup", "mix", "sizes", "seed", "rate", "url", "report-dir",
+                "max-error-rate").contains(name);
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+    private void seed(int count) throws IOException, InterruptedException {
+        for (int i = 0; i < count; i++) {
+            if (!upload("seed", payloads.get(i % payloads.size()))) {
+                throw new IllegalStateException("Seeding failed, is the application up at " + baseUrl + "?");
+            }
+        }
+    }
+
+    private Result run(int concurrency, Duration warmup, Duration duration, Map<Operation, Integer> mix, double rate)
+            throws Exception {
+        Operation[] wheel = wheel(mix);
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        // per client, the interval the paced schedule expects between its requests
+        long interval = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) * concurrency / rate) : 0;
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                String clientId = "client-" + i;
+                futures.add(clients.submit(() -> client(clientId, wheel, measureFrom, end, interval)));
+            }
+            Result total = new Result();
+            for (Future<Result> future : futures) {
+                total.add(future.get());
+            }
+            return total;
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private Result client(String clientId, Operation[] wheel, long measureFrom, long end, long interval) {
+        Result result = new Result();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long next = System.nanoTime();
+        while (true) {
+            if (interval > 0) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            long start = System.nanoTime();
+            if (start >= end) {
+                return result;
+            }
+            Operation operation = wheel[random.nextInt(wheel.length)];
+            Boolean succeeded;
+            try {
+                succeeded = execute(clientId, operation, random);
+            } catch (IOException e) {
+                succeeded = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return result;
+            }
+            long finished = System.nanoTime();
+            if (succeeded != null && start >= measureFrom) {
+                // a paced request counts from when it was due, so time spent waiting for a slow
+                // predecessor shows up in its latency instead of vanishing from the histogram
+                long latency = interval > 0 ? finished - Math.min(start, next) : finished - start;
+                result.record(operation, latency, succeeded);
+            }
+            next += interval;
+        }
+    }
+
+    /**
+     * Sends one request, returning whether it succeeded, or {@code null} when there was no image to
+     * read or delete.
+     */
+    private Boolean execute(String clientId, Operation operation, Random random) throws IOException, InterruptedException {
+        switch (operation) {
+            case UPLOAD:
+                return upload(clientId, payloads.get(random.nextInt(payloads.size())));
+            case LIST:
+                return send(get("/api/images?page=" + (1 + random.nextInt(5)) + "&size=20")).statusCode() == 200;
+            case GET: {
+                StoredImage image = pool.pick(random);
+                return image == null ? null : send(get("/api/images/" + image.id())).statusCode() == 200;
+            }
+            case SERVE: {
+                StoredImage image = pool.pick(random);
+                return image == null ? null : send(get("/api/images/image/" + image.name())).statusCode() == 200;
+            }
+            case DELETE: {
+                StoredImage image = pool.take(random);
+                return image == null ? null : send(HttpRequest.newBuilder(uri("/api/images/" + image.id())).DELETE()).statusCode() == 204;
+            }
+            default:
+                throw new IllegalArgumentException(operation.name());
+        }
+    }
+
+    private boolean upload(String clientId, byte[] png) throws IOException, InterruptedException {
+        byte[] head = ("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"load-test.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] unique = ByteBuffer.allocate(Long.BYTES).putLong(uploads.incrementAndGet()).array();
+        byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri("/api/images/upload"))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .header(CLIENT_HEADER, clientId)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(head, png, unique, tail)));
+        HttpResponse<byte[]> response = client.send(request.timeout(Duration.ofMinutes(1)).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 201) {
+            return false;
+        }
+        JsonNode image = objectMapper.readTree(response.body()).path("data");
+        pool.add(new StoredImage(image.path("id").asLong(), image.path("imageName").asText()));
+        return true;
+    }
+
+    private HttpResponse<Void> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return client.send(request.timeout(Duration.ofMinutes(1)).build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    private HttpRequest.Builder get(String path) {
+        return HttpRequest.newBuilder(uri(path)).GET();
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    /**
+     * Operations repeated by weight, so picking one is a single random index.
+     */
+    private static Operation[] wheel(Map<Operation, Integer> mix) {
+        List<Operation> wheel = new ArrayList<>();
+        mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                wheel.add(operation);
+            }
+        });
+        if (wheel.isEmpty()) {
+            throw new IllegalArgumentException("The mix needs at least one operation with a positive weight");
+        }
+        return wheel.toArray(Operation[]::new);
+    }
+
+    /**
+     * A valid PNG of about {@code size} bytes: noise does not compress, so the encoded size follows the
+     * pixel count.
+     */
+    private static byte[] png(long size) throws IOException {
+        int side = Math.max(1, (int) Math.sqrt(size / 3.0));
+        BufferedImage image = new BufferedImage(side, side, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(size);
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", content);
+        return content.toByteArray();
+    }
+
+    private record StoredImage(long id, String name) {
+    }
+
+    /**
+     * Images known to exist, for the reads and deletes to pick from.
+     */
+    private static final class ImagePool {
+
+        private final List<StoredImage> images = new ArrayList<>();
+
+        synchronized void add(StoredImage image) {
+            images.add(image);
+        }
+
+        synchronized StoredImage pick(Random random) {
+            return images.isEmpty() ? null : images.get(random.nextInt(images.size()));
+        }
+
+        /**
+         * Removes a random image, so no other client reads or deletes it after this one deleted it.
+         */
+        synchronized StoredImage take(Random random) {
+            if (images.isEmpty()) {
+                return null;
+            }
+            int index = random.nextInt(images.size());
+            StoredImage last = images.remove(images.size() - 1);
+            return index == images.size() ? last : images.set(index, last);
+        }
+    }
+
+    /**
+     * Latencies and counts per operation, of one client or, merged, of the whole run.
+     */
+    private static final class Result {
+
+        private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+
+        private final Map<Operation, long[]> errors = new EnumMap<>(Operation.class);
+
+        Result() {
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, new Histogram(MAX_LATENCY_NANOS, 3));
+                errors.put(operation, new long[1]);
+            }
+        }
+
+        void record(Operation operation, long latency, boolean succeeded) {
+            latencies.get(operation).recordValue(Math.min(latency, MAX_LATENCY_NANOS));
+            if (!succeeded) {
+                errors.get(operation)[0]++;
+            }
+        }
+
+        void add(Result other) {
+            for (Operation operation : Operation.values()) {
+                latencies.get(operation).add(other.latencies.get(operation));
+                errors.get(operation)[0] += other.errors.get(operation)[0];
+            }
+        }
+
+        double errorRate() {
+            long requests = 0;
+            long failed = 0;
+            for (Operation operation : Operation.values()) {
+                requests += latencies.get(operation).getTotalCount();
+                failed += errors.get(operation)[0];
+            }
+            return requests == 0 ? 0 : (double) failed / requests;
+        }
+
+        void print(PrintStream out, Duration duration) {
+            double seconds = duration.toNanos() / 1e9;
+            out.printf(Locale.ROOT, "%-8s %9s %8s %7s %9s %9s %9s %9s %9s %9s%n",
+                    "op", "requests", "errors", "error%", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+            Histogram all = new Histogram(MAX_LATENCY_NANOS, 3);
+            long allErrors = 0;
+            for (Operation operation : Operation.values()) {
+                Histogram histogram = latencies.get(operation);
+                if (histogram.getTotalCount() > 0) {
+                    print(out, operation.name().toLowerCase(Locale.ROOT), histogram, errors.get(operation)[0], seconds);
+                }
+                all.add(histogram);
+                allErrors += errors.get(operation)[0];
+            }
+            print(out, "total", all, allErrors, seconds);
+        }
+
+        private static void print(PrintStream out, String name, Histogram histogram, long errors, double seconds) {
+            long count = histogram.getTotalCount();
+            out.printf(Locale.ROOT, "%-8s %9d %8d %6.2f%% %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    name, count, errors, count == 0 ? 0 : errors * 100.0 / count, count / seconds,
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+
+        void write(Path directory) throws IOException {
+            Files.createDirectories(directory);
+            for (Operation operation : Operation.values()) {
+                Histogram histogram = latencies.get(operation);
+                if (histogram.getTotalCount() == 0) {
+                    continue;
+                }
+                Path file = directory.resolve(operation.name().toLowerCase(Locale.ROOT) + ".hgrm");
+                try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, StandardCharsets.UTF_8)) {
+                    // in milliseconds, as the HdrHistogram plotter expects
+                    histogram.outputPercentileDistribution(out, 1e6);
+                }
+            }
+            System.out.println("Latency distributions written to " + directory.toAbsolutePath());
+        }
+    }
+}
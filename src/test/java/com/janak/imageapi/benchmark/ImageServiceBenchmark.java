@@ -0,0 +1,77 @@
+package com.janak.imageapi.benchmark;
+
+import com.janak.imageapi.Services.ImageService;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.utils.FileUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request costs of {@link ImageService} calls that run on every upload or download, measured on
+ * the running service layer (see {@link EmbeddedImageApi}): the name and type check of an upload, the
+ * size formatting used in responses and errors, and resolving a stored image for download together
+ * with its content type, as {@code GET /api/images/image/{name}} does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageServiceBenchmark {
+
+    private static final int IMAGE_COUNT = 256;
+
+    private static final long[] SIZES = {0, 512, 48_213, 1_536_000, 20L * 1024 * 1024, 3L * 1024 * 1024 * 1024};
+
+    private Path uploadDir;
+    private ConfigurableApplicationContext context;
+    private ImageService imageService;
+    private String[] imageNames;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        uploadDir = EmbeddedImageApi.createDirectory("image-service-benchmark");
+        context = EmbeddedImageApi.start(uploadDir);
+        imageService = context.getBean(ImageService.class);
+        List<Image> images = EmbeddedImageApi.seed(imageService, IMAGE_COUNT);
+        imageNames = images.stream().map(Image::getImageName).toArray(String[]::new);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        EmbeddedImageApi.delete(uploadDir);
+    }
+
+    private int next() {
+        next = (next + 1) & (IMAGE_COUNT - 1);
+        return next;
+    }
+
+    @Benchmark
+    public void validateImageFile() {
+        imageService.validateImageFile("image/jpeg", "holiday-photo.JPG");
+    }
+
+    @Benchmark
+    public String readableFileSize() {
+        return FileUtils.getReadableFileSize(SIZES[next() % SIZES.length]);
+    }
+
+    @Benchmark
+    public void imageAsResource(Blackhole blackhole) {
+        String imageName = imageNames[next()];
+        Resource resource = imageService.getImageAsResource(imageName);
+        blackhole.consume(resource);
+        blackhole.consume(imageService.getContentType(imageName));
+    }
+}
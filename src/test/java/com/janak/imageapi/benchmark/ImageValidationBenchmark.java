@@ -0,0 +1,64 @@
+package com.janak.imageapi.benchmark;
+
+import com.janak.imageapi.models.ImageFormat;
+import com.janak.imageapi.models.ImageHeader;
+import com.janak.imageapi.utils.ImageSniffer;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-upload cost of the old {@code validateImageFile}, which trusted the declared content
+ * type and matched the name against a regex compiled on every call, with the new checks: the
+ * extension lookup in {@link ImageFormat} that replaced the regex, and the {@link ImageSniffer} pass over
+ * the staged file that also yields the dimensions. The staged file sits in the page cache, as it does
+ * right after an upload was written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageValidationBenchmark {
+
+    @Param({"png", "jpg", "gif", "bmp"})
+    public String format;
+
+    private String fileName;
+    private String contentType;
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        fileName = "holiday-photo." + format;
+        contentType = ImageFormat.fromFileName(fileName).mediaType();
+        file = Files.createTempFile("image-validation-benchmark", "." + format);
+        ImageIO.write(new BufferedImage(1024, 768, BufferedImage.TYPE_INT_RGB), format, file.toFile());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public boolean regexCheck() {
+        return contentType.startsWith("image/") && fileName.matches("(?i).*\\.(jpg|jpeg|png|gif|bmp|webp)$");
+    }
+
+    @Benchmark
+    public boolean extensionCheck() {
+        return contentType.startsWith("image/") && ImageFormat.fromFileName(fileName) != null;
+    }
+
+    @Benchmark
+    public ImageHeader sniffStagedFile() throws IOException {
+        return ImageSniffer.sniff(file);
+    }
+}
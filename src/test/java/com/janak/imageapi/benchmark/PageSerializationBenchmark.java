@@ -0,0 +1,62 @@
+package com.janak.imageapi.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.janak.imageapi.Services.ImageService;
+import com.janak.imageapi.models.ImageSummary;
+import com.janak.imageapi.utils.PaginatedResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A listing page, {@code GET /api/images?page=&size=}: loading it from H2 through the service, with the
+ * metadata cache off so every call queries, and its JSON serialization with the application's own
+ * {@link ObjectMapper}, of a page loaded once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageSerializationBenchmark {
+
+    @Param({"10", "100"})
+    public int pageSize;
+
+    private Path uploadDir;
+    private ConfigurableApplicationContext context;
+    private ObjectMapper objectMapper;
+    private ImageService imageService;
+    private PaginatedResponse<ImageSummary> page;
+
+    @Setup
+    public void setUp() throws IOException {
+        uploadDir = EmbeddedImageApi.createDirectory("page-serialization-benchmark");
+        context = EmbeddedImageApi.start(uploadDir, "--image.metadata-cache.enabled=false");
+        imageService = context.getBean(ImageService.class);
+        EmbeddedImageApi.seed(imageService, pageSize);
+        objectMapper = context.getBean(ObjectMapper.class);
+        page = imageService.getAllImages(1, pageSize);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        EmbeddedImageApi.delete(uploadDir);
+    }
+
+    @Benchmark
+    public PaginatedResponse<ImageSummary> load() {
+        return imageService.getAllImages(1, pageSize);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
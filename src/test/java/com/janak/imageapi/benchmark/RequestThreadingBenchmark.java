@@ -0,0 +1,212 @@
+package com.janak.imageapi.benchmark;
+
+import com.janak.imageapi.Services.HotImageCache;
+import com.janak.imageapi.Services.ImageDeliveryService;
+import com.janak.imageapi.Services.ImageMetadataIndex;
+import com.janak.imageapi.Services.ImageMetrics;
+import com.janak.imageapi.Services.ImageVariantService;
+import com.janak.imageapi.models.Image;
+import com.janak.imageapi.storage.ImageStorage;
+import com.janak.imageapi.storage.LocalBlobStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares Tomcat's default request threads (a pool of 200 platform threads) with one virtual thread per
+ * request, as with {@code spring.threads.virtual.enabled=true}, when far more requests are in flight
+ * than there are pool threads. This is a model of the request path rather than the servlet stack: the
+ * database round trip is a sleep behind a 20-permit semaphore standing in for the connection pool, and
+ * only the download is real, a 64KB image streamed through {@link ImageDeliveryService} to a slow
+ * client, so most of each request is spent blocked. One benchmark operation is a burst of
+ * {@code concurrency} requests; throughput is {@code concurrency} divided by the reported time, and the
+ * p99 request latency of each iteration is printed after it.
+ * <p>
+ * The {@code virtual} mode needs a Java 21+ runtime; on older ones its setup fails with a message saying
+ * so and JMH goes on with the {@code platform} mode. Only that one: {@code -p threads=platform}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestThreadingBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final int CONNECTION_POOL_SIZE = 20;
+    private static final long QUERY_MILLIS = 2;
+    private static final long CLIENT_MILLIS_PER_WRITE = 1;
+    private static final int IMAGE_SIZE = 64 * 1024;
+    private static final int IMAGE_COUNT = 64;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"2000"})
+    public int concurrency;
+
+    private Path uploadDir;
+    private ExecutorService executor;
+    private ImageDeliveryService deliveryService;
+    private final Semaphore connectionPool = new Semaphore(CONNECTION_POOL_SIZE, true);
+    private long[] latencies;
+    private int recorded;
+
+    @Setup
+    public void setUp() throws IOException {
+        executor = "virtual".equals(threads) ? newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+        uploadDir = Files.createTempDirectory("request-threading-benchmark");
+        // the index never misses below, so neither it nor the storage needs a repository
+        ImageMetadataIndex metadataIndex = new ImageMetadataIndex(null, false);
+        byte[] content = new byte[IMAGE_SIZE];
+        for (int i = 0; i < IMAGE_COUNT; i++) {
+            Files.write(uploadDir.resolve(i + ".png"), content);
+            metadataIndex.put(Image.builder()
+                    .id(i)
+                    .imageName(i + ".png")
+                    .imageType("image/png")
+                    .imageSizeBytes((long) IMAGE_SIZE)
+                    .contentHash(Integer.toHexString(i))
+                    .build());
+        }
+        ImageStorage storage = new ImageStorage(null, new LocalBlobStore(uploadDir.toString()), uploadDir.toString(),
+                DataSize.ofMegabytes(20), true);
+        deliveryService = new ImageDeliveryService(metadataIndex,
+                new HotImageCache(false, DataSize.ofMegabytes(1), DataSize.ofKilobytes(256)),
+                new ImageVariantService(storage, uploadDir.resolve("variants").toString(), List.of(256), 0, Duration.ofSeconds(1)), storage,
+                new ImageMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        latencies = new long[1 << 16];
+        recorded = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportIteration() {
+        long[] sorted = Arrays.copyOf(latencies, recorded);
+        Arrays.sort(sorted);
+        long p99 = sorted.length == 0 ? 0 : sorted[(int) Math.ceil(sorted.length * 0.99) - 1];
+        System.out.printf("%n%s threads: %d requests, p99 %.1f ms%n", threads, recorded, p99 / 1e6);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        try (Stream<Path> files = Files.walk(uploadDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void burst() throws InterruptedException {
+        long[] burst = new long[concurrency];
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            int request = i;
+            long submitted = System.nanoTime();
+            executor.execute(() -> {
+                try {
+                    handle(request % IMAGE_COUNT + ".png");
+                } catch (IOException | InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    burst[request] = System.nanoTime() - submitted;
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        for (long latency : burst) {
+            if (recorded < latencies.length) {
+                latencies[recorded++] = latency;
+            }
+        }
+    }
+
+    private void handle(String imageName) throws IOException, InterruptedException {
+        connectionPool.acquire();
+        try {
+            Thread.sleep(QUERY_MILLIS);
+        } finally {
+            connectionPool.release();
+        }
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/images/image/" + imageName);
+        deliveryService.serve(imageName, request, new SlowClientResponse());
+    }
+
+    // the project builds for Java 17, so the factory can only be looked up at run time
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (!JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE)) {
+            throw new IllegalStateException("Skipping threads=virtual: virtual threads need a Java 21+ runtime, this is "
+                    + System.getProperty("java.version"));
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Discards the body, blocking on every write as if the socket buffer were full.
+     */
+    private static final class SlowClientResponse extends MockHttpServletResponse {
+
+        private final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    Thread.sleep(CLIENT_MILLIS_PER_WRITE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+    }
+}
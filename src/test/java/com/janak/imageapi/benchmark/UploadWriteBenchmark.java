@@ -0,0 +1,122 @@
+package com.janak.imageapi.benchmark;
+
+import com.janak.imageapi.storage.ImageStorage;
+import com.janak.imageapi.storage.ImageStorage.StagedUpload;
+import com.janak.imageapi.storage.LocalBlobStore;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two ways of getting an uploaded part into the upload directory: reading it into a byte
+ * array with {@code getBytes()} and writing that out (the original upload path), and streaming it
+ * through {@link ImageStorage#stage} in fixed-size chunks, which also hashes the content. The part is a
+ * spooled file, as Tomcat hands it over with {@code file-size-threshold=0B}; both sides live on tmpfs.
+ * Run with {@code -prof gc} (the profile's default) to see the per-upload allocation, which is where
+ * the two differ most.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UploadWriteBenchmark {
+
+    @Param({"65536", "1048576", "8388608"})
+    public int size;
+
+    private Path directory;
+    private Path target;
+    private MultipartFile part;
+    private ImageStorage imageStorage;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = EmbeddedImageApi.createDirectory("upload-write-benchmark");
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        Path spooled = Files.write(directory.resolve("part.tmp"), content);
+        part = new SpooledPart(spooled);
+        target = directory.resolve("written.png");
+        // staging never touches the repository
+        imageStorage = new ImageStorage(null, new LocalBlobStore(directory.toString()), directory.toString(),
+                DataSize.ofMegabytes(64), true);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        EmbeddedImageApi.delete(directory);
+    }
+
+    @Benchmark
+    public Path getBytes() throws IOException {
+        return Files.write(target, part.getBytes());
+    }
+
+    @Benchmark
+    public long streaming() {
+        try (StagedUpload staged = imageStorage.stage(part)) {
+            return staged.size();
+        }
+    }
+
+    /**
+     * A part spooled to disk, like Tomcat's, instead of {@code MockMultipartFile}'s in-memory array.
+     */
+    private record SpooledPart(Path file) implements MultipartFile {
+
+        @Override
+        public String getName() {
+            return "file";
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return "upload.png";
+        }
+
+        @Override
+        public String getContentType() {
+            return "image/png";
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return getSize() == 0;
+        }
+
+        @Override
+        public long getSize() {
+            try {
+                return Files.size(file);
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            return Files.readAllBytes(file);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(file);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            Files.copy(file, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}